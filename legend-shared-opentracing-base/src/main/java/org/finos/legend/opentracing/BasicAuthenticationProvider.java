@@ -20,21 +20,20 @@ import java.util.List;
 
 public class BasicAuthenticationProvider implements AuthenticationProvider
 {
-  private final String username;
-  private final String password;
+  private final List<HeaderEntry> headers;
 
   public BasicAuthenticationProvider(String username, String password)
   {
-    this.username = username;
-    this.password = password;
+    // credentials never change, so the header is encoded once rather than per message
+    String authString = username + ":" + password;
+    String authStringEnc = Base64.getEncoder().encodeToString(authString.getBytes());
+    this.headers = Collections.singletonList(
+        new HeaderEntry("Authorization", "Basic " + authStringEnc));
   }
 
   @Override
   public List<HeaderEntry> getAuthenticationHeaders()
   {
-    String authString = username + ":" + password;
-    String authStringEnc = Base64.getEncoder().encodeToString(authString.getBytes());
-    return Collections.singletonList(
-        new HeaderEntry("Authorization", "Basic " + authStringEnc));
+    return headers;
   }
 }
@@ -22,23 +22,31 @@ public class CookieAuthenticationProvider implements AuthenticationProvider
 
   private final String cookieName;
   private final CookieValueSupplier cookieValueSupplier;
+  private final List<HeaderEntry> staticHeaders;
 
   public CookieAuthenticationProvider(String cookieName, String cookieValue)
   {
-    this(cookieName, () -> cookieValue);
+    this.cookieName = cookieName;
+    this.cookieValueSupplier = () -> cookieValue;
+    this.staticHeaders = headers(cookieValue);
   }
 
   public CookieAuthenticationProvider(String cookieName, CookieValueSupplier cookieValueSupplier)
   {
     this.cookieName = cookieName;
     this.cookieValueSupplier = cookieValueSupplier;
+    this.staticHeaders = null;
   }
 
   @Override
   public List<HeaderEntry> getAuthenticationHeaders()
   {
-    return Collections.singletonList(
-        new HeaderEntry("Cookie", cookieName + "=" + cookieValueSupplier.value()));
+    return staticHeaders != null ? staticHeaders : headers(cookieValueSupplier.value());
+  }
+
+  private List<HeaderEntry> headers(String cookieValue)
+  {
+    return Collections.singletonList(new HeaderEntry("Cookie", cookieName + "=" + cookieValue));
   }
 
   @FunctionalInterface
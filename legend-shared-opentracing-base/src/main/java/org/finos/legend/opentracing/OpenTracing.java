@@ -18,9 +18,12 @@ import brave.Tracing;
 import brave.opentracing.BraveTracer;
 import brave.sampler.Sampler;
 import io.opentracing.Tracer;
+import java.util.List;
+import org.finos.legend.opentracing.propagation.PropagationFormat;
 import org.finos.legend.opentracing.reporter.AsyncReporter;
+import org.finos.legend.opentracing.reporter.TailSamplingReporter;
+import org.finos.legend.opentracing.sampler.AdaptiveSampler;
 import zipkin2.Span;
-import zipkin2.reporter.Reporter;
 import zipkin2.reporter.ReporterMetrics;
 import zipkin2.reporter.Sender;
 
@@ -67,22 +70,139 @@ public class OpenTracing
   public static Tracer create(Sender sender, String serviceName, Float samplingRate,
                               ReporterMetrics metrics)
   {
+    Builder builder = builder(sender, serviceName).metrics(metrics);
+    if (samplingRate != null)
+    {
+      builder.samplingRate(samplingRate);
+    }
+    return builder.build();
+  }
 
-    if (metrics == null)
+  /**
+   * Builder of an OpenTracing Tracer reporting to a Zipkin server, for the options beyond those of
+   * {@link #create}.
+   *
+   * @param sender      Zipkin Sender
+   * @param serviceName Service name to report
+   */
+  public static Builder builder(Sender sender, String serviceName)
+  {
+    return new Builder(sender, serviceName);
+  }
+
+  public static final class Builder
+  {
+    final Sender sender;
+    final String serviceName;
+    Float samplingRate;
+    Float minSamplingRate;
+    ReporterMetrics metrics = ReporterMetrics.NOOP_METRICS;
+    List<PropagationFormat> propagationFormats;
+    Float tailSamplingRate;
+
+    Builder(Sender sender, String serviceName)
     {
-      metrics = ReporterMetrics.NOOP_METRICS;
+      if (sender == null)
+      {
+        throw new NullPointerException("sender == null");
+      }
+      this.sender = sender;
+      this.serviceName = serviceName;
     }
 
-    Reporter<Span> spanReporter = AsyncReporter.builder(sender).metrics(metrics).build();
+    /**
+     * Rate at which traces are sampled, while the reporter keeps up if a minimum rate is set.
+     * Default is the tracer's, which samples every trace. Normally left unset with tail sampling, so
+     * that every trace can be kept.
+     */
+    public Builder samplingRate(float samplingRate)
+    {
+      this.samplingRate = checkRate("samplingRate", samplingRate);
+      return this;
+    }
 
-    Tracing.Builder builder = Tracing.newBuilder()
-        .localServiceName(serviceName)
-        .spanReporter(spanReporter);
-    if (samplingRate != null)
+    /**
+     * Sampling rate never gone under when the reporter is saturated, so that sampling backs off
+     * while the reporter cannot keep up. Default is to always sample at the sampling rate.
+     *
+     * @see AdaptiveSampler
+     */
+    public Builder minSamplingRate(float minSamplingRate)
     {
-      builder.sampler(Sampler.create(samplingRate));
+      this.minSamplingRate = checkRate("minSamplingRate", minSamplingRate);
+      return this;
     }
 
-    return BraveTracer.create(builder.build());
+    /**
+     * ReporterMetrics for collecting tracing metrics. Default records none.
+     */
+    public Builder metrics(ReporterMetrics metrics)
+    {
+      this.metrics = (metrics == null) ? ReporterMetrics.NOOP_METRICS : metrics;
+      return this;
+    }
+
+    /**
+     * Formats to write a trace's context in, and to read it from in order of preference. Default
+     * B3 multi-header only.
+     */
+    public Builder propagationFormats(List<PropagationFormat> propagationFormats)
+    {
+      this.propagationFormats = propagationFormats;
+      return this;
+    }
+
+    /**
+     * Rate at which complete traces without errors, and faster than a second, are reported.
+     * Default is to report every sampled trace.
+     *
+     * @see TailSamplingReporter
+     */
+    public Builder tailSamplingRate(float tailSamplingRate)
+    {
+      this.tailSamplingRate = checkRate("tailSamplingRate", tailSamplingRate);
+      return this;
+    }
+
+    public Tracer build()
+    {
+      if (minSamplingRate != null && samplingRate != null && minSamplingRate > samplingRate)
+      {
+        throw new IllegalArgumentException("minSamplingRate " + minSamplingRate + " > samplingRate " + samplingRate);
+      }
+      AsyncReporter<Span> spanReporter = AsyncReporter.builder(sender).metrics(metrics).build();
+
+      Tracing.Builder builder = Tracing.newBuilder()
+          .localServiceName(serviceName)
+          .spanReporter(tailSamplingRate == null
+              ? spanReporter
+              : TailSamplingReporter.builder(spanReporter).rate(tailSamplingRate).build());
+      if (propagationFormats != null)
+      {
+        builder.propagationFactory(PropagationFormat.factory(propagationFormats));
+      }
+      if (minSamplingRate != null)
+      {
+        builder.sampler(AdaptiveSampler.builder(spanReporter)
+            .rate(samplingRate == null ? 1.0f : samplingRate)
+            .minRate(minSamplingRate)
+            .metrics(metrics)
+            .build());
+      } else if (samplingRate != null)
+      {
+        builder.sampler(Sampler.create(samplingRate));
+      }
+
+      return BraveTracer.create(builder.build());
+    }
+
+    private static float checkRate(String name, float rate)
+    {
+      if (rate < 0.0f || rate > 1.0f)
+      {
+        throw new IllegalArgumentException(name + " should be between 0 and 1: was " + rate);
+      }
+      return rate;
+    }
   }
 }
@@ -0,0 +1,70 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.propagation;
+
+/**
+ * Lower-hex codec for trace and span IDs, reading from and writing to the caller's characters so that
+ * neither direction allocates.
+ */
+final class HexCodec
+{
+  static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private HexCodec()
+  {
+  }
+
+  /**
+   * Returns the value of the 1 to 16 lower-hex characters between start and end, or 0 if they are
+   * not lower hex. 0 is not a valid ID, so it is never ambiguous.
+   */
+  static long parseLowerHex(CharSequence chars, int start, int end)
+  {
+    int length = end - start;
+    if (length < 1 || length > 16)
+    {
+      return 0;
+    }
+    long result = 0;
+    for (int i = start; i < end; i++)
+    {
+      char c = chars.charAt(i);
+      result <<= 4;
+      if (c >= '0' && c <= '9')
+      {
+        result |= c - '0';
+      } else if (c >= 'a' && c <= 'f')
+      {
+        result |= c - 'a' + 10;
+      } else
+      {
+        return 0;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Writes the value as 16 lower-hex characters, left-padded with zeros.
+   */
+  static void writeLowerHex(char[] data, int position, long value)
+  {
+    for (int i = position + 15; i >= position; i--)
+    {
+      data[i] = HEX_DIGITS[(int) (value & 0xf)];
+      value >>>= 4;
+    }
+  }
+}
@@ -0,0 +1,418 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.propagation;
+
+import brave.propagation.B3Propagation;
+import brave.propagation.Propagation;
+import brave.propagation.TraceContext;
+import brave.propagation.TraceContextOrSamplingFlags;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Propagation writing a trace's context in each of its formats, and reading it from the first of its
+ * formats that holds one.
+ *
+ * <p>IDs are parsed in place from header values and written into a per-thread buffer, so the only
+ * objects allocated are the header values written and the contexts read.
+ */
+final class MultiFormatPropagation<K> implements Propagation<K>
+{
+  // b3: 32 characters of trace ID, span ID, sampling and parent span ID, separated by dashes
+  static final int MAX_HEADER_LENGTH = 68;
+  static final int TRACEPARENT_LENGTH = 55;
+  static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[MAX_HEADER_LENGTH]);
+
+  final PropagationFormat[] formats;
+  final K traceIdKey;
+  final K spanIdKey;
+  final K parentSpanIdKey;
+  final K sampledKey;
+  final K flagsKey;
+  final K b3Key;
+  final K traceparentKey;
+  final List<K> keys;
+
+  MultiFormatPropagation(PropagationFormat[] formats, KeyFactory<K> keyFactory)
+  {
+    this.formats = formats;
+    List<String> b3MultiNames = PropagationFormat.B3_MULTI.headerNames();
+    this.traceIdKey = keyFactory.create(b3MultiNames.get(0));
+    this.spanIdKey = keyFactory.create(b3MultiNames.get(1));
+    this.parentSpanIdKey = keyFactory.create(b3MultiNames.get(2));
+    this.sampledKey = keyFactory.create(b3MultiNames.get(3));
+    this.flagsKey = keyFactory.create(b3MultiNames.get(4));
+    this.b3Key = keyFactory.create(PropagationFormat.B3_SINGLE.headerNames().get(0));
+    this.traceparentKey = keyFactory.create(PropagationFormat.W3C.headerNames().get(0));
+    List<K> keys = new ArrayList<>();
+    for (PropagationFormat format : formats)
+    {
+      format.headerNames().forEach(name -> keys.add(keyFactory.create(name)));
+    }
+    this.keys = Collections.unmodifiableList(keys);
+  }
+
+  @Override
+  public List<K> keys()
+  {
+    return keys;
+  }
+
+  @Override
+  public <R> TraceContext.Injector<R> injector(Setter<R, K> setter)
+  {
+    if (setter == null)
+    {
+      throw new NullPointerException("setter == null");
+    }
+    return (context, request) ->
+    {
+      for (PropagationFormat format : formats)
+      {
+        if (format == PropagationFormat.B3_MULTI)
+        {
+          injectB3Multi(context, setter, request);
+        } else if (format == PropagationFormat.B3_SINGLE)
+        {
+          setter.put(request, b3Key, writeB3Single(context));
+        } else
+        {
+          setter.put(request, traceparentKey, writeTraceparent(context));
+        }
+      }
+    };
+  }
+
+  @Override
+  public <R> TraceContext.Extractor<R> extractor(Getter<R, K> getter)
+  {
+    if (getter == null)
+    {
+      throw new NullPointerException("getter == null");
+    }
+    return request ->
+    {
+      for (PropagationFormat format : formats)
+      {
+        TraceContextOrSamplingFlags result;
+        if (format == PropagationFormat.B3_MULTI)
+        {
+          result = extractB3Multi(getter, request);
+        } else if (format == PropagationFormat.B3_SINGLE)
+        {
+          result = parseB3Single(getter.get(request, b3Key));
+        } else
+        {
+          result = parseTraceparent(getter.get(request, traceparentKey));
+        }
+        if (result != null)
+        {
+          return result;
+        }
+      }
+      return TraceContextOrSamplingFlags.EMPTY;
+    };
+  }
+
+  <R> void injectB3Multi(TraceContext context, Setter<R, K> setter, R request)
+  {
+    char[] buffer = BUFFER.get();
+    setter.put(request, traceIdKey, new String(buffer, 0, writeTraceId(context, buffer, 0)));
+    HexCodec.writeLowerHex(buffer, 0, context.spanId());
+    setter.put(request, spanIdKey, new String(buffer, 0, 16));
+    if (context.parentIdAsLong() != 0)
+    {
+      HexCodec.writeLowerHex(buffer, 0, context.parentIdAsLong());
+      setter.put(request, parentSpanIdKey, new String(buffer, 0, 16));
+    }
+    if (context.debug())
+    {
+      setter.put(request, flagsKey, "1");
+    } else if (context.sampled() != null)
+    {
+      setter.put(request, sampledKey, context.sampled() ? "1" : "0");
+    }
+  }
+
+  <R> TraceContextOrSamplingFlags extractB3Multi(Getter<R, K> getter, R request)
+  {
+    String traceId = getter.get(request, traceIdKey);
+    Boolean sampled = parseB3Sampled(getter.get(request, sampledKey));
+    boolean debug = "1".equals(getter.get(request, flagsKey));
+    if (traceId == null)
+    {
+      return samplingFlags(sampled, debug);
+    }
+    TraceContext.Builder builder = TraceContext.newBuilder();
+    String spanId = getter.get(request, spanIdKey);
+    if (!parseTraceId(traceId, 0, traceId.length(), builder) || spanId == null || spanId.length() != 16)
+    {
+      return null;
+    }
+    long spanIdValue = HexCodec.parseLowerHex(spanId, 0, 16);
+    if (spanIdValue == 0)
+    {
+      return null;
+    }
+    String parentSpanId = getter.get(request, parentSpanIdKey);
+    if (parentSpanId != null)
+    {
+      builder.parentId(HexCodec.parseLowerHex(parentSpanId, 0, parentSpanId.length()));
+    }
+    return TraceContextOrSamplingFlags.create(builder.spanId(spanIdValue).sampled(sampled).debug(debug).build());
+  }
+
+  static Boolean parseB3Sampled(String sampled)
+  {
+    if ("1".equals(sampled) || "true".equalsIgnoreCase(sampled))
+    {
+      return Boolean.TRUE;
+    }
+    if ("0".equals(sampled) || "false".equalsIgnoreCase(sampled))
+    {
+      return Boolean.FALSE;
+    }
+    return null;
+  }
+
+  static TraceContextOrSamplingFlags samplingFlags(Boolean sampled, boolean debug)
+  {
+    if (debug)
+    {
+      return TraceContextOrSamplingFlags.DEBUG;
+    }
+    if (sampled == null)
+    {
+      return null;
+    }
+    return sampled ? TraceContextOrSamplingFlags.SAMPLED : TraceContextOrSamplingFlags.NOT_SAMPLED;
+  }
+
+  /**
+   * Writes {@code traceId-spanId[-sampling[-parentSpanId]]}. The parent is only written after the
+   * sampling decision, as without one it would be read as the sampling.
+   */
+  static String writeB3Single(TraceContext context)
+  {
+    char[] buffer = BUFFER.get();
+    int position = writeTraceId(context, buffer, 0);
+    buffer[position++] = '-';
+    HexCodec.writeLowerHex(buffer, position, context.spanId());
+    position += 16;
+    Boolean sampled = context.sampled();
+    if (context.debug() || sampled != null)
+    {
+      buffer[position++] = '-';
+      buffer[position++] = context.debug() ? 'd' : sampled ? '1' : '0';
+      if (context.parentIdAsLong() != 0)
+      {
+        buffer[position++] = '-';
+        HexCodec.writeLowerHex(buffer, position, context.parentIdAsLong());
+        position += 16;
+      }
+    }
+    return new String(buffer, 0, position);
+  }
+
+  static TraceContextOrSamplingFlags parseB3Single(String b3)
+  {
+    if (b3 == null || b3.isEmpty())
+    {
+      return null;
+    }
+    int traceIdEnd = b3.indexOf('-');
+    if (traceIdEnd < 0)
+    {
+      return b3.length() == 1 ? samplingFlags(parseB3SingleSampling(b3.charAt(0)), b3.charAt(0) == 'd') : null;
+    }
+    TraceContext.Builder builder = TraceContext.newBuilder();
+    int spanIdEnd = traceIdEnd + 17;
+    if (!parseTraceId(b3, 0, traceIdEnd, builder) || spanIdEnd > b3.length() || (spanIdEnd < b3.length() && b3.charAt(spanIdEnd) != '-'))
+    {
+      return null;
+    }
+    long spanId = HexCodec.parseLowerHex(b3, traceIdEnd + 1, spanIdEnd);
+    if (spanId == 0)
+    {
+      return null;
+    }
+    builder.spanId(spanId);
+    if (spanIdEnd < b3.length())
+    {
+      int samplingEnd = spanIdEnd + 2;
+      if (samplingEnd > b3.length() || (samplingEnd < b3.length() && b3.charAt(samplingEnd) != '-'))
+      {
+        return null;
+      }
+      char sampling = b3.charAt(spanIdEnd + 1);
+      builder.sampled(parseB3SingleSampling(sampling)).debug(sampling == 'd');
+      if (samplingEnd < b3.length())
+      {
+        builder.parentId(HexCodec.parseLowerHex(b3, samplingEnd + 1, b3.length()));
+      }
+    }
+    return TraceContextOrSamplingFlags.create(builder.build());
+  }
+
+  static Boolean parseB3SingleSampling(char sampling)
+  {
+    if (sampling == '1' || sampling == 'd')
+    {
+      return Boolean.TRUE;
+    }
+    return sampling == '0' ? Boolean.FALSE : null;
+  }
+
+  /**
+   * Writes {@code 00-traceId-spanId-flags}, with a 64-bit trace ID left-padded with zeros.
+   */
+  static String writeTraceparent(TraceContext context)
+  {
+    char[] buffer = BUFFER.get();
+    buffer[0] = '0';
+    buffer[1] = '0';
+    buffer[2] = '-';
+    HexCodec.writeLowerHex(buffer, 3, context.traceIdHigh());
+    HexCodec.writeLowerHex(buffer, 19, context.traceId());
+    buffer[35] = '-';
+    HexCodec.writeLowerHex(buffer, 36, context.spanId());
+    buffer[52] = '-';
+    buffer[53] = '0';
+    buffer[54] = Boolean.TRUE.equals(context.sampled()) ? '1' : '0';
+    return new String(buffer, 0, TRACEPARENT_LENGTH);
+  }
+
+  /**
+   * Reads {@code version-traceId-spanId-flags}. Versions after 00 may append fields, which are
+   * ignored.
+   */
+  static TraceContextOrSamplingFlags parseTraceparent(String traceparent)
+  {
+    if (traceparent == null || traceparent.length() < TRACEPARENT_LENGTH
+        || traceparent.charAt(2) != '-' || traceparent.charAt(35) != '-' || traceparent.charAt(52) != '-')
+    {
+      return null;
+    }
+    boolean version00 = traceparent.startsWith("00");
+    if (traceparent.startsWith("ff") || !isLowerHex(traceparent, 0, 2)
+        || (traceparent.length() > TRACEPARENT_LENGTH && (version00 || traceparent.charAt(TRACEPARENT_LENGTH) != '-')))
+    {
+      return null;
+    }
+    TraceContext.Builder builder = TraceContext.newBuilder();
+    long spanId = HexCodec.parseLowerHex(traceparent, 36, 52);
+    if (!parseTraceId(traceparent, 3, 35, builder) || spanId == 0 || !isLowerHex(traceparent, 53, 55))
+    {
+      return null;
+    }
+    boolean sampled = (HexCodec.parseLowerHex(traceparent, 53, 55) & 1) != 0;
+    return TraceContextOrSamplingFlags.create(builder.spanId(spanId).sampled(sampled).build());
+  }
+
+  /**
+   * Writes the trace ID as 16 characters, or 32 if it is 128-bit, and returns the position after it.
+   */
+  static int writeTraceId(TraceContext context, char[] buffer, int position)
+  {
+    if (context.traceIdHigh() != 0)
+    {
+      HexCodec.writeLowerHex(buffer, position, context.traceIdHigh());
+      position += 16;
+    }
+    HexCodec.writeLowerHex(buffer, position, context.traceId());
+    return position + 16;
+  }
+
+  /**
+   * Parses a trace ID of 16 or 32 characters into the builder, returning false if it is not valid.
+   */
+  static boolean parseTraceId(CharSequence chars, int start, int end, TraceContext.Builder builder)
+  {
+    int length = end - start;
+    if (length != 16 && length != 32)
+    {
+      return false;
+    }
+    int lowStart = end - 16;
+    if (length == 32 && !isLowerHex(chars, start, lowStart))
+    {
+      return false;
+    }
+    long traceIdHigh = length == 32 ? HexCodec.parseLowerHex(chars, start, lowStart) : 0;
+    long traceId = HexCodec.parseLowerHex(chars, lowStart, end);
+    if (traceId == 0) // not hex, or zero, which Brave does not allow even with a high part
+    {
+      return false;
+    }
+    builder.traceIdHigh(traceIdHigh).traceId(traceId);
+    return true;
+  }
+
+  static boolean isLowerHex(CharSequence chars, int start, int end)
+  {
+    for (int i = start; i < end; i++)
+    {
+      char c = chars.charAt(i);
+      if ((c < '0' || c > '9') && (c < 'a' || c > 'f'))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static final class Factory extends Propagation.Factory
+  {
+    final PropagationFormat[] formats;
+
+    Factory(PropagationFormat[] formats)
+    {
+      this.formats = formats;
+    }
+
+    @Override
+    public <K> Propagation<K> create(KeyFactory<K> keyFactory)
+    {
+      if (keyFactory == null)
+      {
+        throw new NullPointerException("keyFactory == null");
+      }
+      return new MultiFormatPropagation<>(formats, keyFactory);
+    }
+
+    /**
+     * Server spans may share their client's span ID, as with B3 alone, which was the default.
+     */
+    @Override
+    public boolean supportsJoin()
+    {
+      return B3Propagation.FACTORY.supportsJoin();
+    }
+
+    @Override
+    public boolean requires128BitTraceId()
+    {
+      for (PropagationFormat format : formats)
+      {
+        if (format == PropagationFormat.W3C)
+        {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,68 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.propagation;
+
+import brave.propagation.Propagation;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Header formats a trace's context is propagated in.
+ */
+public enum PropagationFormat
+{
+  /**
+   * Zipkin's B3, one header per field.
+   */
+  B3_MULTI("x-b3-traceid", "x-b3-spanid", "x-b3-parentspanid", "x-b3-sampled", "x-b3-flags"),
+  /**
+   * Zipkin's B3, in the single {@code b3} header.
+   */
+  B3_SINGLE("b3"),
+  /**
+   * W3C Trace Context's {@code traceparent} header. {@code tracestate} is not propagated.
+   */
+  W3C("traceparent");
+
+  private final List<String> headerNames;
+
+  PropagationFormat(String... headerNames)
+  {
+    this.headerNames = Collections.unmodifiableList(Arrays.asList(headerNames));
+  }
+
+  /**
+   * Names of the headers this format reads and writes, in lower case.
+   */
+  public List<String> headerNames()
+  {
+    return headerNames;
+  }
+
+  /**
+   * Returns a factory for Brave's propagation, that writes a trace's context in every format and
+   * reads it from the first format, in the given order, that holds one.
+   */
+  public static Propagation.Factory factory(Collection<PropagationFormat> formats)
+  {
+    if (formats == null || formats.isEmpty())
+    {
+      throw new IllegalArgumentException("formats should not be empty");
+    }
+    return new MultiFormatPropagation.Factory(formats.stream().distinct().toArray(PropagationFormat[]::new));
+  }
+}
@@ -17,17 +17,27 @@ package org.finos.legend.opentracing.reporter;
 import static java.lang.String.format;
 
 import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.finos.legend.opentracing.reporter.AsyncReporterMetrics.DropCause;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import zipkin2.Call;
+import zipkin2.Callback;
 import zipkin2.CheckResult;
 import zipkin2.Component;
 import zipkin2.Span;
@@ -45,11 +55,13 @@ import zipkin2.reporter.Sender;
  *
  * <p>Spans are bundled into messages based on size in bytes or a timeout, whichever happens first.
  *
- * <p>The thread that sends flushes spans to the {@linkplain Sender} does so in a synchronous loop.
- * This means that even asynchronous transports will wait for an ack before sending a next message.
- * We do this so that a surge of spans doesn't overrun memory or bandwidth via hundreds or
- * thousands of in-flight messages. The downside of this is that reporting is limited in speed to
- * what a single thread can clear. When a thread cannot clear the backlog, new spans are dropped.
+ * <p>By default, the thread that sends flushes spans to the {@linkplain Sender} does so in a
+ * synchronous loop. This means that even asynchronous transports will wait for an ack before sending
+ * a next message. We do this so that a surge of spans doesn't overrun memory or bandwidth via
+ * hundreds or thousands of in-flight messages. The downside of this is that reporting is limited in
+ * speed to what a single thread can clear. When a thread cannot clear the backlog, new spans are
+ * dropped. {@link Builder#maxInFlightMessages(int)} lifts this limit by keeping a bounded window of
+ * messages in flight.
  *
  * @param <S> type of the span, usually {@link Span}
  */
@@ -92,6 +104,35 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
   @Override
   public abstract void close();
 
+  /**
+   * How full the queue of spans pending send is, from 0 to 1, by whichever of {@link
+   * Builder#queuedMaxSpans(int)} or {@link Builder#queuedMaxBytes(int)} is closer to its bound.
+   */
+  public abstract float queueUtilization();
+
+  /**
+   * Count of spans dropped since the reporter was built, whether because the queue was full or
+   * because their message failed to send.
+   */
+  public abstract long totalSpansDropped();
+
+  /**
+   * Selects the queue that holds spans between {@link #report(Object)} and the flusher thread.
+   */
+  public enum QueueType
+  {
+    /**
+     * Array-backed queue guarded by a single lock shared by reporting threads and the flusher.
+     */
+    LOCKING,
+    /**
+     * Lock-free ring buffer. Reporting threads reserve capacity and publish with atomic operations,
+     * so they never contend on a lock with each other or with the flusher. Prefer this when many
+     * threads report spans concurrently.
+     */
+    LOCK_FREE
+  }
+
   public static final class Builder
   {
     final Sender sender;
@@ -102,6 +143,15 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
     long closeTimeoutNanos = TimeUnit.SECONDS.toNanos(1);
     int queuedMaxSpans = 10000;
     int queuedMaxBytes = onePercentOfMemory();
+    QueueType queueType = QueueType.LOCKING;
+    int threadBatchSize = 0;
+    long threadBatchLingerNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    int maxInFlightMessages = 1;
+    Path spoolDirectory;
+    long spoolMaxBytes;
+    int spoolSegmentBytes = 8 * 1024 * 1024;
+    long spoolReplayBackoffNanos = TimeUnit.SECONDS.toNanos(1);
+    int spoolMaxReplayAttempts = 10;
 
     Builder(BoundedAsyncReporter<?> asyncReporter)
     {
@@ -111,8 +161,17 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
       this.messageMaxBytes = asyncReporter.messageMaxBytes;
       this.messageTimeoutNanos = asyncReporter.messageTimeoutNanos;
       this.closeTimeoutNanos = asyncReporter.closeTimeoutNanos;
-      this.queuedMaxSpans = asyncReporter.pending.maxSize;
-      this.queuedMaxBytes = asyncReporter.pending.maxBytes;
+      this.queuedMaxSpans = asyncReporter.pending.maxSize();
+      this.queuedMaxBytes = asyncReporter.pending.maxBytes();
+      this.queueType = asyncReporter.queueType;
+      this.threadBatchSize = asyncReporter.threadBatchSize;
+      this.threadBatchLingerNanos = asyncReporter.threadBatchLingerNanos;
+      this.maxInFlightMessages = asyncReporter.maxInFlightMessages;
+      this.spoolDirectory = asyncReporter.spoolDirectory;
+      this.spoolMaxBytes = asyncReporter.spoolMaxBytes;
+      this.spoolSegmentBytes = asyncReporter.spoolSegmentBytes;
+      this.spoolReplayBackoffNanos = asyncReporter.spoolReplayBackoffNanos;
+      this.spoolMaxReplayAttempts = asyncReporter.spoolMaxReplayAttempts;
     }
 
     Builder(Sender sender)
@@ -230,6 +289,152 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
       return this;
     }
 
+    /**
+     * Queue implementation holding spans pending send. Default {@link QueueType#LOCKING}
+     */
+    public Builder queueType(QueueType queueType)
+    {
+      if (queueType == null)
+      {
+        throw new NullPointerException("queueType == null");
+      }
+      this.queueType = queueType;
+      return this;
+    }
+
+    /**
+     * Default 0, which offers each span to the pending queue as it is reported.
+     *
+     * <p>When positive, each reporting thread buffers up to this many spans locally and offers them to
+     * the pending queue in one operation, once the batch is full or after {@link
+     * #threadBatchLinger(long, TimeUnit) linger}. {@link #queuedMaxSpans(int)} and {@link
+     * #queuedMaxBytes(int)} still bound the pending queue shared by all threads, counting spans from
+     * the moment they are buffered: a span that does not fit is dropped as it is reported.
+     */
+    public Builder threadBatchSize(int threadBatchSize)
+    {
+      if (threadBatchSize < 0)
+      {
+        throw new IllegalArgumentException("threadBatchSize < 0: " + threadBatchSize);
+      }
+      this.threadBatchSize = threadBatchSize;
+      return this;
+    }
+
+    /**
+     * Default 100 milliseconds. Longest a span waits in a thread's batch before the flusher publishes
+     * it, so that threads which stop reporting, or die, do not strand spans.
+     */
+    public Builder threadBatchLinger(long linger, TimeUnit unit)
+    {
+      if (linger <= 0)
+      {
+        throw new IllegalArgumentException("threadBatchLinger <= 0: " + linger);
+      }
+      if (unit == null)
+      {
+        throw new NullPointerException("unit == null");
+      }
+      this.threadBatchLingerNanos = unit.toNanos(linger);
+      return this;
+    }
+
+    /**
+     * Default 1, which sends each message synchronously and waits for it to complete before the next.
+     *
+     * <p>When greater than one, messages are sent with {@link Call#enqueue(Callback)}, in the order
+     * they were drained, and up to this many may await a response at once. Once the window is full,
+     * the flusher waits for a message to complete, and new spans queue up as they would behind a
+     * synchronous send. Spans of in-flight messages still count against {@link
+     * #queuedMaxBytes(int)}, and {@link AsyncReporter#close()} waits for them within the {@link
+     * #closeTimeout(long, TimeUnit) close timeout}.
+     */
+    public Builder maxInFlightMessages(int maxInFlightMessages)
+    {
+      if (maxInFlightMessages < 1)
+      {
+        throw new IllegalArgumentException("maxInFlightMessages < 1: " + maxInFlightMessages);
+      }
+      this.maxInFlightMessages = maxInFlightMessages;
+      return this;
+    }
+
+    /**
+     * Disabled by default, in which case messages that fail to send are dropped.
+     *
+     * <p>When set, messages that fail to send are appended to memory-mapped segment files in the
+     * directory instead, up to maxBytes in total. They are replayed in order once {@link
+     * Sender#check()} passes, retrying with exponential backoff from {@link
+     * #spoolReplayBackoff(long, TimeUnit)} while the collector is unavailable. Messages spooled by a
+     * previous process that used the directory are replayed too. When the spool is full, further
+     * failed messages are dropped. So are messages the collector rejected with a {@link
+     * RejectedMessageException}, and spooled messages that failed {@link
+     * #spoolMaxReplayAttempts(int)} replays, so that they do not hold up the messages behind them.
+     *
+     * <p>Spool events are recorded by {@link #metrics(ReporterMetrics) metrics} that implement
+     * {@link AsyncReporterMetrics}.
+     */
+    public Builder spool(Path directory, long maxBytes)
+    {
+      if (directory == null)
+      {
+        throw new NullPointerException("directory == null");
+      }
+      if (maxBytes <= 0)
+      {
+        throw new IllegalArgumentException("spool maxBytes <= 0: " + maxBytes);
+      }
+      this.spoolDirectory = directory;
+      this.spoolMaxBytes = maxBytes;
+      return this;
+    }
+
+    /**
+     * Size of each spool segment file. Default 8 MiB. A message larger than a segment cannot be
+     * spooled.
+     */
+    public Builder spoolSegmentBytes(int spoolSegmentBytes)
+    {
+      if (spoolSegmentBytes <= 0)
+      {
+        throw new IllegalArgumentException("spoolSegmentBytes <= 0: " + spoolSegmentBytes);
+      }
+      this.spoolSegmentBytes = spoolSegmentBytes;
+      return this;
+    }
+
+    /**
+     * Default 1 second. How long to wait before replaying spooled messages after a send fails. The
+     * wait doubles with each further failure, up to a minute.
+     */
+    public Builder spoolReplayBackoff(long backoff, TimeUnit unit)
+    {
+      if (backoff <= 0)
+      {
+        throw new IllegalArgumentException("spoolReplayBackoff <= 0: " + backoff);
+      }
+      if (unit == null)
+      {
+        throw new NullPointerException("unit == null");
+      }
+      this.spoolReplayBackoffNanos = unit.toNanos(backoff);
+      return this;
+    }
+
+    /**
+     * Default 10. How many times to replay the oldest spooled message before dropping it. Replays
+     * skipped while {@link Sender#check()} fails do not count.
+     */
+    public Builder spoolMaxReplayAttempts(int spoolMaxReplayAttempts)
+    {
+      if (spoolMaxReplayAttempts <= 0)
+      {
+        throw new IllegalArgumentException("spoolMaxReplayAttempts <= 0: " + spoolMaxReplayAttempts);
+      }
+      this.spoolMaxReplayAttempts = spoolMaxReplayAttempts;
+      return this;
+    }
+
     /**
      * Builds an async reporter that encodes zipkin spans as they are reported.
      */
@@ -271,10 +476,14 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
   static final class BoundedAsyncReporter<S> extends AsyncReporter<S>
   {
     static final Logger logger = LoggerFactory.getLogger(BoundedAsyncReporter.class);
+    static final long MAX_SPOOL_BACKOFF_NANOS = TimeUnit.MINUTES.toNanos(1);
+    static final AsyncReporterMetrics NOOP_ASYNC_METRICS = new NoopAsyncReporterMetrics();
     final AtomicBoolean started;
     final AtomicBoolean closed;
     final BytesEncoder<S> encoder;
-    final ByteBoundedQueue<S> pending;
+    final QueueType queueType;
+    final BoundedQueue<EncodedSpan> pending;
+    final EncodedSpanPool pool;
     final Sender sender;
     final int messageMaxBytes;
     final long messageTimeoutNanos;
@@ -283,12 +492,31 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
     final ReporterMetrics metrics;
     final ThreadFactory threadFactory;
     final AtomicInteger droppedSpanCount;
+    final AtomicLong totalDroppedSpanCount = new AtomicLong();
+    final int threadBatchSize;
+    final long threadBatchLingerNanos;
+    final ThreadLocal<SpanBatch> threadBatch;
+    final Set<SpanBatch> threadBatches;
+    final int maxInFlightMessages;
+    final Semaphore inFlight; // null when messages are sent synchronously
+    final Path spoolDirectory;
+    final long spoolMaxBytes;
+    final int spoolSegmentBytes;
+    final long spoolReplayBackoffNanos;
+    final int spoolMaxReplayAttempts;
+    final DiskSpool spool; // null when failed messages are dropped
+    final ReentrantLock replaying = new ReentrantLock();
+    long spoolBackoffNanos; // guarded by replaying
+    int headReplayFailures; // guarded by replaying
+    long nextReplayNanoTime; // guarded by replaying
 
     private Thread flushThread;
 
     BoundedAsyncReporter(Builder builder, BytesEncoder<S> encoder)
     {
-      this.pending = new ByteBoundedQueue<>(builder.queuedMaxSpans, builder.queuedMaxBytes);
+      this.queueType = builder.queueType;
+      this.pending = BoundedQueue.create(builder.queueType, builder.queuedMaxSpans, builder.queuedMaxBytes);
+      this.pool = new EncodedSpanPool(encoder.encoding(), builder.queuedMaxSpans);
       this.sender = builder.sender;
       this.messageMaxBytes = builder.messageMaxBytes;
       this.messageTimeoutNanos = builder.messageTimeoutNanos;
@@ -301,11 +529,36 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
       this.threadFactory = builder.threadFactory;
       this.encoder = encoder;
       this.droppedSpanCount = new AtomicInteger();
+      this.threadBatchSize = builder.threadBatchSize;
+      this.threadBatchLingerNanos = builder.threadBatchLingerNanos;
+      this.threadBatches = ConcurrentHashMap.newKeySet();
+      this.threadBatch = threadBatchSize == 0 ? null : ThreadLocal.withInitial(() ->
+      {
+        SpanBatch batch = new SpanBatch(threadBatchSize, Thread.currentThread());
+        threadBatches.add(batch);
+        return batch;
+      });
+      this.maxInFlightMessages = builder.maxInFlightMessages;
+      this.inFlight = maxInFlightMessages == 1 ? null : new Semaphore(maxInFlightMessages);
+      this.spoolDirectory = builder.spoolDirectory;
+      this.spoolMaxBytes = builder.spoolMaxBytes;
+      this.spoolSegmentBytes = builder.spoolSegmentBytes;
+      this.spoolReplayBackoffNanos = builder.spoolReplayBackoffNanos;
+      this.spoolMaxReplayAttempts = builder.spoolMaxReplayAttempts;
+      this.spoolBackoffNanos = spoolReplayBackoffNanos;
+      this.nextReplayNanoTime = System.nanoTime();
+      try
+      {
+        this.spool = spoolDirectory == null ? null : new DiskSpool(spoolDirectory, spoolMaxBytes, spoolSegmentBytes);
+      } catch (IOException e)
+      {
+        throw new UncheckedIOException("Could not open span spool in " + spoolDirectory, e);
+      }
     }
 
     void startFlusherThread()
     {
-      BufferNextMessage<S> consumer =
+      BufferNextMessage<EncodedSpan> consumer =
           BufferNextMessage.create(encoder.encoding(), messageMaxBytes, messageTimeoutNanos);
       flushThread = threadFactory.newThread(new Flusher<>(this, consumer));
       flushThread.setName("AsyncReporter{" + sender + "}");
@@ -332,34 +585,120 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
       int messageSizeOfNextSpan = sender.messageSizeInBytes(nextSizeInBytes);
       metrics.incrementSpanBytes(nextSizeInBytes);
 
-      if (closed.get()
-          // don't enqueue something larger than we can drain
-          || messageSizeOfNextSpan > messageMaxBytes
-          || !pending.offer(next, nextSizeInBytes))
+      if (closed.get())
       {
-        int droppedCount = this.droppedSpanCount.incrementAndGet();
-        if (droppedCount == 1000)
+        spansDropped(1, DropCause.CLOSED);
+        return;
+      }
+      if (messageSizeOfNextSpan > messageMaxBytes) // don't enqueue something larger than we can drain
+      {
+        spansDropped(1, DropCause.TOO_LARGE);
+        return;
+      }
+
+      // Encode here, once, so that the flusher only copies bytes
+      EncodedSpan encoded = pool.encode(encoder, next, nextSizeInBytes);
+      DropCause dropped = offer(encoded, nextSizeInBytes);
+      if (dropped != null)
+      {
+        encoded.release();
+        spansDropped(1, dropped);
+      }
+    }
+
+    /**
+     * Queues the span, directly or through the thread's batch. Returns why it was dropped, or null
+     * if it was not.
+     */
+    DropCause offer(EncodedSpan next, int nextSizeInBytes)
+    {
+      if (threadBatch == null)
+      {
+        return pending.offer(next, nextSizeInBytes) ? null : DropCause.QUEUE_FULL;
+      }
+      SpanBatch batch = threadBatch.get();
+      synchronized (batch)
+      {
+        // close() publishes each batch after it sets closed, so a span added later would be stranded
+        if (closed.get())
         {
-          this.droppedSpanCount.set(0);
-          if (closed.get())
-          {
-            logger.warn("Dropped spans due to closed reporter");
-          } else if (messageSizeOfNextSpan > messageMaxBytes)
-          {
-            logger.warn("Dropped spans because span larger than max allowed");
-          } else
-          {
-            logger.warn("Dropped spans because queue size at max");
-          }
+          return DropCause.CLOSED;
+        }
+        if (!pending.reserve(nextSizeInBytes))
+        {
+          return DropCause.QUEUE_FULL;
+        }
+        // the flusher publishes batches that linger, so there is no need to read the clock here
+        if (batch.add(next, nextSizeInBytes))
+        {
+          batch.publishTo(pending);
+        }
+      }
+      return null;
+    }
 
-          if (!flushThread.isAlive())
+    /**
+     * Publishes batches whose spans have waited longer than linger, or all of them when forced.
+     * Batches of threads that have died are published and forgotten.
+     */
+    void publishThreadBatches(boolean force)
+    {
+      if (threadBatch == null)
+      {
+        return;
+      }
+      long now = System.nanoTime();
+      for (SpanBatch batch : threadBatches)
+      {
+        boolean ownerAlive = batch.isOwnerAlive();
+        synchronized (batch)
+        {
+          if (force || !ownerAlive || batch.hasLingered(now, threadBatchLingerNanos))
           {
-            logger.error("Flusher thread is not alive, restarting");
-            startFlusherThread();
+            batch.publishTo(pending);
           }
         }
-        metrics.incrementSpansDropped(1);
+        if (!ownerAlive)
+        {
+          threadBatches.remove(batch);
+        }
+      }
+    }
+
+    void spansDropped(int count, DropCause cause)
+    {
+      int droppedCount = this.droppedSpanCount.addAndGet(count);
+      if (droppedCount >= 1000)
+      {
+        this.droppedSpanCount.set(0);
+        if (cause == DropCause.CLOSED)
+        {
+          logger.warn("Dropped spans due to closed reporter");
+        } else if (cause == DropCause.TOO_LARGE)
+        {
+          logger.warn("Dropped spans because span larger than max allowed");
+        } else
+        {
+          logger.warn("Dropped spans because queue size at max");
+        }
+
+        if (flushThread != null && !flushThread.isAlive())
+        {
+          logger.error("Flusher thread is not alive, restarting");
+          startFlusherThread();
+        }
       }
+      incrementSpansDropped(count, cause);
+    }
+
+    /**
+     * Counts dropped spans, also by cause for {@link AsyncReporterMetrics}.
+     */
+    void incrementSpansDropped(int count, DropCause cause)
+    {
+      totalDroppedSpanCount.addAndGet(count);
+      metrics.incrementSpansDropped(count);
+      asyncMetrics().incrementSpansDropped(cause, count);
     }
 
     @Override
@@ -369,22 +708,31 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
       {
         throw new ClosedSenderException();
       }
+      publishThreadBatches(true);
       flush(BufferNextMessage.create(encoder.encoding(), messageMaxBytes, 0));
     }
 
-    void flush(BufferNextMessage<S> bundler)
+    void flush(BufferNextMessage<EncodedSpan> bundler)
     {
+      replaySpool();
+      publishThreadBatches(closed.get());
+      long nanosTimeout = bundler.remainingNanos();
+      if (threadBatch != null)
+      {
+        // wake up in time to publish batches that will linger meanwhile
+        nanosTimeout = Math.min(nanosTimeout, threadBatchLingerNanos);
+      }
       try
       {
-        pending.drainTo(bundler, bundler.remainingNanos());
+        pending.drainTo(bundler, nanosTimeout);
       } catch (InterruptedException e)
       {
         throw new RuntimeException(e);
       }
 
       // record after flushing reduces the amount of gauge events vs on doing this on report
-      metrics.updateQueuedSpans(pending.count);
-      metrics.updateQueuedBytes(pending.sizeInBytes);
+      metrics.updateQueuedSpans(pending.count());
+      metrics.updateQueuedBytes(pending.sizeInBytes());
 
       // loop around if we are running, and the bundle isn't full
       // if we are closed, try to send what's pending
@@ -393,41 +741,33 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
         return;
       }
 
+      long flushStartNanoTime = System.nanoTime();
+
+      // Create the next message. Spans were encoded when reported, so this only collects buffers,
+      // up to messageMaxBytes. Any left over stay in the bundler for the next message.
+      List<EncodedSpan> nextMessage = new ArrayList<>(bundler.count());
+      int nextMessageSizeInBytes = bundler.drainTo(nextMessage, messageMaxBytes);
+
       // Signal that we are about to send a message of a known size in bytes
       metrics.incrementMessages();
-      metrics.incrementMessageBytes(bundler.sizeInBytes());
+      metrics.incrementMessageBytes(nextMessageSizeInBytes);
 
-      // Create the next message. Since we are outside the lock shared with writers, we can encode
-      ArrayList<byte[]> nextMessage = new ArrayList<>(bundler.count());
-      bundler.drain(new SpanWithSizeConsumer<S>()
+      if (inFlight != null)
       {
-        @Override
-        public boolean offer(S next, int nextSizeInBytes)
-        {
-          nextMessage.add(encoder.encode(next)); // speculatively add to the pending message
-          if (sender.messageSizeInBytes(nextMessage) > messageMaxBytes)
-          {
-            // if we overran the message size, remove the encoded message.
-            nextMessage.remove(nextMessage.size() - 1);
-            return false;
-          }
-          return true;
-        }
-      });
+        enqueue(nextMessage);
+        asyncMetrics().recordFlushNanos(System.nanoTime() - flushStartNanoTime);
+        return;
+      }
 
       try
       {
-        sender.sendSpans(nextMessage).execute();
+        send(nextMessage).execute();
       } catch (Throwable t)
       {
-        // In failure case, we increment messages and spans dropped.
-        int count = nextMessage.size();
-        Call.propagateIfFatal(t);
-        metrics.incrementMessagesDropped(t);
-        metrics.incrementSpansDropped(count);
-
-        logger.warn(
-            format("Dropped %s spans due to %s", count, t.getClass().getSimpleName()), t);
+        if (!spooled(nextMessage, t))
+        {
+          messageDropped(nextMessage.size(), t);
+        }
 
         // Raise in case the sender was closed out-of-band.
         if (t instanceof ClosedSenderException)
@@ -441,7 +781,190 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
         {
           throw (IllegalStateException) t;
         }
+      } finally
+      {
+        release(nextMessage);
+        // a synchronous flush is mostly its send
+        long flushNanos = System.nanoTime() - flushStartNanoTime;
+        asyncMetrics().recordSendNanos(flushNanos);
+        asyncMetrics().recordFlushNanos(flushNanos);
+      }
+    }
+
+    /**
+     * Sends the message without waiting for it to complete, once there is room in the in-flight
+     * window. Until it completes, its spans are held against the pending queue's byte bound.
+     */
+    void enqueue(List<EncodedSpan> nextMessage)
+    {
+      try
+      {
+        inFlight.acquire();
+      } catch (InterruptedException e)
+      {
+        incrementSpansDropped(nextMessage.size(), DropCause.CLOSED);
+        release(nextMessage);
+        throw new RuntimeException(e);
+      }
+
+      int sizeInBytes = 0;
+      for (int i = 0, length = nextMessage.size(); i < length; i++)
+      {
+        sizeInBytes += nextMessage.get(i).sizeInBytes();
+      }
+      pending.reserveInFlight(sizeInBytes);
+
+      InFlightMessage callback = new InFlightMessage(nextMessage, sizeInBytes);
+      try
+      {
+        send(nextMessage).enqueue(callback);
+      } catch (Throwable t)
+      {
+        callback.onError(t);
+      }
+    }
+
+    /**
+     * Appends a message that failed to send to the spool, if there is one with room for it and the
+     * collector did not reject it.
+     */
+    boolean spooled(List<EncodedSpan> message, Throwable t)
+    {
+      Call.propagateIfFatal(t);
+      if (spool == null || t instanceof RejectedMessageException || !spool.append(message))
+      {
+        return false;
+      }
+      asyncMetrics().incrementMessagesSpooled();
+      asyncMetrics().incrementSpansSpooled(message.size());
+      logger.warn(format("Spooled %s spans due to %s", message.size(), t.getClass().getSimpleName()), t);
+      replaying.lock();
+      try
+      {
+        backOff();
+      } finally
+      {
+        replaying.unlock();
+      }
+      updateSpoolMetrics();
+      return true;
+    }
+
+    /**
+     * Sends spooled messages, oldest first, unless backing off from a failure. Stops once the
+     * pending queue is half full, so that replay does not crowd out new spans. Drops the oldest
+     * message once the collector rejects it, or it failed too many times.
+     */
+    void replaySpool()
+    {
+      if (spool == null || spool.isEmpty() || !replaying.tryLock())
+      {
+        return;
+      }
+      try
+      {
+        if (System.nanoTime() - nextReplayNanoTime < 0)
+        {
+          return;
+        }
+        CheckResult check = sender.check();
+        if (!check.ok())
+        {
+          logger.debug("Not replaying spooled spans as the sender is unavailable", check.error());
+          backOff();
+          return;
+        }
+        List<byte[]> message;
+        while (pending.count() < pending.maxSize() / 2 && (message = spool.peek()) != null)
+        {
+          try
+          {
+            sender.sendSpans(message).execute();
+          } catch (Throwable t)
+          {
+            Call.propagateIfFatal(t);
+            if (t instanceof RejectedMessageException || ++headReplayFailures >= spoolMaxReplayAttempts)
+            {
+              spool.remove();
+              headReplayFailures = 0;
+              messageDropped(message.size(), t);
+            } else
+            {
+              logger.debug("Failed to replay spooled spans", t);
+            }
+            backOff();
+            return;
+          }
+          spool.remove();
+          headReplayFailures = 0;
+          asyncMetrics().incrementMessagesReplayed();
+          asyncMetrics().incrementSpansReplayed(message.size());
+        }
+        spoolBackoffNanos = spoolReplayBackoffNanos; // the collector has recovered
+      } finally
+      {
+        replaying.unlock();
+        updateSpoolMetrics();
+      }
+    }
+
+    /**
+     * Delays the next replay, doubling the delay each time. Must hold {@link #replaying}.
+     */
+    void backOff()
+    {
+      nextReplayNanoTime = System.nanoTime() + spoolBackoffNanos;
+      spoolBackoffNanos = Math.max(spoolReplayBackoffNanos, Math.min(spoolBackoffNanos * 2, MAX_SPOOL_BACKOFF_NANOS));
+    }
+
+    void updateSpoolMetrics()
+    {
+      asyncMetrics().updateSpooledMessages(spool.count());
+      asyncMetrics().updateSpooledBytes(spool.sizeInBytes());
+    }
+
+    AsyncReporterMetrics asyncMetrics()
+    {
+      return metrics instanceof AsyncReporterMetrics ? (AsyncReporterMetrics) metrics : NOOP_ASYNC_METRICS;
+    }
+
+    void messageDropped(int count, Throwable t)
+    {
+      messageDropped(count, t, t instanceof RejectedMessageException ? DropCause.REJECTED : DropCause.SEND_FAILED);
+    }
+
+    void messageDropped(int count, Throwable t, DropCause cause)
+    {
+      // In failure case, we increment messages and spans dropped.
+      Call.propagateIfFatal(t);
+      metrics.incrementMessagesDropped(t);
+      incrementSpansDropped(count, cause);
+
+      logger.warn(
+          format("Dropped %s spans due to %s", count, t.getClass().getSimpleName()), t);
+    }
+
+    static void release(List<EncodedSpan> message)
+    {
+      for (int i = 0, length = message.size(); i < length; i++)
+      {
+        message.get(i).release();
+      }
+    }
+
+    Call<Void> send(List<EncodedSpan> nextMessage)
+    {
+      if (sender instanceof EncodedSpanSender)
+      {
+        return ((EncodedSpanSender) sender).sendEncodedSpans(nextMessage);
+      }
+      // senders that only accept one array per span get copies
+      List<byte[]> encodedSpans = new ArrayList<>(nextMessage.size());
+      for (int i = 0, length = nextMessage.size(); i < length; i++)
+      {
+        encodedSpans.add(nextMessage.get(i).toByteArray());
       }
+      return sender.sendSpans(encodedSpans);
     }
 
     @Override
@@ -450,6 +973,20 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
       return sender.check();
     }
 
+    @Override
+    public float queueUtilization()
+    {
+      float spans = (float) pending.count() / pending.maxSize();
+      float bytes = (float) pending.sizeInBytes() / pending.maxBytes();
+      return Math.min(1, Math.max(spans, bytes));
+    }
+
+    @Override
+    public long totalSpansDropped()
+    {
+      return totalDroppedSpanCount.get();
+    }
+
     @Override
     public void close()
     {
@@ -458,24 +995,35 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
         return; // already closed
       }
       started.set(true); // prevent anything from starting the thread after close!
+      publishThreadBatches(true); // also wakes the flusher, so that it sends them
+      long deadlineNanoTime = System.nanoTime() + closeTimeoutNanos;
       try
       {
         // wait for in-flight spans to send
         if (!close.await(closeTimeoutNanos, TimeUnit.NANOSECONDS))
         {
           logger.warn("Timed out waiting for in-flight spans to send");
+        } else if (inFlight != null
+            && !inFlight.tryAcquire(maxInFlightMessages, deadlineNanoTime - System.nanoTime(), TimeUnit.NANOSECONDS))
+        {
+          logger.warn("Timed out waiting for in-flight messages to complete");
         }
       } catch (InterruptedException e)
       {
         logger.warn("Interrupted waiting for in-flight spans to send");
         Thread.currentThread().interrupt();
       }
+      publishThreadBatches(true); // so that spans reported meanwhile are counted below
       int count = pending.clear();
       if (count > 0)
       {
-        metrics.incrementSpansDropped(count);
+        incrementSpansDropped(count, DropCause.CLOSED);
         logger.warn("Dropped " + count + " spans due to AsyncReporter.close()");
       }
+      if (spool != null)
+      {
+        spool.close(); // messages not yet replayed are replayed by the next reporter to use it
+      }
     }
 
     Builder toBuilder()
@@ -488,6 +1036,95 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
     {
       return "AsyncReporter{" + sender + "}";
     }
+
+    /**
+     * Completes a message sent with {@link Call#enqueue(Callback)}, returning its buffers, its share of
+     * the byte bound and its slot in the in-flight window.
+     */
+    final class InFlightMessage implements Callback<Void>
+    {
+      final List<EncodedSpan> message;
+      final int sizeInBytes;
+      final long sendStartNanoTime = System.nanoTime();
+
+      InFlightMessage(List<EncodedSpan> message, int sizeInBytes)
+      {
+        this.message = message;
+        this.sizeInBytes = sizeInBytes;
+      }
+
+      @Override
+      public void onSuccess(Void value)
+      {
+        complete();
+      }
+
+      @Override
+      public void onError(Throwable t)
+      {
+        try
+        {
+          if (!spooled(message, t))
+          {
+            messageDropped(message.size(), t);
+          }
+        } finally
+        {
+          complete();
+        }
+      }
+
+      void complete()
+      {
+        asyncMetrics().recordSendNanos(System.nanoTime() - sendStartNanoTime);
+        release(message);
+        pending.releaseInFlight(sizeInBytes);
+        inFlight.release();
+      }
+    }
+  }
+
+  static final class NoopAsyncReporterMetrics implements AsyncReporterMetrics
+  {
+    @Override
+    public void incrementMessages()
+    {
+    }
+
+    @Override
+    public void incrementMessagesDropped(Throwable cause)
+    {
+    }
+
+    @Override
+    public void incrementSpans(int quantity)
+    {
+    }
+
+    @Override
+    public void incrementSpanBytes(int quantity)
+    {
+    }
+
+    @Override
+    public void incrementMessageBytes(int quantity)
+    {
+    }
+
+    @Override
+    public void incrementSpansDropped(int quantity)
+    {
+    }
+
+    @Override
+    public void updateQueuedSpans(int update)
+    {
+    }
+
+    @Override
+    public void updateQueuedBytes(int update)
+    {
+    }
   }
 
   static final class Flusher<S> implements Runnable
@@ -495,9 +1132,9 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
     static final Logger logger = LoggerFactory.getLogger(Flusher.class);
 
     final BoundedAsyncReporter<S> result;
-    final BufferNextMessage<S> consumer;
+    final BufferNextMessage<EncodedSpan> consumer;
 
-    Flusher(BoundedAsyncReporter<S> result, BufferNextMessage<S> consumer)
+    Flusher(BoundedAsyncReporter<S> result, BufferNextMessage<EncodedSpan> consumer)
     {
       this.result = result;
       this.consumer = consumer;
@@ -512,6 +1149,12 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
         {
           result.flush(consumer);
         }
+        // send what thread batches still hold, including those of threads that have since died
+        result.publishThreadBatches(true);
+        if (result.pending.count() > 0)
+        {
+          result.flush(consumer);
+        }
       } catch (RuntimeException | Error e)
       {
         logger.warn("Unexpected error flushing spans", e);
@@ -521,7 +1164,7 @@ public abstract class AsyncReporter<S> extends Component implements Reporter<S>,
         int count = consumer.count();
         if (count > 0)
         {
-          result.metrics.incrementSpansDropped(count);
+          result.incrementSpansDropped(count, DropCause.CLOSED);
           logger.warn("Dropped " + count + " spans due to AsyncReporter.close()");
         }
         result.close.countDown();
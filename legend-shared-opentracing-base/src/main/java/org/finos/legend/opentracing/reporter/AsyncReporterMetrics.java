@@ -0,0 +1,121 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+import java.nio.file.Path;
+import zipkin2.reporter.ReporterMetrics;
+
+/**
+ * {@link ReporterMetrics} that also receives events specific to {@link AsyncReporter}. Every method
+ * defaults to doing nothing, so implementations only override what they record.
+ */
+public interface AsyncReporterMetrics extends ReporterMetrics
+{
+  /**
+   * Why spans were dropped.
+   */
+  enum DropCause
+  {
+    /**
+     * The queue of spans pending send was full.
+     */
+    QUEUE_FULL,
+    /**
+     * The span alone was larger than a message may be.
+     */
+    TOO_LARGE,
+    /**
+     * The message holding the span failed to send and could not be spooled, or failed every replay
+     * from the spool.
+     */
+    SEND_FAILED,
+    /**
+     * The collector rejected the message holding the span.
+     */
+    REJECTED,
+    /**
+     * The reporter was closed before the span was sent.
+     */
+    CLOSED
+  }
+
+  /**
+   * Increments count of spans dropped for the given cause. {@link AsyncReporter} calls this as well
+   * as {@link #incrementSpansDropped(int)}.
+   */
+  default void incrementSpansDropped(DropCause cause, int quantity)
+  {
+  }
+
+  /**
+   * Increments count of messages that could not be sent and were written to the {@link
+   * AsyncReporter.Builder#spool(Path, long) spool} instead of dropped.
+   */
+  default void incrementMessagesSpooled()
+  {
+  }
+
+  default void incrementSpansSpooled(int quantity)
+  {
+  }
+
+  /**
+   * Increments count of spooled messages sent once the collector recovered.
+   */
+  default void incrementMessagesReplayed()
+  {
+  }
+
+  default void incrementSpansReplayed(int quantity)
+  {
+  }
+
+  /**
+   * Updates the count of spooled messages not yet replayed.
+   */
+  default void updateSpooledMessages(int quantity)
+  {
+  }
+
+  /**
+   * Updates the size of spooled messages not yet replayed, which {@link
+   * AsyncReporter.Builder#spool(Path, long)} bounds.
+   */
+  default void updateSpooledBytes(long quantity)
+  {
+  }
+
+  /**
+   * Records how long the reporter took to bundle a message and hand it to the sender, including its
+   * send unless messages are sent asynchronously.
+   */
+  default void recordFlushNanos(long nanos)
+  {
+  }
+
+  /**
+   * Records how long the sender took to send a message, successfully or not.
+   */
+  default void recordSendNanos(long nanos)
+  {
+  }
+
+  /**
+   * Updates the probability with which new traces are sampled, for samplers that adjust it.
+   */
+  default void updateSamplingRate(float rate)
+  {
+  }
+}
@@ -0,0 +1,79 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+/**
+ * Queue of spans pending send, bounded by both count and size in bytes.
+ */
+abstract class BoundedQueue<S> implements SpanWithSizeConsumer<S>
+{
+  static <S> BoundedQueue<S> create(AsyncReporter.QueueType queueType, int maxSize, int maxBytes)
+  {
+    switch (queueType)
+    {
+      case LOCKING:
+        return new ByteBoundedQueue<>(maxSize, maxBytes);
+      case LOCK_FREE:
+        return new MpscByteBoundedQueue<>(maxSize, maxBytes);
+      default:
+        throw new UnsupportedOperationException("queueType: " + queueType);
+    }
+  }
+
+  /**
+   * Counts a span that is not yet offered against the bounds, so that it can later be {@link
+   * #publishReserved(Object[], int[], int) published} without being refused. Returns false if it
+   * does not fit.
+   */
+  abstract boolean reserve(int sizeInBytes);
+
+  /**
+   * Adds the first {@code count} spans, which were each {@link #reserve(int) reserved}, as one
+   * operation. Unlike offers, this always succeeds.
+   */
+  abstract void publishReserved(S[] spans, int[] sizes, int count);
+
+  /**
+   * Blocks for up to nanosTimeout for spans to appear. Then, consume as many as possible.
+   */
+  abstract int drainTo(SpanWithSizeConsumer<S> consumer, long nanosTimeout) throws InterruptedException;
+
+  /**
+   * Clears the queue unconditionally and returns count of spans cleared.
+   */
+  abstract int clear();
+
+  /**
+   * Counts bytes of spans that were drained, but are not yet sent, against {@link #maxBytes()} until
+   * they are {@link #releaseInFlight(int) released}. Unlike offers, this always succeeds.
+   */
+  abstract void reserveInFlight(int sizeInBytes);
+
+  abstract void releaseInFlight(int sizeInBytes);
+
+  /**
+   * Count of spans queued or reserved.
+   */
+  abstract int count();
+
+  /**
+   * Size of spans queued or reserved, excluding in-flight bytes.
+   */
+  abstract int sizeInBytes();
+
+  abstract int maxSize();
+
+  abstract int maxBytes();
+}
@@ -14,12 +14,17 @@
 
 package org.finos.legend.opentracing.reporter;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.List;
 import zipkin2.codec.Encoding;
 
+/**
+ * Spans for the next message, in a ring of parallel arrays of spans and their sizes. The total size
+ * of the spans is kept as they are added and drained, so sizing the message is O(1) per span for
+ * every encoding.
+ */
 abstract class BufferNextMessage<S> implements SpanWithSizeConsumer<S>
 {
+  static final int INITIAL_CAPACITY = 16;
 
   static <S> BufferNextMessage<S> create(Encoding encoding, int maxBytes, long timeoutNanos)
   {
@@ -38,11 +43,13 @@ abstract class BufferNextMessage<S> implements SpanWithSizeConsumer<S>
 
   final int maxBytes;
   final long timeoutNanos;
-  final ArrayList<S> spans = new ArrayList<>();
-  final ArrayList<Integer> sizes = new ArrayList<>();
+  Object[] spans = new Object[INITIAL_CAPACITY];
+  int[] sizes = new int[INITIAL_CAPACITY];
+  int head; // index of the oldest span
+  int count;
+  int spansSizeInBytes; // sum of sizes, excluding list overhead
 
   long deadlineNanoTime;
-  int messageSizeInBytes;
   boolean bufferFull;
 
   BufferNextMessage(int maxBytes, long timeoutNanos)
@@ -51,80 +58,36 @@ abstract class BufferNextMessage<S> implements SpanWithSizeConsumer<S>
     this.timeoutNanos = timeoutNanos;
   }
 
-  abstract int messageSizeInBytes(int nextSizeInBytes);
-
-  abstract void resetMessageSizeInBytes();
+  /**
+   * Size of a message holding count spans whose sizes add up to spansSizeInBytes.
+   */
+  abstract int messageSizeInBytes(int count, int spansSizeInBytes);
 
   static final class BufferNextJsonMessage<S> extends BufferNextMessage<S>
   {
-    boolean hasAtLeastOneSpan;
-
     BufferNextJsonMessage(int maxBytes, long timeoutNanos)
     {
       super(maxBytes, timeoutNanos);
-      messageSizeInBytes = 2;
-      hasAtLeastOneSpan = false;
-    }
-
-    @Override
-    int messageSizeInBytes(int nextSizeInBytes)
-    {
-      return messageSizeInBytes + nextSizeInBytes + (hasAtLeastOneSpan ? 1 : 0);
-    }
-
-    @Override
-    void resetMessageSizeInBytes()
-    {
-      int length = sizes.size();
-      hasAtLeastOneSpan = length > 0;
-      if (length < 2)
-      {
-        messageSizeInBytes = 2;
-        if (hasAtLeastOneSpan)
-        {
-          messageSizeInBytes += sizes.get(0);
-        }
-      } else
-      {
-        messageSizeInBytes = 2 + length - 1; // [] and commas
-        for (int i = 0; i < length; i++)
-        {
-          messageSizeInBytes += sizes.get(i);
-        }
-      }
     }
 
     @Override
-    void addSpanToBuffer(S next, int nextSizeInBytes)
+    int messageSizeInBytes(int count, int spansSizeInBytes)
     {
-      super.addSpanToBuffer(next, nextSizeInBytes);
-      hasAtLeastOneSpan = true;
+      return 2 + spansSizeInBytes + Math.max(count - 1, 0); // [] and commas
     }
   }
 
   static final class BufferNextThriftMessage<S> extends BufferNextMessage<S>
   {
-
     BufferNextThriftMessage(int maxBytes, long timeoutNanos)
     {
       super(maxBytes, timeoutNanos);
-      messageSizeInBytes = 5;
-    }
-
-    @Override
-    int messageSizeInBytes(int nextSizeInBytes)
-    {
-      return messageSizeInBytes + nextSizeInBytes;
     }
 
     @Override
-    void resetMessageSizeInBytes()
+    int messageSizeInBytes(int count, int spansSizeInBytes)
     {
-      messageSizeInBytes = 5;
-      for (int i = 0, length = sizes.size(); i < length; i++)
-      {
-        messageSizeInBytes += sizes.get(i);
-      }
+      return 5 + spansSizeInBytes; // list type and count
     }
   }
 
@@ -139,19 +102,9 @@ abstract class BufferNextMessage<S> implements SpanWithSizeConsumer<S>
      * proto3 repeated fields are simply concatenated. there is no other overhead
      */
     @Override
-    int messageSizeInBytes(int nextSizeInBytes)
+    int messageSizeInBytes(int count, int spansSizeInBytes)
     {
-      return messageSizeInBytes += nextSizeInBytes;
-    }
-
-    @Override
-    void resetMessageSizeInBytes()
-    {
-      messageSizeInBytes = 0;
-      for (int i = 0, length = sizes.size(); i < length; i++)
-      {
-        messageSizeInBytes += sizes.get(i);
-      }
+      return spansSizeInBytes;
     }
   }
 
@@ -161,9 +114,8 @@ abstract class BufferNextMessage<S> implements SpanWithSizeConsumer<S>
   @Override
   public boolean offer(S next, int nextSizeInBytes)
   {
-    int x = messageSizeInBytes(nextSizeInBytes);
-    int y = maxBytes;
-    int includingNextVsMaxBytes = (x < y) ? -1 : ((x == y) ? 0 : 1); // Integer.compare, but JRE 6
+    int x = messageSizeInBytes(count + 1, spansSizeInBytes + nextSizeInBytes);
+    int includingNextVsMaxBytes = Integer.compare(x, maxBytes);
 
     if (includingNextVsMaxBytes > 0)
     {
@@ -171,8 +123,15 @@ abstract class BufferNextMessage<S> implements SpanWithSizeConsumer<S>
       return false; // can't fit the next message into this buffer
     }
 
-    addSpanToBuffer(next, nextSizeInBytes);
-    messageSizeInBytes = x;
+    if (count == spans.length)
+    {
+      grow();
+    }
+    int tail = (head + count) & (spans.length - 1);
+    spans[tail] = next;
+    sizes[tail] = nextSizeInBytes;
+    count++;
+    spansSizeInBytes += nextSizeInBytes;
 
     if (includingNextVsMaxBytes == 0)
     {
@@ -181,15 +140,27 @@ abstract class BufferNextMessage<S> implements SpanWithSizeConsumer<S>
     return true;
   }
 
-  void addSpanToBuffer(S next, int nextSizeInBytes)
+  /**
+   * Doubles the ring, unwrapping it so that the oldest span is at index zero.
+   */
+  void grow()
   {
-    spans.add(next);
-    sizes.add(nextSizeInBytes);
+    int capacity = spans.length;
+    Object[] newSpans = new Object[capacity << 1];
+    int[] newSizes = new int[capacity << 1];
+    int firstPart = capacity - head;
+    System.arraycopy(spans, head, newSpans, 0, firstPart);
+    System.arraycopy(spans, 0, newSpans, firstPart, head);
+    System.arraycopy(sizes, head, newSizes, 0, firstPart);
+    System.arraycopy(sizes, 0, newSizes, firstPart, head);
+    spans = newSpans;
+    sizes = newSizes;
+    head = 0;
   }
 
   long remainingNanos()
   {
-    if (spans.isEmpty())
+    if (count == 0)
     {
       deadlineNanoTime = System.nanoTime() + timeoutNanos;
     }
@@ -201,33 +172,81 @@ abstract class BufferNextMessage<S> implements SpanWithSizeConsumer<S>
     return bufferFull || remainingNanos() <= 0;
   }
 
-  // this occurs off the application thread
+  /**
+   * Offers spans to the consumer, oldest first, until it rejects one. Rejected spans stay buffered,
+   * in order, for the next message. This occurs off the application thread.
+   */
+  @SuppressWarnings("unchecked")
   void drain(SpanWithSizeConsumer<S> consumer)
   {
-    Iterator<S> spanIterator = spans.iterator();
-    Iterator<Integer> sizeIterator = sizes.iterator();
-    while (spanIterator.hasNext())
+    int mask = spans.length - 1;
+    while (count > 0)
     {
-      if (consumer.offer(spanIterator.next(), sizeIterator.next()))
+      S next = (S) spans[head];
+      int nextSizeInBytes = sizes[head];
+      if (!consumer.offer(next, nextSizeInBytes))
       {
-        bufferFull = false;
-        spanIterator.remove();
-        sizeIterator.remove();
+        break;
       }
+      bufferFull = false;
+      spans[head] = null;
+      head = (head + 1) & mask;
+      count--;
+      spansSizeInBytes -= nextSizeInBytes;
+    }
+    if (count == 0)
+    {
+      head = 0;
     }
-
-    resetMessageSizeInBytes();
     // regardless, reset the clock
     deadlineNanoTime = 0;
   }
 
+  /**
+   * Drains the oldest spans into the message while it fits in messageMaxBytes, returning its size
+   * in bytes. The first span is always taken, so that every call makes progress.
+   */
+  int drainTo(List<? super S> message, int messageMaxBytes)
+  {
+    NextMessage nextMessage = new NextMessage(message, messageMaxBytes);
+    drain(nextMessage);
+    return messageSizeInBytes(nextMessage.count, nextMessage.spansSizeInBytes);
+  }
+
+  final class NextMessage implements SpanWithSizeConsumer<S>
+  {
+    final List<? super S> message;
+    final int messageMaxBytes;
+    int count;
+    int spansSizeInBytes;
+
+    NextMessage(List<? super S> message, int messageMaxBytes)
+    {
+      this.message = message;
+      this.messageMaxBytes = messageMaxBytes;
+    }
+
+    @Override
+    public boolean offer(S next, int nextSizeInBytes)
+    {
+      if (count > 0 && messageSizeInBytes(count + 1, spansSizeInBytes + nextSizeInBytes) > messageMaxBytes)
+      {
+        return false;
+      }
+      message.add(next);
+      count++;
+      spansSizeInBytes += nextSizeInBytes;
+      return true;
+    }
+  }
+
   int count()
   {
-    return spans.size();
+    return count;
   }
 
   int sizeInBytes()
   {
-    return messageSizeInBytes;
+    return messageSizeInBytes(count, spansSizeInBytes);
   }
 }
@@ -23,7 +23,7 @@ import java.util.concurrent.locks.ReentrantLock;
  *
  * <p>This is similar to {@link java.util.concurrent.ArrayBlockingQueue} in implementation.
  */
-final class ByteBoundedQueue<S> implements SpanWithSizeConsumer<S>
+final class ByteBoundedQueue<S> extends BoundedQueue<S>
 {
 
   final ReentrantLock lock = new ReentrantLock(false);
@@ -36,6 +36,9 @@ final class ByteBoundedQueue<S> implements SpanWithSizeConsumer<S>
   final int[] sizesInBytes;
   int count;
   int sizeInBytes;
+  int reservedCount;
+  int reservedBytes;
+  int inFlightBytes;
   int writePos;
   int readPos;
 
@@ -57,37 +60,85 @@ final class ByteBoundedQueue<S> implements SpanWithSizeConsumer<S>
     lock.lock();
     try
     {
-      if (count == maxSize)
+      return doOffer(next, nextSizeInBytes);
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  boolean reserve(int sizeInBytes)
+  {
+    lock.lock();
+    try
+    {
+      if (!fits(sizeInBytes))
       {
         return false;
       }
-      if (sizeInBytes + nextSizeInBytes > maxBytes)
+      reservedCount++;
+      reservedBytes += sizeInBytes;
+      return true;
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  void publishReserved(S[] spans, int[] sizes, int count)
+  {
+    lock.lock();
+    try
+    {
+      for (int i = 0; i < count; i++)
       {
-        return false;
+        reservedCount--;
+        reservedBytes -= sizes[i];
+        enqueue(spans[i], sizes[i]);
       }
+    } finally
+    {
+      lock.unlock();
+    }
+  }
 
-      elements[writePos] = next;
-      sizesInBytes[writePos++] = nextSizeInBytes;
+  boolean fits(int nextSizeInBytes)
+  {
+    return count + reservedCount < maxSize && sizeInBytes + reservedBytes + inFlightBytes + nextSizeInBytes <= maxBytes;
+  }
 
-      if (writePos == maxSize)
-      {
-        writePos = 0; // circle back to the front of the array
-      }
+  boolean doOffer(S next, int nextSizeInBytes)
+  {
+    if (!fits(nextSizeInBytes))
+    {
+      return false;
+    }
+    enqueue(next, nextSizeInBytes);
+    return true;
+  }
 
-      count++;
-      sizeInBytes += nextSizeInBytes;
+  void enqueue(S next, int nextSizeInBytes)
+  {
+    elements[writePos] = next;
+    sizesInBytes[writePos++] = nextSizeInBytes;
 
-      available.signal(); // alert any drainers
-      return true;
-    } finally
+    if (writePos == maxSize)
     {
-      lock.unlock();
+      writePos = 0; // circle back to the front of the array
     }
+
+    count++;
+    sizeInBytes += nextSizeInBytes;
+
+    available.signal(); // alert any drainers
   }
 
   /**
    * Blocks for up to nanosTimeout for spans to appear. Then, consume as many as possible.
    */
+  @Override
   int drainTo(SpanWithSizeConsumer<S> consumer, long nanosTimeout) throws InterruptedException
   {
     // This may be called by multiple threads. If one is holding a lock, another is waiting. We
@@ -114,6 +165,7 @@ final class ByteBoundedQueue<S> implements SpanWithSizeConsumer<S>
   /**
    * Clears the queue unconditionally and returns count of spans cleared.
    */
+  @Override
   int clear()
   {
     lock.lock();
@@ -129,6 +181,56 @@ final class ByteBoundedQueue<S> implements SpanWithSizeConsumer<S>
     }
   }
 
+  @Override
+  void reserveInFlight(int sizeInBytes)
+  {
+    lock.lock();
+    try
+    {
+      inFlightBytes += sizeInBytes;
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  void releaseInFlight(int sizeInBytes)
+  {
+    lock.lock();
+    try
+    {
+      inFlightBytes -= sizeInBytes;
+    } finally
+    {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  int count()
+  {
+    return count + reservedCount;
+  }
+
+  @Override
+  int sizeInBytes()
+  {
+    return sizeInBytes + reservedBytes;
+  }
+
+  @Override
+  int maxSize()
+  {
+    return maxSize;
+  }
+
+  @Override
+  int maxBytes()
+  {
+    return maxBytes;
+  }
+
   int doDrain(SpanWithSizeConsumer<S> consumer)
   {
     int drainedCount = 0;
@@ -0,0 +1,329 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * First-in, first-out store of messages that could not be sent, kept in memory-mapped segment files
+ * of a fixed size so that they survive a restart.
+ *
+ * <p>Each record is a message: its length, its count of spans, then each span's length and bytes.
+ * The record's length is written last, so a record cut short by a crash reads as the end of its
+ * segment. Once replayed, its length is negated, so that it is not replayed again after a restart.
+ * Segments are deleted once every record in them has been replayed, and no more than {@code
+ * maxBytes / segmentBytes} segments exist at once.
+ *
+ * <p>Methods are synchronized, as messages are spooled from the flusher thread and from callbacks of
+ * asynchronous sends.
+ */
+final class DiskSpool implements Closeable
+{
+  static final Logger logger = LoggerFactory.getLogger(DiskSpool.class);
+  static final String SEGMENT_PREFIX = "spans-";
+  static final String SEGMENT_SUFFIX = ".spool";
+  static final int RECORD_HEADER_BYTES = 8;
+
+  final Path directory;
+  final int segmentBytes;
+  final int maxSegments;
+  final ArrayDeque<Segment> segments = new ArrayDeque<>(); // oldest first; only the last is written
+  long nextSequence;
+  long sizeInBytes;
+  int count;
+  boolean closed;
+
+  DiskSpool(Path directory, long maxBytes, int segmentBytes) throws IOException
+  {
+    if (maxBytes < segmentBytes)
+    {
+      throw new IllegalArgumentException("spool maxBytes < segmentBytes: " + maxBytes);
+    }
+    this.directory = Files.createDirectories(directory);
+    this.segmentBytes = segmentBytes;
+    this.maxSegments = (int) Math.min(Integer.MAX_VALUE, maxBytes / segmentBytes);
+    recover();
+  }
+
+  /**
+   * Picks up segments left by a previous process, in the order they were written. They are replayed
+   * but never appended to.
+   */
+  void recover() throws IOException
+  {
+    List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX))
+    {
+      stream.forEach(paths::add);
+    }
+    Collections.sort(paths); // names are zero-padded sequence numbers
+    for (Path path : paths)
+    {
+      String name = path.getFileName().toString();
+      long sequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+      nextSequence = Math.max(nextSequence, sequence + 1);
+      Segment segment = new Segment(path, map(path, (int) Math.min(Integer.MAX_VALUE, Files.size(path))));
+      segment.recover();
+      segment.sealed = true;
+      if (segment.count == 0)
+      {
+        delete(segment);
+        continue;
+      }
+      if (segments.size() == maxSegments)
+      {
+        logger.warn("Deleting spooled spans in " + path + " as they exceed the spool's size");
+        delete(segment);
+        continue;
+      }
+      segments.add(segment);
+      count += segment.count;
+      sizeInBytes += segment.writePosition - segment.readPosition;
+    }
+  }
+
+  /**
+   * Returns false if the message cannot be spooled without exceeding the spool's size.
+   */
+  synchronized boolean append(List<EncodedSpan> message)
+  {
+    if (closed)
+    {
+      return false;
+    }
+    int recordBytes = RECORD_HEADER_BYTES;
+    for (int i = 0, length = message.size(); i < length; i++)
+    {
+      recordBytes += 4 + message.get(i).length;
+    }
+    if (recordBytes > segmentBytes)
+    {
+      return false;
+    }
+
+    Segment tail = segments.peekLast();
+    if (tail == null || tail.sealed || tail.writePosition + recordBytes > segmentBytes)
+    {
+      if (tail != null && !tail.sealed)
+      {
+        tail.sealed = true;
+        if (tail.count == 0)
+        {
+          segments.removeLast();
+          delete(tail);
+        }
+      }
+      if (segments.size() == maxSegments)
+      {
+        return false;
+      }
+      try
+      {
+        tail = newSegment();
+      } catch (IOException e)
+      {
+        logger.warn("Could not create a spool segment in " + directory, e);
+        return false;
+      }
+      segments.add(tail);
+    }
+
+    MappedByteBuffer buffer = tail.buffer;
+    int start = tail.writePosition;
+    buffer.position(start + 4);
+    buffer.putInt(message.size());
+    for (int i = 0, length = message.size(); i < length; i++)
+    {
+      EncodedSpan span = message.get(i);
+      buffer.putInt(span.length);
+      buffer.put(span.bytes, span.offset, span.length);
+    }
+    buffer.putInt(start, recordBytes); // commits the record
+    tail.writePosition += recordBytes;
+    tail.count++;
+    sizeInBytes += recordBytes;
+    count++;
+    return true;
+  }
+
+  /**
+   * Returns the spans of the oldest message, or null if there are none.
+   */
+  synchronized List<byte[]> peek()
+  {
+    Segment head = head();
+    if (head == null)
+    {
+      return null;
+    }
+    MappedByteBuffer buffer = head.buffer;
+    buffer.position(head.readPosition + 4);
+    int spanCount = buffer.getInt();
+    List<byte[]> result = new ArrayList<>(spanCount);
+    for (int i = 0; i < spanCount; i++)
+    {
+      byte[] span = new byte[buffer.getInt()];
+      buffer.get(span);
+      result.add(span);
+    }
+    return result;
+  }
+
+  /**
+   * Removes the oldest message, once it has been replayed.
+   */
+  synchronized void remove()
+  {
+    Segment head = head();
+    if (head == null)
+    {
+      return;
+    }
+    int recordBytes = head.buffer.getInt(head.readPosition);
+    head.buffer.putInt(head.readPosition, -recordBytes);
+    head.readPosition += recordBytes;
+    head.count--;
+    sizeInBytes -= recordBytes;
+    count--;
+    head();
+  }
+
+  /**
+   * Returns the oldest segment with a message, deleting sealed segments that have none left.
+   */
+  Segment head()
+  {
+    Segment head;
+    while ((head = segments.peekFirst()) != null && head.count == 0)
+    {
+      if (!head.sealed)
+      {
+        return null;
+      }
+      segments.removeFirst();
+      delete(head);
+    }
+    return head;
+  }
+
+  synchronized boolean isEmpty()
+  {
+    return count == 0;
+  }
+
+  synchronized int count()
+  {
+    return count;
+  }
+
+  /**
+   * Size of the messages not yet replayed.
+   */
+  synchronized long sizeInBytes()
+  {
+    return sizeInBytes;
+  }
+
+  @Override
+  public synchronized void close()
+  {
+    closed = true;
+    for (Segment segment : segments)
+    {
+      segment.buffer.force();
+    }
+  }
+
+  Segment newSegment() throws IOException
+  {
+    Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence++, SEGMENT_SUFFIX));
+    return new Segment(path, map(path, segmentBytes));
+  }
+
+  static MappedByteBuffer map(Path path, int size) throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(path,
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+    {
+      // the mapping stays valid once the channel is closed
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  static void delete(Segment segment)
+  {
+    try
+    {
+      Files.deleteIfExists(segment.path);
+    } catch (IOException e)
+    {
+      logger.warn("Could not delete spool segment " + segment.path, e);
+    }
+  }
+
+  static final class Segment
+  {
+    final Path path;
+    final MappedByteBuffer buffer;
+    int writePosition;
+    int readPosition;
+    int count; // messages not yet replayed
+    boolean sealed;
+
+    Segment(Path path, MappedByteBuffer buffer)
+    {
+      this.path = path;
+      this.buffer = buffer;
+    }
+
+    /**
+     * Finds the records committed by a previous process, skipping those it replayed.
+     */
+    void recover()
+    {
+      int capacity = buffer.capacity();
+      while (writePosition + RECORD_HEADER_BYTES <= capacity)
+      {
+        int length = buffer.getInt(writePosition);
+        int recordBytes = Math.abs(length);
+        if (recordBytes < RECORD_HEADER_BYTES || writePosition + recordBytes > capacity)
+        {
+          break;
+        }
+        writePosition += recordBytes;
+        if (length < 0) // replayed
+        {
+          readPosition = writePosition;
+        } else
+        {
+          count++;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,79 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A span encoded once, when reported, into a buffer that the reporter recycles after the span is
+ * sent. Senders must not retain an instance beyond the call that sends it.
+ */
+public final class EncodedSpan
+{
+  final EncodedSpanPool pool;
+  byte[] bytes;
+  int offset;
+  int length;
+
+  EncodedSpan(EncodedSpanPool pool, int capacity)
+  {
+    this.pool = pool;
+    this.bytes = new byte[capacity];
+  }
+
+  EncodedSpan(byte[] bytes)
+  {
+    this.pool = null;
+    this.bytes = bytes;
+    this.length = bytes.length;
+  }
+
+  public int sizeInBytes()
+  {
+    return length;
+  }
+
+  public void writeTo(OutputStream out) throws IOException
+  {
+    out.write(bytes, offset, length);
+  }
+
+  /**
+   * Copies the encoded span into dest at pos, returning the position after it.
+   */
+  public int writeTo(byte[] dest, int pos)
+  {
+    System.arraycopy(bytes, offset, dest, pos, length);
+    return pos + length;
+  }
+
+  public byte[] toByteArray()
+  {
+    return Arrays.copyOfRange(bytes, offset, offset + length);
+  }
+
+  /**
+   * Returns the buffer to the pool it came from, if any.
+   */
+  void release()
+  {
+    if (pool != null)
+    {
+      pool.release(this);
+    }
+  }
+}
@@ -0,0 +1,160 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import zipkin2.Span;
+import zipkin2.codec.BytesEncoder;
+import zipkin2.codec.Encoding;
+import zipkin2.codec.SpanBytesEncoder;
+
+/**
+ * Encodes spans into recycled buffers.
+ *
+ * <p>Buffers are acquired by reporting threads and released by whichever thread sends them, so the
+ * free list is a bounded multi-producer, multi-consumer array queue (Vyukov's algorithm) that never
+ * allocates. Buffers that grew past {@link #MAX_RETAINED_CAPACITY} are left to the garbage collector
+ * so that one huge span does not pin memory.
+ */
+final class EncodedSpanPool
+{
+  static final int MIN_CAPACITY = 256;
+  static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+  static final int MAX_POOLED = 1024;
+
+  final Encoding encoding;
+  final int mask;
+  final AtomicReferenceArray<EncodedSpan> free;
+  final AtomicLongArray sequences;
+  final AtomicLong enqueuePosition = new AtomicLong();
+  final AtomicLong dequeuePosition = new AtomicLong();
+
+  EncodedSpanPool(Encoding encoding, int maxPooled)
+  {
+    int capacity = 1;
+    while (capacity < Math.min(maxPooled, MAX_POOLED))
+    {
+      capacity <<= 1;
+    }
+    this.encoding = encoding;
+    this.mask = capacity - 1;
+    this.free = new AtomicReferenceArray<>(capacity);
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++)
+    {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Encodes the span, whose size in bytes the caller already knows, exactly once.
+   *
+   * <p>Zipkin's {@link SpanBytesEncoder} can only write into a caller's array as part of a list, so
+   * the span is written as a list of one and the list framing around it is skipped.
+   */
+  @SuppressWarnings("unchecked")
+  <S> EncodedSpan encode(BytesEncoder<S> encoder, S next, int nextSizeInBytes)
+  {
+    if (!(encoder instanceof SpanBytesEncoder))
+    {
+      return new EncodedSpan(encoder.encode(next));
+    }
+    int listSizeInBytes = encoding.listSizeInBytes(nextSizeInBytes);
+    EncodedSpan result = acquire(listSizeInBytes);
+    ((SpanBytesEncoder) encoder).encodeList(Collections.singletonList((Span) next), result.bytes, 0);
+    // JSON is the only encoding with a list suffix: the closing bracket
+    result.offset = encoding == Encoding.JSON ? 1 : listSizeInBytes - nextSizeInBytes;
+    result.length = nextSizeInBytes;
+    return result;
+  }
+
+  EncodedSpan acquire(int capacity)
+  {
+    EncodedSpan result = poll();
+    if (result == null)
+    {
+      return new EncodedSpan(this, Math.max(MIN_CAPACITY, capacity));
+    }
+    if (result.bytes.length < capacity)
+    {
+      result.bytes = new byte[Math.max(result.bytes.length * 2, capacity)];
+    }
+    return result;
+  }
+
+  void release(EncodedSpan span)
+  {
+    if (span.bytes.length <= MAX_RETAINED_CAPACITY)
+    {
+      offer(span);
+    }
+  }
+
+  boolean offer(EncodedSpan span)
+  {
+    long position = enqueuePosition.get();
+    while (true)
+    {
+      int index = (int) position & mask;
+      long difference = sequences.get(index) - position;
+      if (difference == 0)
+      {
+        if (enqueuePosition.compareAndSet(position, position + 1))
+        {
+          free.lazySet(index, span);
+          sequences.lazySet(index, position + 1);
+          return true;
+        }
+        position = enqueuePosition.get();
+      } else if (difference < 0)
+      {
+        return false; // full
+      } else
+      {
+        position = enqueuePosition.get();
+      }
+    }
+  }
+
+  EncodedSpan poll()
+  {
+    long position = dequeuePosition.get();
+    while (true)
+    {
+      int index = (int) position & mask;
+      long difference = sequences.get(index) - (position + 1);
+      if (difference == 0)
+      {
+        if (dequeuePosition.compareAndSet(position, position + 1))
+        {
+          EncodedSpan result = free.get(index);
+          free.lazySet(index, null);
+          sequences.lazySet(index, position + mask + 1);
+          return result;
+        }
+        position = dequeuePosition.get();
+      } else if (difference < 0)
+      {
+        return null; // empty
+      } else
+      {
+        position = dequeuePosition.get();
+      }
+    }
+  }
+}
@@ -0,0 +1,32 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+import java.util.List;
+import zipkin2.Call;
+import zipkin2.reporter.Sender;
+
+/**
+ * Implemented by a {@link Sender} that can build a message straight from the reporter's span
+ * buffers, instead of from one {@code byte[]} per span.
+ */
+public interface EncodedSpanSender
+{
+  /**
+   * Like {@link Sender#sendSpans(List)}. The spans are recycled once the returned call completes, so
+   * they must not be read after that.
+   */
+  Call<Void> sendEncodedSpans(List<EncodedSpan> encodedSpans);
+}
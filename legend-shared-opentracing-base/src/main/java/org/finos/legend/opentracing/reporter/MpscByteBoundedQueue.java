@@ -0,0 +1,293 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Multi-producer, single-consumer ring buffer that is bounded by both count and size.
+ *
+ * <p>Producers never take a lock: the count and byte bounds are packed into a single {@code long}
+ * so that both are checked and reserved with one compare-and-set, after which the producer claims
+ * a slot with a fetch-and-add and publishes into it. Drainers are serialized with a lock that is
+ * never touched by producers, as {@link AsyncReporter#flush()} may race with the flusher thread.
+ */
+final class MpscByteBoundedQueue<S> extends BoundedQueue<S>
+{
+  static final int COUNT_SHIFT = 32;
+  static final long BYTES_MASK = 0xFFFFFFFFL;
+
+  final int maxSize;
+  final int maxBytes;
+  final int mask;
+
+  final AtomicReferenceArray<S> elements;
+  final int[] sizesInBytes;
+
+  /**
+   * Count of reserved spans in the high 32 bits, and their size in bytes plus {@link #inFlightBytes}
+   * in the low 32 bits.
+   */
+  final AtomicLong reserved = new AtomicLong();
+  final AtomicInteger inFlightBytes = new AtomicInteger();
+  /**
+   * Count of spans {@link #reserve(int) reserved} ahead of being published, which drainers must not
+   * wait for.
+   */
+  final AtomicInteger unpublished = new AtomicInteger();
+  final AtomicLong writeSequence = new AtomicLong();
+
+  final ReentrantLock drainLock = new ReentrantLock(false);
+  long readSequence; // guarded by drainLock
+  volatile Thread waiter;
+
+  MpscByteBoundedQueue(int maxSize, int maxBytes)
+  {
+    int capacity = 1;
+    while (capacity < maxSize)
+    {
+      capacity <<= 1;
+    }
+    this.elements = new AtomicReferenceArray<>(capacity);
+    this.sizesInBytes = new int[capacity];
+    this.mask = capacity - 1;
+    this.maxSize = maxSize;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Returns true if the element could be added or false if it could not due to its size.
+   */
+  @Override
+  public boolean offer(S next, int nextSizeInBytes)
+  {
+    long current;
+    do
+    {
+      current = reserved.get();
+      if ((int) (current >>> COUNT_SHIFT) >= maxSize)
+      {
+        return false;
+      }
+      if ((current & BYTES_MASK) + nextSizeInBytes > maxBytes)
+      {
+        return false;
+      }
+    }
+    while (!reserved.compareAndSet(current, current + (1L << COUNT_SHIFT) + nextSizeInBytes));
+
+    // The reservation guarantees fewer than maxSize unconsumed slots, so this one is free.
+    int index = (int) writeSequence.getAndIncrement() & mask;
+    sizesInBytes[index] = nextSizeInBytes;
+    elements.lazySet(index, next); // publishes the size along with the span
+
+    Thread drainer = waiter;
+    if (drainer != null)
+    {
+      LockSupport.unpark(drainer); // alert any drainers
+    }
+    return true;
+  }
+
+  @Override
+  boolean reserve(int sizeInBytes)
+  {
+    long current;
+    do
+    {
+      current = reserved.get();
+      if ((int) (current >>> COUNT_SHIFT) >= maxSize)
+      {
+        return false;
+      }
+      if ((current & BYTES_MASK) + sizeInBytes > maxBytes)
+      {
+        return false;
+      }
+    }
+    while (!reserved.compareAndSet(current, current + (1L << COUNT_SHIFT) + sizeInBytes));
+    unpublished.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Claims slots for the reserved spans with a single fetch-and-add.
+   */
+  @Override
+  void publishReserved(S[] spans, int[] sizes, int count)
+  {
+    // before the slots are written, so that a drainer that sees neither waits for them
+    unpublished.addAndGet(-count);
+    long sequence = writeSequence.getAndAdd(count);
+    for (int i = 0; i < count; i++)
+    {
+      int index = (int) (sequence + i) & mask;
+      sizesInBytes[index] = sizes[i];
+      elements.lazySet(index, spans[i]);
+    }
+
+    Thread drainer = waiter;
+    if (drainer != null)
+    {
+      LockSupport.unpark(drainer);
+    }
+  }
+
+  /**
+   * Blocks for up to nanosTimeout for spans to appear. Then, consume as many as possible.
+   */
+  @Override
+  int drainTo(SpanWithSizeConsumer<S> consumer, long nanosTimeout) throws InterruptedException
+  {
+    drainLock.lockInterruptibly();
+    try
+    {
+      long deadlineNanoTime = System.nanoTime() + nanosTimeout;
+      long nanosLeft = nanosTimeout;
+      while (elements.get((int) readSequence & mask) == null)
+      {
+        if (nanosLeft <= 0)
+        {
+          return 0;
+        }
+        if (publishing())
+        {
+          // a producer has reserved, but not yet published, the next slot
+          Thread.yield();
+        } else
+        {
+          waiter = Thread.currentThread();
+          try
+          {
+            // re-check after advertising ourselves, so a concurrent offer cannot be missed
+            if (!publishing())
+            {
+              LockSupport.parkNanos(this, nanosLeft);
+            }
+          } finally
+          {
+            waiter = null;
+          }
+          if (Thread.interrupted())
+          {
+            throw new InterruptedException();
+          }
+        }
+        nanosLeft = deadlineNanoTime - System.nanoTime();
+      }
+      return doDrain(consumer);
+    } finally
+    {
+      drainLock.unlock();
+    }
+  }
+
+  /**
+   * Clears the queue unconditionally and returns count of spans cleared.
+   */
+  @Override
+  int clear()
+  {
+    drainLock.lock();
+    try
+    {
+      return doDrain((next, nextSizeInBytes) -> true);
+    } finally
+    {
+      drainLock.unlock();
+    }
+  }
+
+  @Override
+  void reserveInFlight(int sizeInBytes)
+  {
+    inFlightBytes.addAndGet(sizeInBytes);
+    reserved.addAndGet(sizeInBytes);
+  }
+
+  @Override
+  void releaseInFlight(int sizeInBytes)
+  {
+    reserved.addAndGet(-sizeInBytes);
+    inFlightBytes.addAndGet(-sizeInBytes);
+  }
+
+  /**
+   * Returns true if a producer is about to publish spans, as opposed to holding them in a batch.
+   */
+  boolean publishing()
+  {
+    return count() - unpublished.get() > 0;
+  }
+
+  @Override
+  int count()
+  {
+    return (int) (reserved.get() >>> COUNT_SHIFT);
+  }
+
+  @Override
+  int sizeInBytes()
+  {
+    // the two reads race with in-flight messages, which only matters to metrics
+    return (int) Math.max(0, (reserved.get() & BYTES_MASK) - inFlightBytes.get());
+  }
+
+  @Override
+  int maxSize()
+  {
+    return maxSize;
+  }
+
+  @Override
+  int maxBytes()
+  {
+    return maxBytes;
+  }
+
+  int doDrain(SpanWithSizeConsumer<S> consumer)
+  {
+    int drainedCount = 0;
+    long drainedSizeInBytes = 0;
+    while (true)
+    {
+      int index = (int) readSequence & mask;
+      S next = elements.get(index);
+      if (next == null)
+      {
+        break;
+      }
+      int nextSizeInBytes = sizesInBytes[index];
+      if (!consumer.offer(next, nextSizeInBytes))
+      {
+        break;
+      }
+      elements.lazySet(index, null);
+      readSequence++;
+      drainedCount++;
+      drainedSizeInBytes += nextSizeInBytes;
+    }
+    if (drainedCount > 0)
+    {
+      // only now may producers reuse the slots we consumed
+      reserved.addAndGet(-(((long) drainedCount << COUNT_SHIFT) + drainedSizeInBytes));
+    }
+    return drainedCount;
+  }
+}
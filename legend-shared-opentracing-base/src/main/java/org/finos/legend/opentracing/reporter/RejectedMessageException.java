@@ -0,0 +1,30 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a sender when the collector rejected a message, for example because it was too large
+ * or malformed, such that sending it again cannot succeed. {@link AsyncReporter} drops such
+ * messages rather than spooling or replaying them.
+ */
+public class RejectedMessageException extends IOException
+{
+  public RejectedMessageException(String message)
+  {
+    super(message);
+  }
+}
@@ -0,0 +1,82 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Small buffer of spans owned by one reporting thread, handed to the pending queue in one operation.
+ *
+ * <p>Every span is {@link BoundedQueue#reserve(int) reserved} in the queue before it is added, so
+ * batches never hold more than the queue's bounds allow.
+ *
+ * <p>Every method must be called while holding this batch's monitor. That monitor is only contended
+ * when the flusher publishes a batch on behalf of an idle or dead owner.
+ */
+final class SpanBatch
+{
+  final EncodedSpan[] spans;
+  final int[] sizesInBytes;
+  final WeakReference<Thread> owner;
+  int count;
+  long firstSpanNanoTime;
+
+  SpanBatch(int maxSize, Thread owner)
+  {
+    this.spans = new EncodedSpan[maxSize];
+    this.sizesInBytes = new int[maxSize];
+    this.owner = new WeakReference<>(owner);
+  }
+
+  /**
+   * Returns true if the batch is full after adding the span.
+   */
+  boolean add(EncodedSpan next, int nextSizeInBytes)
+  {
+    if (count == 0)
+    {
+      firstSpanNanoTime = System.nanoTime();
+    }
+    spans[count] = next;
+    sizesInBytes[count++] = nextSizeInBytes;
+    return count == spans.length;
+  }
+
+  boolean hasLingered(long nowNanoTime, long lingerNanos)
+  {
+    return count > 0 && nowNanoTime - firstSpanNanoTime >= lingerNanos;
+  }
+
+  boolean isOwnerAlive()
+  {
+    Thread thread = owner.get();
+    return thread != null && thread.isAlive();
+  }
+
+  /**
+   * Publishes all buffered spans to the queue and empties the batch.
+   */
+  void publishTo(BoundedQueue<EncodedSpan> queue)
+  {
+    if (count == 0)
+    {
+      return;
+    }
+    queue.publishReserved(spans, sizesInBytes, count);
+    Arrays.fill(spans, 0, count, null);
+    count = 0;
+  }
+}
@@ -0,0 +1,374 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import zipkin2.Span;
+import zipkin2.reporter.Reporter;
+
+/**
+ * Holds the finished spans of each trace until the trace is complete, then reports all of them to
+ * the delegate or none of them. A trace is kept if any of its spans has an {@code error} tag, as
+ * {@code OpenTracingFilter} sets on failed requests, if its root span took at least the latency
+ * threshold, or if it falls within the base rate.
+ *
+ * <p>A trace is complete once its local root finishes: a span without a parent, or a server span,
+ * whose parent is in the calling process. Children finish before their parents, so by then the other
+ * spans of the trace in this process have been buffered.
+ *
+ * <p>Memory is bounded by {@link Builder#maxSpans(int)}. When a span would exceed it, the oldest
+ * traces are decided early, as are traces that are still incomplete after {@link
+ * Builder#traceTimeout(long, TimeUnit)}, which a background thread checks for. Without their root,
+ * such traces are kept only for errors or by the base rate.
+ *
+ * <p>Use with a tracer that samples every trace, otherwise traces this would keep may never be
+ * recorded.
+ */
+public final class TailSamplingReporter implements Reporter<Span>, Closeable
+{
+  static final int PRECISION = 10_000;
+
+  public static Builder builder(Reporter<Span> delegate)
+  {
+    return new Builder(delegate);
+  }
+
+  public static final class Builder
+  {
+    final Reporter<Span> delegate;
+    float rate = 0.1f;
+    long latencyThresholdMicros = TimeUnit.SECONDS.toMicros(1);
+    int maxSpans = 10_000;
+    long traceTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+
+    Builder(Reporter<Span> delegate)
+    {
+      if (delegate == null)
+      {
+        throw new NullPointerException("delegate == null");
+      }
+      this.delegate = delegate;
+    }
+
+    /**
+     * Rate at which traces without errors and faster than the latency threshold are kept. Default
+     * 0.1.
+     */
+    public Builder rate(float rate)
+    {
+      if (rate < 0.0f || rate > 1.0f)
+      {
+        throw new IllegalArgumentException("rate should be between 0 and 1: was " + rate);
+      }
+      this.rate = rate;
+      return this;
+    }
+
+    /**
+     * Traces whose root span took at least this long are kept. Default 1 second.
+     */
+    public Builder latencyThreshold(long threshold, TimeUnit unit)
+    {
+      if (threshold < 0)
+      {
+        throw new IllegalArgumentException("threshold < 0: " + threshold);
+      }
+      this.latencyThresholdMicros = unit.toMicros(threshold);
+      return this;
+    }
+
+    /**
+     * Maximum count of spans held across all incomplete traces. Default 10000.
+     */
+    public Builder maxSpans(int maxSpans)
+    {
+      if (maxSpans <= 0)
+      {
+        throw new IllegalArgumentException("maxSpans <= 0: " + maxSpans);
+      }
+      this.maxSpans = maxSpans;
+      return this;
+    }
+
+    /**
+     * How long after its first span finishes an incomplete trace is decided anyway. Default 30
+     * seconds.
+     */
+    public Builder traceTimeout(long timeout, TimeUnit unit)
+    {
+      if (timeout <= 0)
+      {
+        throw new IllegalArgumentException("timeout <= 0: " + timeout);
+      }
+      this.traceTimeoutNanos = unit.toNanos(timeout);
+      return this;
+    }
+
+    public TailSamplingReporter build()
+    {
+      TailSamplingReporter result = new TailSamplingReporter(this, System::nanoTime);
+      long periodNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(100), traceTimeoutNanos / 4);
+      result.evictor.scheduleWithFixedDelay(result::evictExpired, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+      return result;
+    }
+  }
+
+  final Reporter<Span> delegate;
+  final long boundary;
+  final long latencyThresholdMicros;
+  final int maxSpans;
+  final long traceTimeoutNanos;
+  final LongSupplier nanoTime;
+  final ScheduledExecutorService evictor;
+  final ConcurrentHashMap<String, PendingTrace> pending = new ConcurrentHashMap<>();
+  /**
+   * Traces that were pending, oldest first. Also holds traces already decided, which are skipped once
+   * they reach the head.
+   */
+  final Queue<PendingTrace> order = new ConcurrentLinkedQueue<>();
+  final ReentrantLock evicting = new ReentrantLock(); // serializes consumers of order
+  final AtomicInteger spanCount = new AtomicInteger();
+  volatile boolean closed;
+
+  TailSamplingReporter(Builder builder, LongSupplier nanoTime)
+  {
+    this.delegate = builder.delegate;
+    this.boundary = (long) (builder.rate * PRECISION);
+    this.latencyThresholdMicros = builder.latencyThresholdMicros;
+    this.maxSpans = builder.maxSpans;
+    this.traceTimeoutNanos = builder.traceTimeoutNanos;
+    this.nanoTime = nanoTime;
+    this.evictor = Executors.newSingleThreadScheduledExecutor(r ->
+    {
+      Thread thread = new Thread(r, "TailSamplingReporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Buffers or decides the span. Spans of different traces only contend when they hash alike, as
+   * each trace is updated atomically in the pending map.
+   */
+  @Override
+  public void report(Span span)
+  {
+    if (span == null)
+    {
+      throw new NullPointerException("span == null");
+    }
+    if (closed)
+    {
+      return;
+    }
+    if (isLocalRoot(span))
+    {
+      // children that finish after this start a new trace, so the removed one is ours alone
+      PendingTrace trace = pending.remove(span.traceId());
+      if (trace == null)
+      {
+        trace = new PendingTrace(span.traceId(), 0);
+      } else
+      {
+        spanCount.addAndGet(-trace.spans.size());
+      }
+      trace.add(span);
+      decide(trace, span);
+      trace.spans.clear(); // the trace stays in order until it times out
+      return;
+    }
+    pending.compute(span.traceId(), (traceId, trace) ->
+    {
+      if (trace == null)
+      {
+        trace = new PendingTrace(traceId, nanoTime.getAsLong());
+        order.add(trace);
+      }
+      trace.add(span);
+      return trace;
+    });
+    int count = spanCount.incrementAndGet();
+    if (closed)
+    {
+      decideAll(); // close() may have decided every trace before this one was added
+    } else if (count > maxSpans)
+    {
+      evictOldest();
+    }
+  }
+
+  /**
+   * Evicts the oldest traces until the span bound is respected.
+   */
+  void evictOldest()
+  {
+    List<PendingTrace> evicted = new ArrayList<>();
+    evicting.lock();
+    try
+    {
+      PendingTrace trace;
+      while (spanCount.get() > maxSpans && (trace = order.poll()) != null)
+      {
+        if (remove(trace))
+        {
+          evicted.add(trace);
+        }
+      }
+    } finally
+    {
+      evicting.unlock();
+    }
+    evicted.forEach(t -> decide(t, null));
+  }
+
+  /**
+   * Decides traces that have been incomplete for longer than the trace timeout.
+   */
+  void evictExpired()
+  {
+    long now = nanoTime.getAsLong();
+    List<PendingTrace> evicted = new ArrayList<>();
+    evicting.lock();
+    try
+    {
+      PendingTrace trace;
+      while ((trace = order.peek()) != null && now - trace.startNanoTime >= traceTimeoutNanos)
+      {
+        order.poll();
+        if (remove(trace))
+        {
+          evicted.add(trace);
+        }
+      }
+    } finally
+    {
+      evicting.unlock();
+    }
+    evicted.forEach(t -> decide(t, null));
+  }
+
+  /**
+   * Decides every pending trace.
+   */
+  void decideAll()
+  {
+    List<PendingTrace> evicted = new ArrayList<>();
+    evicting.lock();
+    try
+    {
+      PendingTrace trace;
+      while ((trace = order.poll()) != null)
+      {
+        if (remove(trace))
+        {
+          evicted.add(trace);
+        }
+      }
+    } finally
+    {
+      evicting.unlock();
+    }
+    evicted.forEach(t -> decide(t, null));
+  }
+
+  /**
+   * Removes the trace if it is still pending, after which no span is added to it.
+   */
+  boolean remove(PendingTrace trace)
+  {
+    if (!pending.remove(trace.traceId, trace))
+    {
+      return false;
+    }
+    spanCount.addAndGet(-trace.spans.size());
+    return true;
+  }
+
+  void decide(PendingTrace trace, Span root)
+  {
+    if (trace.error
+        || (root != null && root.durationAsLong() >= latencyThresholdMicros)
+        || isSampled(trace.traceId))
+    {
+      trace.spans.forEach(delegate::report);
+    }
+  }
+
+  boolean isSampled(String traceId)
+  {
+    // by the low 64 bits of the trace ID only, so that every service keeps the same traces
+    int length = traceId.length();
+    long lowBits = Long.parseUnsignedLong(traceId.substring(Math.max(0, length - 16)), 16);
+    return (lowBits & Long.MAX_VALUE) % PRECISION < boundary;
+  }
+
+  static boolean isLocalRoot(Span span)
+  {
+    return span.parentId() == null || span.kind() == Span.Kind.SERVER;
+  }
+
+  int spanCount()
+  {
+    return spanCount.get();
+  }
+
+  /**
+   * Stops the background thread, then decides every incomplete trace.
+   */
+  @Override
+  public void close()
+  {
+    evictor.shutdownNow();
+    closed = true;
+    decideAll();
+  }
+
+  @Override
+  public String toString()
+  {
+    return "TailSamplingReporter{" + delegate + "}";
+  }
+
+  static final class PendingTrace
+  {
+    final String traceId;
+    final long startNanoTime;
+    final List<Span> spans = new ArrayList<>(4);
+    boolean error;
+
+    PendingTrace(String traceId, long startNanoTime)
+    {
+      this.traceId = traceId;
+      this.startNanoTime = startNanoTime;
+    }
+
+    void add(Span span)
+    {
+      spans.add(span);
+      error |= span.tags().containsKey("error");
+    }
+  }
+}
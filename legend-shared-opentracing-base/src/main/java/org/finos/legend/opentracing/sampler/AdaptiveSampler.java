@@ -0,0 +1,206 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.sampler;
+
+import brave.sampler.Sampler;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.finos.legend.opentracing.reporter.AsyncReporter;
+import org.finos.legend.opentracing.reporter.AsyncReporterMetrics;
+import zipkin2.reporter.ReporterMetrics;
+
+/**
+ * Samples traces at a rate lowered while the {@link AsyncReporter} cannot keep up, so that spans are
+ * not recorded only to be dropped from its queue.
+ *
+ * <p>Every update interval, the rate is halved if spans were dropped since the last update or the
+ * queue is over {@link #HIGH_UTILIZATION} full, down to the minimum rate. Once the queue is under
+ * {@link #LOW_UTILIZATION} full, the rate climbs back by a tenth of the configured rate per interval.
+ * Updates are made by whichever thread samples first once an interval has passed, so there is no
+ * background thread.
+ *
+ * <p>Like {@link brave.sampler.BoundarySampler}, the decision depends only on the trace ID, so that
+ * all services lowering their rates together keep or drop the same traces.
+ */
+public final class AdaptiveSampler extends Sampler
+{
+  static final float HIGH_UTILIZATION = 0.8f;
+  static final float LOW_UTILIZATION = 0.5f;
+  static final float RECOVERY_STEP = 0.1f;
+  static final int PRECISION = 10_000;
+
+  public static Builder builder(AsyncReporter<?> reporter)
+  {
+    return new Builder(reporter);
+  }
+
+  public static final class Builder
+  {
+    final AsyncReporter<?> reporter;
+    float rate = 1.0f;
+    float minRate = 0.01f;
+    long updateIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+    ReporterMetrics metrics = ReporterMetrics.NOOP_METRICS;
+
+    Builder(AsyncReporter<?> reporter)
+    {
+      if (reporter == null)
+      {
+        throw new NullPointerException("reporter == null");
+      }
+      this.reporter = reporter;
+    }
+
+    /**
+     * Rate at which traces are sampled while the reporter keeps up. Default 1.0.
+     */
+    public Builder rate(float rate)
+    {
+      if (rate < 0.0f || rate > 1.0f)
+      {
+        throw new IllegalArgumentException("rate should be between 0 and 1: was " + rate);
+      }
+      this.rate = rate;
+      return this;
+    }
+
+    /**
+     * Rate the sampler never goes under, so that some traces are kept however saturated the reporter
+     * is. Default 0.01.
+     */
+    public Builder minRate(float minRate)
+    {
+      if (minRate < 0.0f || minRate > 1.0f)
+      {
+        throw new IllegalArgumentException("minRate should be between 0 and 1: was " + minRate);
+      }
+      this.minRate = minRate;
+      return this;
+    }
+
+    /**
+     * How often the reporter's queue is checked. Default 1 second.
+     */
+    public Builder updateInterval(long interval, TimeUnit unit)
+    {
+      if (interval <= 0)
+      {
+        throw new IllegalArgumentException("interval <= 0: " + interval);
+      }
+      this.updateIntervalNanos = unit.toNanos(interval);
+      return this;
+    }
+
+    /**
+     * Receives the effective rate if it is an {@link AsyncReporterMetrics}.
+     */
+    public Builder metrics(ReporterMetrics metrics)
+    {
+      if (metrics == null)
+      {
+        throw new NullPointerException("metrics == null");
+      }
+      this.metrics = metrics;
+      return this;
+    }
+
+    public AdaptiveSampler build()
+    {
+      return new AdaptiveSampler(this, System::nanoTime);
+    }
+  }
+
+  final AsyncReporter<?> reporter;
+  final float baseRate;
+  final float minRate;
+  final long updateIntervalNanos;
+  final AsyncReporterMetrics metrics;
+  final LongSupplier nanoTime;
+  final AtomicLong nextUpdateNanoTime;
+  long lastSpansDropped; // guarded by winning the update of nextUpdateNanoTime
+  volatile float rate;
+  volatile long boundary;
+
+  AdaptiveSampler(Builder builder, LongSupplier nanoTime)
+  {
+    this.reporter = builder.reporter;
+    this.baseRate = builder.rate;
+    this.minRate = Math.min(builder.minRate, builder.rate);
+    this.updateIntervalNanos = builder.updateIntervalNanos;
+    this.metrics = builder.metrics instanceof AsyncReporterMetrics ? (AsyncReporterMetrics) builder.metrics : null;
+    this.nanoTime = nanoTime;
+    this.nextUpdateNanoTime = new AtomicLong(nanoTime.getAsLong() + updateIntervalNanos);
+    this.lastSpansDropped = reporter.totalSpansDropped();
+    setRate(baseRate);
+  }
+
+  @Override
+  public boolean isSampled(long traceId)
+  {
+    long next = nextUpdateNanoTime.get();
+    long now = nanoTime.getAsLong();
+    if (now - next >= 0 && nextUpdateNanoTime.compareAndSet(next, now + updateIntervalNanos))
+    {
+      update();
+    }
+    // like BoundarySampler, the low bits of the trace ID are uniformly distributed
+    return (traceId & Long.MAX_VALUE) % PRECISION < boundary;
+  }
+
+  /**
+   * Rate at which traces are currently sampled.
+   */
+  public float rate()
+  {
+    return rate;
+  }
+
+  void update()
+  {
+    long spansDropped = reporter.totalSpansDropped();
+    float utilization = reporter.queueUtilization();
+    float current = rate;
+    float next = current;
+    if (spansDropped != lastSpansDropped || utilization >= HIGH_UTILIZATION)
+    {
+      next = Math.max(minRate, current / 2);
+    } else if (utilization < LOW_UTILIZATION)
+    {
+      next = Math.min(baseRate, current + baseRate * RECOVERY_STEP);
+    }
+    lastSpansDropped = spansDropped;
+    if (next != current)
+    {
+      setRate(next);
+    }
+  }
+
+  void setRate(float rate)
+  {
+    this.boundary = (long) (rate * PRECISION);
+    this.rate = rate;
+    if (metrics != null)
+    {
+      metrics.updateSamplingRate(rate);
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return "AdaptiveSampler(" + rate + ")";
+  }
+}
@@ -0,0 +1,179 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.sampler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Samples new traces within a budget of traces per second for each route, so that a few busy routes
+ * cannot crowd out the rest.
+ *
+ * <p>A Brave {@link brave.sampler.Sampler} only sees the trace ID, so this is consulted by whatever
+ * names the root span, such as {@code OpenTracingFilter}, which records the decision as the {@code
+ * sampling.priority} tag.
+ *
+ * <p>Each route has a token bucket holding up to one second of its budget, implemented as the
+ * generic cell rate algorithm: one {@link AtomicLong} holds when the bucket will next be full, and is
+ * advanced by compare-and-set, so taking a token never locks. At most {@link Builder#maxRoutes(int)}
+ * routes get a bucket of their own. Once that many are known, other routes share a single bucket
+ * with the default budget, so that unbounded path cardinality cannot exhaust memory.
+ */
+public final class RouteSampler
+{
+  /**
+   * Samples routes not given their own budget at tracesPerSecond each.
+   */
+  public static Builder builder(float tracesPerSecond)
+  {
+    return new Builder(tracesPerSecond);
+  }
+
+  public static final class Builder
+  {
+    final float defaultTracesPerSecond;
+    final Map<String, Float> tracesPerSecond = new HashMap<>();
+    int maxRoutes = 1000;
+
+    Builder(float defaultTracesPerSecond)
+    {
+      this.defaultTracesPerSecond = checkTracesPerSecond(defaultTracesPerSecond);
+    }
+
+    /**
+     * Samples the given route at tracesPerSecond instead of the default.
+     */
+    public Builder tracesPerSecond(String route, float tracesPerSecond)
+    {
+      if (route == null)
+      {
+        throw new NullPointerException("route == null");
+      }
+      this.tracesPerSecond.put(route, checkTracesPerSecond(tracesPerSecond));
+      return this;
+    }
+
+    /**
+     * Maximum count of routes given a bucket of their own, including those given their own budget.
+     * Default 1000.
+     */
+    public Builder maxRoutes(int maxRoutes)
+    {
+      if (maxRoutes < 0)
+      {
+        throw new IllegalArgumentException("maxRoutes < 0: " + maxRoutes);
+      }
+      this.maxRoutes = maxRoutes;
+      return this;
+    }
+
+    public RouteSampler build()
+    {
+      return new RouteSampler(this, System::nanoTime);
+    }
+
+    static float checkTracesPerSecond(float tracesPerSecond)
+    {
+      if (!(tracesPerSecond >= 0))
+      {
+        throw new IllegalArgumentException("tracesPerSecond < 0: " + tracesPerSecond);
+      }
+      return tracesPerSecond;
+    }
+  }
+
+  final float defaultTracesPerSecond;
+  final int maxRoutes;
+  final LongSupplier nanoTime;
+  final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+  final TokenBucket overflow;
+
+  RouteSampler(Builder builder, LongSupplier nanoTime)
+  {
+    this.defaultTracesPerSecond = builder.defaultTracesPerSecond;
+    this.maxRoutes = Math.max(builder.maxRoutes, builder.tracesPerSecond.size());
+    this.nanoTime = nanoTime;
+    long now = nanoTime.getAsLong();
+    builder.tracesPerSecond.forEach((route, tracesPerSecond) -> buckets.put(route, new TokenBucket(tracesPerSecond, now)));
+    this.overflow = new TokenBucket(defaultTracesPerSecond, now);
+  }
+
+  /**
+   * Returns true if a new trace for the route is within its budget, taking a token if so.
+   */
+  public boolean isSampled(String route)
+  {
+    long now = nanoTime.getAsLong();
+    return bucket(route, now).tryAcquire(now);
+  }
+
+  TokenBucket bucket(String route, long now)
+  {
+    if (route == null)
+    {
+      return overflow;
+    }
+    TokenBucket result = buckets.get(route);
+    if (result != null)
+    {
+      return result;
+    }
+    // racing threads may add a few routes past the bound, never unboundedly many
+    if (buckets.size() >= maxRoutes)
+    {
+      return overflow;
+    }
+    return buckets.computeIfAbsent(route, r -> new TokenBucket(defaultTracesPerSecond, now));
+  }
+
+  static final class TokenBucket
+  {
+    final long intervalNanos; // between tokens; 0 when the budget is 0
+    final long toleranceNanos; // how far ahead of now the bucket may be drawn down
+    final AtomicLong fullNanoTime;
+
+    TokenBucket(float tracesPerSecond, long now)
+    {
+      this.intervalNanos = tracesPerSecond == 0 ? 0 : (long) Math.max(1, TimeUnit.SECONDS.toNanos(1) / (double) tracesPerSecond);
+      this.toleranceNanos = (long) Math.max(0, Math.ceil(tracesPerSecond) - 1) * intervalNanos;
+      this.fullNanoTime = new AtomicLong(now);
+    }
+
+    boolean tryAcquire(long now)
+    {
+      if (intervalNanos == 0)
+      {
+        return false;
+      }
+      while (true)
+      {
+        long full = fullNanoTime.get();
+        long start = full - now < 0 ? now : full;
+        if (start - now > toleranceNanos)
+        {
+          return false;
+        }
+        if (fullNanoTime.compareAndSet(full, start + intervalNanos))
+        {
+          return true;
+        }
+      }
+    }
+  }
+}
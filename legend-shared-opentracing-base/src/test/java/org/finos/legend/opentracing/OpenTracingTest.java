@@ -0,0 +1,64 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing;
+
+import java.util.List;
+import org.junit.Test;
+import zipkin2.Call;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.Sender;
+
+public class OpenTracingTest
+{
+  private static final Sender SENDER = new Sender()
+  {
+    @Override
+    public Encoding encoding()
+    {
+      return Encoding.JSON;
+    }
+
+    @Override
+    public int messageMaxBytes()
+    {
+      return 1024;
+    }
+
+    @Override
+    public int messageSizeInBytes(List<byte[]> encodedSpans)
+    {
+      return Encoding.JSON.listSizeInBytes(encodedSpans);
+    }
+
+    @Override
+    public Call<Void> sendSpans(List<byte[]> encodedSpans)
+    {
+      return Call.create(null);
+    }
+  };
+
+  @Test(expected = IllegalArgumentException.class)
+  public void ratesOutOfRangeAreRejected()
+  {
+    OpenTracing.builder(SENDER, "service").tailSamplingRate(10);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void minSamplingRateAboveSamplingRateIsRejected()
+  {
+    // as when the two rates are swapped
+    OpenTracing.builder(SENDER, "service").samplingRate(0.01f).minSamplingRate(0.5f).build();
+  }
+}
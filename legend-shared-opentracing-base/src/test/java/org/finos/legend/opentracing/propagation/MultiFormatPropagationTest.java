@@ -0,0 +1,170 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.propagation;
+
+import brave.propagation.Propagation;
+import brave.propagation.TraceContext;
+import brave.propagation.TraceContextOrSamplingFlags;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MultiFormatPropagationTest
+{
+  private static final TraceContext CONTEXT = TraceContext.newBuilder()
+      .traceIdHigh(0x4bf92f3577b34da6L)
+      .traceId(0xa3ce929d0e0e4736L)
+      .parentId(0x1L)
+      .spanId(0x00f067aa0ba902b7L)
+      .sampled(true)
+      .build();
+
+  @Test
+  public void writesEveryFormat()
+  {
+    Map<String, String> headers = inject(CONTEXT, Arrays.asList(PropagationFormat.values()));
+
+    Assert.assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", headers.get("x-b3-traceid"));
+    Assert.assertEquals("00f067aa0ba902b7", headers.get("x-b3-spanid"));
+    Assert.assertEquals("0000000000000001", headers.get("x-b3-parentspanid"));
+    Assert.assertEquals("1", headers.get("x-b3-sampled"));
+    Assert.assertEquals("4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-1-0000000000000001", headers.get("b3"));
+    Assert.assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01", headers.get("traceparent"));
+  }
+
+  @Test
+  public void roundTripsEachFormat()
+  {
+    TraceContext notSampled = CONTEXT.toBuilder().traceIdHigh(0).sampled(false).build();
+    for (PropagationFormat format : PropagationFormat.values())
+    {
+      List<PropagationFormat> formats = Collections.singletonList(format);
+      for (TraceContext context : Arrays.asList(CONTEXT, notSampled))
+      {
+        TraceContext extracted = extract(inject(context, formats), formats).context();
+
+        Assert.assertEquals(format.name(), context.traceIdHigh(), extracted.traceIdHigh());
+        Assert.assertEquals(format.name(), context.traceId(), extracted.traceId());
+        Assert.assertEquals(format.name(), context.spanId(), extracted.spanId());
+        Assert.assertEquals(format.name(), context.sampled(), extracted.sampled());
+      }
+    }
+  }
+
+  @Test
+  public void writesPaddedTraceparentForShortTraceIds()
+  {
+    TraceContext context = CONTEXT.toBuilder().traceIdHigh(0).sampled(null).build();
+
+    Map<String, String> headers = inject(context, Collections.singletonList(PropagationFormat.W3C));
+
+    Assert.assertEquals("00-0000000000000000a3ce929d0e0e4736-00f067aa0ba902b7-00", headers.get("traceparent"));
+  }
+
+  @Test
+  public void readsFirstFormatHoldingAContext()
+  {
+    Map<String, String> headers = new HashMap<>();
+    headers.put("b3", "not-a-context");
+    headers.put("traceparent", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+    headers.put("x-b3-traceid", "0000000000000007");
+    headers.put("x-b3-spanid", "0000000000000008");
+
+    TraceContext w3c = extract(headers, Arrays.asList(PropagationFormat.B3_SINGLE, PropagationFormat.W3C, PropagationFormat.B3_MULTI)).context();
+    TraceContext b3 = extract(headers, Arrays.asList(PropagationFormat.B3_SINGLE, PropagationFormat.B3_MULTI, PropagationFormat.W3C)).context();
+
+    Assert.assertEquals(0xa3ce929d0e0e4736L, w3c.traceId());
+    Assert.assertEquals(Boolean.TRUE, w3c.sampled());
+    Assert.assertEquals(7, b3.traceId());
+    Assert.assertNull(b3.sampled());
+  }
+
+  @Test
+  public void readsSamplingWithoutAContext()
+  {
+    List<PropagationFormat> formats = Arrays.asList(PropagationFormat.B3_SINGLE, PropagationFormat.B3_MULTI);
+
+    Assert.assertEquals(TraceContextOrSamplingFlags.NOT_SAMPLED, extract(Collections.singletonMap("b3", "0"), formats));
+    Assert.assertEquals(TraceContextOrSamplingFlags.DEBUG, extract(Collections.singletonMap("b3", "d"), formats));
+    Assert.assertEquals(TraceContextOrSamplingFlags.SAMPLED, extract(Collections.singletonMap("x-b3-sampled", "1"), formats));
+    Assert.assertEquals(TraceContextOrSamplingFlags.EMPTY, extract(Collections.emptyMap(), formats));
+  }
+
+  @Test
+  public void ignoresInvalidHeaders()
+  {
+    List<PropagationFormat> formats = Arrays.asList(PropagationFormat.values());
+    List<String> invalidTraceparents = Arrays.asList(
+        "00-00000000000000000000000000000000-00f067aa0ba902b7-01",
+        "00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000000-01",
+        "00-4BF92F3577B34DA6A3CE929D0E0E4736-00f067aa0ba902b7-01",
+        "ff-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01",
+        "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-extra",
+        "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7");
+    for (String traceparent : invalidTraceparents)
+    {
+      Assert.assertEquals(traceparent, TraceContextOrSamplingFlags.EMPTY, extract(Collections.singletonMap("traceparent", traceparent), formats));
+    }
+    List<String> invalidB3s = Arrays.asList("", "x", "0000000000000007", "0000000000000007-8", "0000000000000007-0000000000000008-x1");
+    for (String b3 : invalidB3s)
+    {
+      Assert.assertEquals(b3, TraceContextOrSamplingFlags.EMPTY, extract(Collections.singletonMap("b3", b3), formats));
+    }
+  }
+
+  @Test
+  public void readsLaterTraceparentVersions()
+  {
+    TraceContextOrSamplingFlags extracted = extract(
+        Collections.singletonMap("traceparent", "01-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-extra"),
+        Collections.singletonList(PropagationFormat.W3C));
+
+    Assert.assertEquals(0x00f067aa0ba902b7L, extracted.context().spanId());
+  }
+
+  @Test
+  public void keysAreTheConfiguredFormatsHeaders()
+  {
+    Propagation.Factory factory = PropagationFormat.factory(Arrays.asList(PropagationFormat.W3C, PropagationFormat.B3_SINGLE, PropagationFormat.W3C));
+
+    Assert.assertEquals(Arrays.asList("traceparent", "b3"), factory.get().keys());
+    Assert.assertTrue(factory.requires128BitTraceId());
+    Assert.assertFalse(PropagationFormat.factory(Collections.singletonList(PropagationFormat.B3_MULTI)).requires128BitTraceId());
+  }
+
+  @Test
+  public void supportsJoinLikeB3()
+  {
+    Propagation.Factory factory = PropagationFormat.factory(Arrays.asList(PropagationFormat.W3C, PropagationFormat.B3_SINGLE));
+
+    Assert.assertTrue(factory.supportsJoin());
+  }
+
+  private static Map<String, String> inject(TraceContext context, List<PropagationFormat> formats)
+  {
+    Map<String, String> headers = new HashMap<>();
+    PropagationFormat.factory(formats).get().<Map<String, String>>injector(Map::put).inject(context, headers);
+    return headers;
+  }
+
+  private static TraceContextOrSamplingFlags extract(Map<String, String> headers, List<PropagationFormat> formats)
+  {
+    return PropagationFormat.factory(formats).get().<Map<String, String>>extractor(Map::get).extract(headers);
+  }
+}
@@ -0,0 +1,571 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import zipkin2.Span;
+import zipkin2.codec.SpanBytesEncoder;
+import zipkin2.reporter.InMemoryReporterMetrics;
+import zipkin2.reporter.ReporterMetrics;
+
+public class AsyncReporterTest
+{
+  private final FakeSender sender = new FakeSender();
+  private final InMemoryReporterMetrics metrics = new InMemoryReporterMetrics();
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void threadBatchesOfDeadThreadsAreFlushed() throws InterruptedException
+  {
+    AsyncReporter<Span> reporter = AsyncReporter.builder(sender)
+        .messageTimeout(0, TimeUnit.MILLISECONDS)
+        .threadBatchSize(16)
+        .build();
+
+    Thread thread = new Thread(() ->
+    {
+      for (int i = 1; i <= 10; i++)
+      {
+        reporter.report(FakeSender.span(i));
+      }
+    });
+    thread.start();
+    thread.join();
+
+    reporter.flush();
+    Assert.assertEquals(10, sender.sent.size());
+  }
+
+  @Test
+  public void threadBatchesRespectQueueBoundGlobally() throws InterruptedException
+  {
+    AsyncReporter<Span> reporter = AsyncReporter.builder(sender)
+        .messageTimeout(0, TimeUnit.MILLISECONDS)
+        .metrics(metrics)
+        .queuedMaxSpans(20)
+        .threadBatchSize(8)
+        .queueType(AsyncReporter.QueueType.LOCK_FREE)
+        .build();
+
+    for (int t = 0; t < 4; t++)
+    {
+      int base = t * 8;
+      Thread thread = new Thread(() ->
+      {
+        for (int i = 1; i <= 8; i++)
+        {
+          reporter.report(FakeSender.span(base + i));
+        }
+      });
+      thread.start();
+      thread.join();
+    }
+
+    Assert.assertEquals(32, metrics.spans());
+    Assert.assertEquals(12, metrics.spansDropped());
+    reporter.flush();
+    Assert.assertEquals(20, sender.sent.size());
+  }
+
+  @Test
+  public void threadBatchesReserveQueueCapacity()
+  {
+    for (AsyncReporter.QueueType queueType : AsyncReporter.QueueType.values())
+    {
+      InMemoryReporterMetrics metrics = new InMemoryReporterMetrics();
+      AsyncReporter<Span> reporter = AsyncReporter.builder(sender)
+          .messageTimeout(0, TimeUnit.MILLISECONDS)
+          .metrics(metrics)
+          .queuedMaxSpans(5)
+          .threadBatchSize(8)
+          .queueType(queueType)
+          .build();
+      for (int i = 1; i <= 8; i++)
+      {
+        reporter.report(FakeSender.span(i));
+      }
+      // counted as they were reported, although none has left the batch
+      Assert.assertEquals(queueType.name(), 3, metrics.spansDropped());
+      Assert.assertEquals(1, reporter.queueUtilization(), 0);
+      reporter.close();
+    }
+  }
+
+  @Test
+  public void threadBatchSpansReportedDuringCloseAreNotStranded() throws InterruptedException
+  {
+    for (int round = 0; round < 20; round++)
+    {
+      InMemoryReporterMetrics metrics = new InMemoryReporterMetrics();
+      AsyncReporter<Span> reporter = AsyncReporter.builder(new FakeSender())
+          .messageTimeout(0, TimeUnit.MILLISECONDS)
+          .metrics(metrics)
+          .threadBatchSize(16)
+          .threadBatchLinger(1, TimeUnit.HOURS)
+          .build();
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < 4; t++)
+      {
+        Thread thread = new Thread(() ->
+        {
+          for (int i = 1; i <= 5000; i++)
+          {
+            reporter.report(FakeSender.span(i));
+          }
+        });
+        thread.start();
+        threads.add(thread);
+      }
+      reporter.close();
+      for (Thread thread : threads)
+      {
+        thread.join();
+      }
+      // nothing was sent, so every span reported must have been dropped
+      Assert.assertEquals(metrics.spans(), metrics.spansDropped());
+    }
+  }
+
+  @Test
+  public void lingeringThreadBatchIsPublishedByFlusher() throws InterruptedException
+  {
+    AsyncReporter<Span> reporter = AsyncReporter.builder(sender)
+        .messageTimeout(10, TimeUnit.MILLISECONDS)
+        .threadBatchSize(100)
+        .threadBatchLinger(10, TimeUnit.MILLISECONDS)
+        .build();
+    try
+    {
+      reporter.report(FakeSender.span(1));
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (sender.sent.isEmpty() && System.nanoTime() < deadline)
+      {
+        Thread.sleep(10);
+      }
+      Assert.assertEquals(1, sender.sent.size());
+    } finally
+    {
+      reporter.close();
+    }
+  }
+
+  @Test
+  public void closeSendsThreadBatches()
+  {
+    AsyncReporter<Span> reporter = AsyncReporter.builder(sender)
+        .messageTimeout(1, TimeUnit.SECONDS)
+        .threadBatchSize(100)
+        .threadBatchLinger(1, TimeUnit.HOURS)
+        .metrics(metrics)
+        .build();
+    for (int i = 1; i <= 5; i++)
+    {
+      reporter.report(FakeSender.span(i));
+    }
+    reporter.close();
+    Assert.assertEquals(5, sender.sent.size());
+    Assert.assertEquals(0, metrics.spansDropped());
+  }
+
+  @Test
+  public void messagesAreFilledUpToMessageMaxBytes()
+  {
+    int spanSizeInBytes = SpanBytesEncoder.JSON_V2.sizeInBytes(FakeSender.span(1));
+    int messageMaxBytes = sender.encoding().listSizeInBytes(Collections.nCopies(3, new byte[spanSizeInBytes]));
+    AsyncReporter<Span> reporter = AsyncReporter.builder(sender)
+        .messageTimeout(0, TimeUnit.MILLISECONDS)
+        .messageMaxBytes(messageMaxBytes)
+        .build();
+
+    for (int i = 1; i <= 7; i++)
+    {
+      reporter.report(FakeSender.span(i));
+    }
+    reporter.flush();
+    reporter.flush();
+    reporter.flush();
+
+    Assert.assertEquals(Arrays.asList(messageMaxBytes, messageMaxBytes, sender.encoding().listSizeInBytes(spanSizeInBytes)),
+        sender.messageSizesInBytes);
+    for (int i = 0; i < 7; i++)
+    {
+      Assert.assertEquals(FakeSender.span(i + 1), sender.sent.get(i));
+    }
+  }
+
+  @Test
+  public void flushSplitsBufferedSpansAtMessageMaxBytes()
+  {
+    int spanSizeInBytes = SpanBytesEncoder.JSON_V2.sizeInBytes(FakeSender.span(1));
+    int messageMaxBytes = sender.encoding().listSizeInBytes(Collections.nCopies(3, new byte[spanSizeInBytes]));
+    AsyncReporter.BoundedAsyncReporter<Span> reporter = (AsyncReporter.BoundedAsyncReporter<Span>) AsyncReporter.builder(sender)
+        .messageTimeout(0, TimeUnit.MILLISECONDS)
+        .messageMaxBytes(messageMaxBytes)
+        .metrics(metrics)
+        .build();
+
+    for (int i = 1; i <= 5; i++)
+    {
+      reporter.report(FakeSender.span(i));
+    }
+    // a bundler that holds more than one message's worth must not produce an oversized message
+    BufferNextMessage<EncodedSpan> bundler = BufferNextMessage.create(sender.encoding(), Integer.MAX_VALUE, 0);
+    reporter.flush(bundler);
+    reporter.flush(bundler);
+
+    Assert.assertEquals(Arrays.asList(messageMaxBytes, sender.encoding().listSizeInBytes(Collections.nCopies(2, new byte[spanSizeInBytes]))),
+        sender.messageSizesInBytes);
+    Assert.assertEquals(5, sender.sent.size());
+    Assert.assertEquals(0, metrics.spansDropped());
+    reporter.close();
+  }
+
+  @Test
+  public void inFlightMessagesCountAgainstQueuedMaxBytes()
+  {
+    for (AsyncReporter.QueueType queueType : AsyncReporter.QueueType.values())
+    {
+      sender.deferCallbacks = true;
+      InMemoryReporterMetrics metrics = new InMemoryReporterMetrics();
+      AsyncReporter<Span> reporter = AsyncReporter.builder(sender)
+          .messageTimeout(0, TimeUnit.MILLISECONDS)
+          .metrics(metrics)
+          .queueType(queueType)
+          .queuedMaxBytes(2 * SpanBytesEncoder.JSON_V2.sizeInBytes(FakeSender.span(1)))
+          .maxInFlightMessages(2)
+          .build();
+
+      reporter.report(FakeSender.span(1));
+      reporter.report(FakeSender.span(2));
+      reporter.flush();
+      Assert.assertEquals(1, sender.deferred.size());
+
+      reporter.report(FakeSender.span(3));
+      Assert.assertEquals(queueType.name(), 1, metrics.spansDropped());
+
+      sender.completeDeferred();
+      reporter.report(FakeSender.span(4));
+      Assert.assertEquals(queueType.name(), 1, metrics.spansDropped());
+      reporter.close();
+    }
+  }
+
+  @Test
+  public void closeWaitsForInFlightMessages()
+  {
+    sender.deferCallbacks = true;
+    AsyncReporter<Span> reporter = AsyncReporter.builder(sender)
+        .messageTimeout(0, TimeUnit.MILLISECONDS)
+        .closeTimeout(10, TimeUnit.SECONDS)
+        .metrics(metrics)
+        .maxInFlightMessages(4)
+        .build();
+    for (int i = 1; i <= 3; i++)
+    {
+      reporter.report(FakeSender.span(i));
+      reporter.flush();
+    }
+    Assert.assertEquals(3, sender.deferred.size());
+
+    AtomicBoolean completing = new AtomicBoolean();
+    AtomicBoolean closed = ((AsyncReporter.BoundedAsyncReporter<?>) reporter).closed;
+    Thread completer = new Thread(() ->
+    {
+      // complete the messages only once close is waiting for them
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (!closed.get() && System.nanoTime() < deadline)
+      {
+        Thread.yield();
+      }
+      completing.set(true);
+      sender.completeDeferred();
+    });
+    completer.start();
+
+    reporter.close();
+    Assert.assertTrue(completing.get());
+    Assert.assertEquals(3, sender.sent.size());
+    Assert.assertEquals(0, metrics.spansDropped());
+  }
+
+  @Test
+  public void failedMessagesAreSpooledAndReplayed() throws IOException
+  {
+    Path directory = temporaryFolder.newFolder().toPath();
+    sender.failing = true;
+    AsyncReporter<Span> reporter = AsyncReporter.builder(sender)
+        .messageTimeout(0, TimeUnit.MILLISECONDS)
+        .metrics(metrics)
+        .spool(directory, 1024 * 1024)
+        .spoolSegmentBytes(64 * 1024)
+        .spoolReplayBackoff(1, TimeUnit.MILLISECONDS)
+        .build();
+    for (int i = 1; i <= 3; i++)
+    {
+      reporter.report(FakeSender.span(i));
+      reporter.flush();
+    }
+    Assert.assertEquals(0, metrics.spansDropped());
+    Assert.assertEquals(0, metrics.messagesDropped());
+    Assert.assertTrue(sender.sent.isEmpty());
+
+    sender.failing = false;
+    endBackoff(reporter);
+    reporter.report(FakeSender.span(4));
+    reporter.flush();
+    Assert.assertEquals(Arrays.asList(FakeSender.span(1), FakeSender.span(2), FakeSender.span(3), FakeSender.span(4)), sender.sent);
+    reporter.close();
+  }
+
+  @Test
+  public void spoolIsReplayedAfterRestart() throws IOException
+  {
+    Path directory = temporaryFolder.newFolder().toPath();
+    sender.failing = true;
+    AsyncReporter<Span> reporter = AsyncReporter.builder(sender)
+        .messageTimeout(0, TimeUnit.MILLISECONDS)
+        .spool(directory, 1024 * 1024)
+        .spoolSegmentBytes(64 * 1024)
+        .build();
+    reporter.report(FakeSender.span(1));
+    reporter.flush();
+    reporter.close();
+
+    sender.failing = false;
+    AsyncReporter<Span> restarted = AsyncReporter.builder(sender)
+        .messageTimeout(0, TimeUnit.MILLISECONDS)
+        .spool(directory, 1024 * 1024)
+        .spoolSegmentBytes(64 * 1024)
+        .build();
+    restarted.flush();
+    Assert.assertEquals(Collections.singletonList(FakeSender.span(1)), sender.sent);
+    restarted.close();
+  }
+
+  @Test
+  public void fullSpoolDropsMessages() throws IOException
+  {
+    int segmentBytes = 1024;
+    AsyncReporter<Span> reporter = AsyncReporter.builder(sender)
+        .messageTimeout(0, TimeUnit.MILLISECONDS)
+        .metrics(metrics)
+        .spool(temporaryFolder.newFolder().toPath(), 2 * segmentBytes)
+        .spoolSegmentBytes(segmentBytes)
+        .spoolReplayBackoff(1, TimeUnit.HOURS)
+        .build();
+    sender.failing = true;
+    int reported = 0;
+    while (metrics.messagesDropped() == 0)
+    {
+      reporter.report(FakeSender.span(++reported));
+      reporter.flush();
+    }
+    // each span is its own message, in a record with a length, a count and the span's length
+    int recordBytes = 12 + SpanBytesEncoder.JSON_V2.sizeInBytes(FakeSender.span(1));
+    Assert.assertEquals(2 * (segmentBytes / recordBytes) + 1, reported);
+    Assert.assertEquals(1, metrics.spansDropped());
+    reporter.close();
+  }
+
+  @Test
+  public void spooledMessageIsDroppedAfterMaxReplayAttempts() throws IOException
+  {
+    sender.unsendable.add(FakeSender.span(1).id());
+    DropCauseMetrics causes = new DropCauseMetrics(metrics);
+    AsyncReporter<Span> reporter = AsyncReporter.builder(sender)
+        .messageTimeout(0, TimeUnit.MILLISECONDS)
+        .metrics(causes)
+        .spool(temporaryFolder.newFolder().toPath(), 1024 * 1024)
+        .spoolSegmentBytes(64 * 1024)
+        .spoolReplayBackoff(1, TimeUnit.MILLISECONDS)
+        .spoolMaxReplayAttempts(3)
+        .build();
+    reporter.report(FakeSender.span(1));
+    reporter.flush();
+
+    for (int attempt = 1; attempt < 3; attempt++)
+    {
+      endBackoff(reporter);
+      reporter.flush();
+      Assert.assertEquals(0, metrics.spansDropped());
+    }
+    endBackoff(reporter);
+    reporter.flush();
+    Assert.assertEquals(1, metrics.messagesDropped());
+    Assert.assertEquals(1, metrics.spansDropped());
+    Assert.assertEquals(1, causes.spansDropped(AsyncReporterMetrics.DropCause.SEND_FAILED));
+    Assert.assertEquals(0, causes.spansDropped(AsyncReporterMetrics.DropCause.REJECTED));
+    Assert.assertTrue(((AsyncReporter.BoundedAsyncReporter<?>) reporter).spool.isEmpty());
+    reporter.close();
+  }
+
+  @Test
+  public void rejectedMessagesAreDroppedRatherThanSpooled() throws IOException
+  {
+    sender.unsendable.add(FakeSender.span(1).id());
+    sender.unsendable.add(FakeSender.span(2).id());
+    DropCauseMetrics causes = new DropCauseMetrics(metrics);
+    AsyncReporter<Span> reporter = AsyncReporter.builder(sender)
+        .messageTimeout(0, TimeUnit.MILLISECONDS)
+        .metrics(causes)
+        .spool(temporaryFolder.newFolder().toPath(), 1024 * 1024)
+        .spoolSegmentBytes(64 * 1024)
+        .spoolReplayBackoff(1, TimeUnit.MILLISECONDS)
+        .build();
+    reporter.report(FakeSender.span(1));
+    reporter.flush();
+    Assert.assertEquals(0, metrics.spansDropped());
+
+    // the collector now rejects the spooled message, which must not hold up the next one
+    sender.rejecting = true;
+    endBackoff(reporter);
+    reporter.report(FakeSender.span(2));
+    reporter.flush();
+    Assert.assertEquals(2, metrics.spansDropped());
+    Assert.assertEquals(2, causes.spansDropped(AsyncReporterMetrics.DropCause.REJECTED));
+    sender.unsendable.clear();
+    reporter.report(FakeSender.span(3));
+    reporter.flush();
+    Assert.assertEquals(Collections.singletonList(FakeSender.span(3)), sender.sent);
+    Assert.assertTrue(((AsyncReporter.BoundedAsyncReporter<?>) reporter).spool.isEmpty());
+    reporter.close();
+  }
+
+  @Test
+  public void spansOfFailedMessagesAreCountedOnce()
+  {
+    sender.failing = true;
+    AsyncReporter<Span> reporter = AsyncReporter.builder(sender)
+        .messageTimeout(0, TimeUnit.MILLISECONDS)
+        .metrics(metrics)
+        .build();
+    for (int i = 1; i <= 3; i++)
+    {
+      reporter.report(FakeSender.span(i));
+    }
+    reporter.flush();
+
+    Assert.assertEquals(1, metrics.messagesDropped());
+    Assert.assertEquals(3, metrics.spansDropped());
+    Assert.assertEquals(3, reporter.totalSpansDropped());
+    reporter.close();
+  }
+
+  /**
+   * Ends the reporter's spool replay backoff, as if it had elapsed.
+   */
+  static void endBackoff(AsyncReporter<?> reporter)
+  {
+    AsyncReporter.BoundedAsyncReporter<?> bounded = (AsyncReporter.BoundedAsyncReporter<?>) reporter;
+    bounded.replaying.lock();
+    try
+    {
+      bounded.nextReplayNanoTime = System.nanoTime();
+    } finally
+    {
+      bounded.replaying.unlock();
+    }
+  }
+
+  /**
+   * Counts spans dropped by cause, passing everything else on.
+   */
+  static final class DropCauseMetrics implements AsyncReporterMetrics
+  {
+    final ReporterMetrics delegate;
+    final Map<DropCause, AtomicInteger> spansDropped = new ConcurrentHashMap<>();
+
+    DropCauseMetrics(ReporterMetrics delegate)
+    {
+      this.delegate = delegate;
+    }
+
+    int spansDropped(DropCause cause)
+    {
+      AtomicInteger count = spansDropped.get(cause);
+      return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public void incrementSpansDropped(DropCause cause, int quantity)
+    {
+      spansDropped.computeIfAbsent(cause, c -> new AtomicInteger()).addAndGet(quantity);
+    }
+
+    @Override
+    public void incrementMessages()
+    {
+      delegate.incrementMessages();
+    }
+
+    @Override
+    public void incrementMessagesDropped(Throwable cause)
+    {
+      delegate.incrementMessagesDropped(cause);
+    }
+
+    @Override
+    public void incrementSpans(int quantity)
+    {
+      delegate.incrementSpans(quantity);
+    }
+
+    @Override
+    public void incrementSpanBytes(int quantity)
+    {
+      delegate.incrementSpanBytes(quantity);
+    }
+
+    @Override
+    public void incrementMessageBytes(int quantity)
+    {
+      delegate.incrementMessageBytes(quantity);
+    }
+
+    @Override
+    public void incrementSpansDropped(int quantity)
+    {
+      delegate.incrementSpansDropped(quantity);
+    }
+
+    @Override
+    public void updateQueuedSpans(int update)
+    {
+      delegate.updateQueuedSpans(update);
+    }
+
+    @Override
+    public void updateQueuedBytes(int update)
+    {
+      delegate.updateQueuedBytes(update);
+    }
+  }
+}
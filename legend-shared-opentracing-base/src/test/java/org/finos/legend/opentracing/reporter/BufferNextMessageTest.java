@@ -0,0 +1,147 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+import zipkin2.codec.Encoding;
+
+public class BufferNextMessageTest
+{
+  @Test
+  public void sizesMatchEncodingForEveryEncoding()
+  {
+    for (Encoding encoding : Encoding.values())
+    {
+      BufferNextMessage<byte[]> message = BufferNextMessage.create(encoding, Integer.MAX_VALUE, 0);
+      List<byte[]> spans = new ArrayList<>();
+      Assert.assertEquals(encoding.name(), encoding.listSizeInBytes(spans), message.sizeInBytes());
+      for (int i = 1; i <= 100; i++)
+      {
+        byte[] span = new byte[i];
+        spans.add(span);
+        Assert.assertTrue(message.offer(span, span.length));
+        Assert.assertEquals(encoding.name(), encoding.listSizeInBytes(spans), message.sizeInBytes());
+      }
+      List<byte[]> drained = drain(message, 40);
+      Assert.assertEquals(encoding.name(), encoding.listSizeInBytes(spans.subList(40, 100)), message.sizeInBytes());
+      Assert.assertEquals(spans.subList(0, 40), drained);
+    }
+  }
+
+  @Test
+  public void offerRejectsSpansPastMaxBytes()
+  {
+    List<byte[]> spans = Arrays.asList(new byte[4], new byte[4]);
+    BufferNextMessage<byte[]> message = BufferNextMessage.create(Encoding.JSON, Encoding.JSON.listSizeInBytes(spans), TimeUnit.HOURS.toNanos(1));
+    message.remainingNanos(); // starts the clock, as the flusher does before draining the queue
+
+    Assert.assertTrue(message.offer(spans.get(0), 4));
+    Assert.assertFalse(message.isReady());
+    Assert.assertTrue(message.offer(spans.get(1), 4));
+    Assert.assertTrue(message.isReady());
+    Assert.assertFalse(message.offer(new byte[1], 1));
+    Assert.assertEquals(2, message.count());
+  }
+
+  @Test
+  public void drainKeepsOrderAcrossWrapAndGrowth()
+  {
+    BufferNextMessage<byte[]> message = BufferNextMessage.create(Encoding.PROTO3, Integer.MAX_VALUE, 0);
+    List<byte[]> expected = new ArrayList<>();
+    List<byte[]> actual = new ArrayList<>();
+    int next = 0;
+    for (int round = 0; round < 50; round++)
+    {
+      for (int i = 0; i < 11; i++)
+      {
+        byte[] span = new byte[++next % 7 + 1];
+        expected.add(span);
+        message.offer(span, span.length);
+      }
+      actual.addAll(drain(message, 7)); // leaves spans behind, so the ring wraps and grows
+    }
+    actual.addAll(drain(message, Integer.MAX_VALUE));
+
+    Assert.assertEquals(expected, actual);
+    Assert.assertEquals(0, message.count());
+    Assert.assertEquals(0, message.sizeInBytes());
+  }
+
+  @Test
+  public void drainsLargeMessage()
+  {
+    BufferNextMessage<byte[]> message = BufferNextMessage.create(Encoding.THRIFT, Integer.MAX_VALUE, 0);
+    byte[] span = new byte[100];
+    for (int i = 0; i < 10_000; i++)
+    {
+      message.offer(span, span.length);
+    }
+    Assert.assertEquals(5 + 100 * 10_000, message.sizeInBytes());
+
+    Assert.assertEquals(10_000, drain(message, Integer.MAX_VALUE).size());
+    Assert.assertEquals(5, message.sizeInBytes());
+  }
+
+  @Test
+  public void drainToStopsAtMessageMaxBytes()
+  {
+    for (Encoding encoding : Encoding.values())
+    {
+      BufferNextMessage<byte[]> message = BufferNextMessage.create(encoding, Integer.MAX_VALUE, 0);
+      List<byte[]> spans = new ArrayList<>();
+      for (int i = 0; i < 10; i++)
+      {
+        byte[] span = new byte[10];
+        spans.add(span);
+        message.offer(span, span.length);
+      }
+      int messageMaxBytes = encoding.listSizeInBytes(spans.subList(0, 4));
+
+      List<byte[]> drained = new ArrayList<>();
+      Assert.assertEquals(encoding.name(), messageMaxBytes, message.drainTo(drained, messageMaxBytes));
+      Assert.assertEquals(encoding.name(), spans.subList(0, 4), drained);
+      Assert.assertEquals(encoding.name(), 6, message.count());
+    }
+  }
+
+  @Test
+  public void drainToTakesTheFirstSpanEvenWhenItIsTooLarge()
+  {
+    BufferNextMessage<byte[]> message = BufferNextMessage.create(Encoding.JSON, Integer.MAX_VALUE, 0);
+    byte[] span = new byte[10];
+    message.offer(span, span.length);
+    message.offer(span, span.length);
+
+    List<byte[]> drained = new ArrayList<>();
+    Assert.assertEquals(12, message.drainTo(drained, 1));
+    Assert.assertEquals(1, drained.size());
+    Assert.assertEquals(1, message.count());
+  }
+
+  /**
+   * Drains up to limit spans.
+   */
+  private static List<byte[]> drain(BufferNextMessage<byte[]> message, int limit)
+  {
+    List<byte[]> result = new ArrayList<>();
+    message.drain((next, nextSizeInBytes) -> result.size() < limit && result.add(next));
+    return result;
+  }
+}
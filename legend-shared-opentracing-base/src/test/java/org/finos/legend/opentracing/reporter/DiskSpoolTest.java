@@ -0,0 +1,124 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiskSpoolTest
+{
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void replaysMessagesInOrderAcrossSegments() throws IOException
+  {
+    Path directory = temporaryFolder.newFolder().toPath();
+    DiskSpool spool = new DiskSpool(directory, 1024, 64);
+    for (int i = 0; i < 10; i++)
+    {
+      Assert.assertTrue(spool.append(message("span" + i, "other" + i)));
+    }
+    Assert.assertTrue(segmentCount(directory) > 1);
+
+    for (int i = 0; i < 10; i++)
+    {
+      Assert.assertEquals(Arrays.asList("span" + i, "other" + i), strings(spool.peek()));
+      spool.remove();
+    }
+    Assert.assertNull(spool.peek());
+    Assert.assertTrue(spool.isEmpty());
+    Assert.assertEquals(0, spool.sizeInBytes());
+    Assert.assertTrue(segmentCount(directory) <= 1);
+  }
+
+  @Test
+  public void sizeIsBounded() throws IOException
+  {
+    Path directory = temporaryFolder.newFolder().toPath();
+    DiskSpool spool = new DiskSpool(directory, 128, 64);
+    int appended = 0;
+    while (spool.append(message("span" + appended)))
+    {
+      appended++;
+    }
+    // records of 8 header bytes, 4 length bytes and 5 span bytes: three per segment, two segments
+    Assert.assertEquals(6, appended);
+    Assert.assertEquals(2, segmentCount(directory));
+    Assert.assertFalse("larger than a segment", new DiskSpool(temporaryFolder.newFolder().toPath(), 128, 64)
+        .append(message(String.join("", Collections.nCopies(64, "x")))));
+
+    spool.peek();
+    spool.remove();
+    Assert.assertFalse("room in a sealed segment is not reused", spool.append(message("span6")));
+    spool.remove();
+    spool.remove();
+    Assert.assertTrue("emptied segment is deleted", spool.append(message("span6")));
+  }
+
+  @Test
+  public void recoversMessagesAfterRestart() throws IOException
+  {
+    Path directory = temporaryFolder.newFolder().toPath();
+    DiskSpool spool = new DiskSpool(directory, 1024, 64);
+    for (int i = 0; i < 5; i++)
+    {
+      spool.append(message("span" + i));
+    }
+    spool.remove();
+    spool.close();
+
+    DiskSpool recovered = new DiskSpool(directory, 1024, 64);
+    Assert.assertEquals(4, recovered.count());
+    recovered.append(message("span5"));
+    for (int i = 1; i <= 5; i++)
+    {
+      Assert.assertEquals(Collections.singletonList("span" + i), strings(recovered.peek()));
+      recovered.remove();
+    }
+    Assert.assertTrue(recovered.isEmpty());
+  }
+
+  static List<EncodedSpan> message(String... spans)
+  {
+    return Stream.of(spans)
+        .map(span -> new EncodedSpan(span.getBytes(StandardCharsets.UTF_8)))
+        .collect(Collectors.toList());
+  }
+
+  static List<String> strings(List<byte[]> spans)
+  {
+    return spans.stream().map(span -> new String(span, StandardCharsets.UTF_8)).collect(Collectors.toList());
+  }
+
+  static long segmentCount(Path directory) throws IOException
+  {
+    try (Stream<Path> files = Files.list(directory))
+    {
+      return files.count();
+    }
+  }
+}
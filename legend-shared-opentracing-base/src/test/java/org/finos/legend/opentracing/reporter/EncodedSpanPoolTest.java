@@ -0,0 +1,68 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+import org.junit.Assert;
+import org.junit.Test;
+import zipkin2.Span;
+import zipkin2.codec.SpanBytesEncoder;
+
+public class EncodedSpanPoolTest
+{
+  private final Span span = Span.newBuilder()
+      .traceId("463ac35c9f6413ad")
+      .id("72485a3953bb6124")
+      .name("get /api")
+      .kind(Span.Kind.SERVER)
+      .timestamp(1472470996199000L)
+      .duration(207000L)
+      .putTag("http.path", "/api")
+      .build();
+
+  @Test
+  public void encodesExactlyLikeTheEncoder()
+  {
+    for (SpanBytesEncoder encoder : new SpanBytesEncoder[]{SpanBytesEncoder.JSON_V2, SpanBytesEncoder.PROTO3, SpanBytesEncoder.THRIFT})
+    {
+      EncodedSpanPool pool = new EncodedSpanPool(encoder.encoding(), 16);
+      EncodedSpan encoded = pool.encode(encoder, span, encoder.sizeInBytes(span));
+      Assert.assertArrayEquals(encoder.name(), encoder.encode(span), encoded.toByteArray());
+    }
+  }
+
+  @Test
+  public void releasedBuffersAreReused()
+  {
+    SpanBytesEncoder encoder = SpanBytesEncoder.JSON_V2;
+    EncodedSpanPool pool = new EncodedSpanPool(encoder.encoding(), 16);
+    EncodedSpan first = pool.encode(encoder, span, encoder.sizeInBytes(span));
+    first.release();
+    EncodedSpan second = pool.encode(encoder, span, encoder.sizeInBytes(span));
+    Assert.assertSame(first, second);
+    Assert.assertArrayEquals(encoder.encode(span), second.toByteArray());
+  }
+
+  @Test
+  public void poolIsBounded()
+  {
+    EncodedSpanPool pool = new EncodedSpanPool(SpanBytesEncoder.JSON_V2.encoding(), 2);
+    Assert.assertTrue(pool.offer(new EncodedSpan(pool, 10)));
+    Assert.assertTrue(pool.offer(new EncodedSpan(pool, 10)));
+    Assert.assertFalse(pool.offer(new EncodedSpan(pool, 10)));
+    Assert.assertNotNull(pool.poll());
+    Assert.assertNotNull(pool.poll());
+    Assert.assertNull(pool.poll());
+  }
+}
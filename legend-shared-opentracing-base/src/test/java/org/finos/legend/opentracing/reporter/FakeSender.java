@@ -0,0 +1,162 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import zipkin2.Call;
+import zipkin2.Callback;
+import zipkin2.CheckResult;
+import zipkin2.Span;
+import zipkin2.codec.Encoding;
+import zipkin2.codec.SpanBytesDecoder;
+import zipkin2.reporter.Sender;
+
+class FakeSender extends Sender
+{
+  final List<Span> sent = new CopyOnWriteArrayList<>();
+  final List<Integer> messageSizesInBytes = new CopyOnWriteArrayList<>();
+  final Queue<Callback<Void>> deferred = new ConcurrentLinkedQueue<>();
+  volatile boolean deferCallbacks;
+  volatile boolean failing;
+  /**
+   * Ids of spans whose messages fail to send, with a {@link RejectedMessageException} when {@link
+   * #rejecting} is set.
+   */
+  final Set<String> unsendable = ConcurrentHashMap.newKeySet();
+  volatile boolean rejecting;
+
+  @Override
+  public CheckResult check()
+  {
+    return failing ? CheckResult.failed(new IOException("collector down")) : CheckResult.OK;
+  }
+
+  @Override
+  public Encoding encoding()
+  {
+    return Encoding.JSON;
+  }
+
+  @Override
+  public int messageMaxBytes()
+  {
+    return 500_000;
+  }
+
+  @Override
+  public int messageSizeInBytes(List<byte[]> encodedSpans)
+  {
+    return encoding().listSizeInBytes(encodedSpans);
+  }
+
+  @Override
+  public Call<Void> sendSpans(List<byte[]> encodedSpans)
+  {
+    if (failing)
+    {
+      return new FailingCall(false);
+    }
+    for (byte[] encodedSpan : encodedSpans)
+    {
+      if (unsendable.contains(SpanBytesDecoder.JSON_V2.decodeOne(encodedSpan).id()))
+      {
+        return new FailingCall(rejecting);
+      }
+    }
+    messageSizesInBytes.add(messageSizeInBytes(encodedSpans));
+    for (byte[] encodedSpan : encodedSpans)
+    {
+      sent.add(SpanBytesDecoder.JSON_V2.decodeOne(encodedSpan));
+    }
+    return deferCallbacks ? new DeferredCall() : Call.create(null);
+  }
+
+  /**
+   * Completes messages enqueued while {@link #deferCallbacks} was set.
+   */
+  void completeDeferred()
+  {
+    Callback<Void> callback;
+    while ((callback = deferred.poll()) != null)
+    {
+      callback.onSuccess(null);
+    }
+  }
+
+  static Span span(long id)
+  {
+    return Span.newBuilder().traceId(1, id).id(id).name("span").build();
+  }
+
+  static final class FailingCall extends Call.Base<Void>
+  {
+    final boolean rejected;
+
+    FailingCall(boolean rejected)
+    {
+      this.rejected = rejected;
+    }
+
+    IOException error()
+    {
+      return rejected ? new RejectedMessageException("HTTP 413") : new IOException("collector down");
+    }
+
+    @Override
+    protected Void doExecute() throws IOException
+    {
+      throw error();
+    }
+
+    @Override
+    protected void doEnqueue(Callback<Void> callback)
+    {
+      callback.onError(error());
+    }
+
+    @Override
+    public Call<Void> clone()
+    {
+      return new FailingCall(rejected);
+    }
+  }
+
+  final class DeferredCall extends Call.Base<Void>
+  {
+    @Override
+    protected Void doExecute()
+    {
+      return null;
+    }
+
+    @Override
+    protected void doEnqueue(Callback<Void> callback)
+    {
+      deferred.add(callback);
+    }
+
+    @Override
+    public Call<Void> clone()
+    {
+      return new DeferredCall();
+    }
+  }
+}
@@ -0,0 +1,208 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MpscByteBoundedQueueTest
+{
+  @Test
+  public void offerRespectsCountBound()
+  {
+    MpscByteBoundedQueue<Integer> queue = new MpscByteBoundedQueue<>(3, Integer.MAX_VALUE);
+    Assert.assertTrue(queue.offer(1, 1));
+    Assert.assertTrue(queue.offer(2, 1));
+    Assert.assertTrue(queue.offer(3, 1));
+    Assert.assertFalse(queue.offer(4, 1));
+    Assert.assertEquals(3, queue.count());
+    Assert.assertEquals(3, queue.sizeInBytes());
+  }
+
+  @Test
+  public void offerRespectsByteBound()
+  {
+    MpscByteBoundedQueue<Integer> queue = new MpscByteBoundedQueue<>(10, 100);
+    Assert.assertTrue(queue.offer(1, 60));
+    Assert.assertFalse(queue.offer(2, 41));
+    Assert.assertTrue(queue.offer(3, 40));
+    Assert.assertEquals(2, queue.count());
+    Assert.assertEquals(100, queue.sizeInBytes());
+  }
+
+  @Test
+  public void drainsInOrderAndStopsWhenConsumerIsFull() throws InterruptedException
+  {
+    MpscByteBoundedQueue<Integer> queue = new MpscByteBoundedQueue<>(10, 100);
+    for (int i = 0; i < 5; i++)
+    {
+      queue.offer(i, 10);
+    }
+
+    List<Integer> drained = new ArrayList<>();
+    Assert.assertEquals(3, queue.drainTo((next, size) -> drained.size() < 3 && drained.add(next), 0));
+    Assert.assertEquals(2, queue.count());
+    Assert.assertEquals(20, queue.sizeInBytes());
+
+    Assert.assertEquals(2, queue.drainTo((next, size) -> drained.add(next), 0));
+    Assert.assertEquals(0, queue.count());
+    Assert.assertEquals(0, queue.sizeInBytes());
+    Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4), drained);
+  }
+
+  @Test
+  public void slotsAreReusedAfterDrain() throws InterruptedException
+  {
+    MpscByteBoundedQueue<Integer> queue = new MpscByteBoundedQueue<>(3, 100);
+    List<Integer> drained = new ArrayList<>();
+    for (int i = 0; i < 10; i++)
+    {
+      Assert.assertTrue(queue.offer(i, 1));
+      Assert.assertTrue(queue.offer(-i, 1));
+      Assert.assertEquals(2, queue.drainTo((next, size) -> drained.add(next), 0));
+    }
+    Assert.assertEquals(20, drained.size());
+  }
+
+  @Test
+  public void drainTimesOutWhenEmpty() throws InterruptedException
+  {
+    MpscByteBoundedQueue<Integer> queue = new MpscByteBoundedQueue<>(10, 100);
+    long start = System.nanoTime();
+    Assert.assertEquals(0, queue.drainTo((next, size) -> true, TimeUnit.MILLISECONDS.toNanos(50)));
+    Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  @Test
+  public void drainWakesUpOnOffer() throws InterruptedException
+  {
+    MpscByteBoundedQueue<Integer> queue = new MpscByteBoundedQueue<>(10, 100);
+    Thread drainer = Thread.currentThread();
+    Thread producer = new Thread(() ->
+    {
+      // offer only once the drainer is waiting for a span
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (drainer.getState() != Thread.State.TIMED_WAITING && System.nanoTime() < deadline)
+      {
+        Thread.yield();
+      }
+      queue.offer(1, 1);
+    });
+    producer.start();
+    Assert.assertEquals(1, queue.drainTo((next, size) -> true, TimeUnit.SECONDS.toNanos(10)));
+    producer.join();
+  }
+
+  @Test
+  public void reservedSpansCountAgainstBoundsUntilPublished() throws InterruptedException
+  {
+    for (AsyncReporter.QueueType queueType : AsyncReporter.QueueType.values())
+    {
+      BoundedQueue<Integer> queue = BoundedQueue.create(queueType, 3, 100);
+      Assert.assertTrue(queue.reserve(10));
+      Assert.assertTrue(queue.reserve(10));
+      Assert.assertTrue(queue.offer(1, 10));
+      Assert.assertFalse(queue.reserve(10));
+      Assert.assertFalse(queue.offer(4, 10));
+      Assert.assertEquals(3, queue.count());
+      Assert.assertEquals(30, queue.sizeInBytes());
+
+      // reserved spans are not waited for
+      List<Integer> drained = new ArrayList<>();
+      Assert.assertEquals(1, queue.drainTo((next, size) -> drained.add(next), 0));
+      Assert.assertEquals(0, queue.drainTo((next, size) -> drained.add(next), TimeUnit.MILLISECONDS.toNanos(10)));
+
+      queue.publishReserved(new Integer[]{2, 3}, new int[]{10, 10}, 2);
+      Assert.assertEquals(2, queue.count());
+      Assert.assertEquals(2, queue.drainTo((next, size) -> drained.add(next), 0));
+      Assert.assertEquals(queueType.name(), Arrays.asList(1, 2, 3), drained);
+      Assert.assertEquals(0, queue.count());
+      Assert.assertEquals(0, queue.sizeInBytes());
+    }
+  }
+
+  @Test
+  public void clearDropsEverything()
+  {
+    MpscByteBoundedQueue<Integer> queue = new MpscByteBoundedQueue<>(10, 100);
+    queue.offer(1, 10);
+    queue.offer(2, 10);
+    Assert.assertEquals(2, queue.clear());
+    Assert.assertEquals(0, queue.count());
+    Assert.assertEquals(0, queue.sizeInBytes());
+  }
+
+  @Test
+  public void concurrentProducersNeverLoseOrDuplicateSpans() throws InterruptedException
+  {
+    int producers = 8;
+    int perProducer = 20000;
+    MpscByteBoundedQueue<Integer> queue = new MpscByteBoundedQueue<>(64, 64 * 8);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++)
+    {
+      int base = p * perProducer;
+      Thread thread = new Thread(() ->
+      {
+        try
+        {
+          start.await();
+        } catch (InterruptedException e)
+        {
+          return;
+        }
+        for (int i = 0; i < perProducer; i++)
+        {
+          while (!queue.offer(base + i, 8))
+          {
+            Thread.yield();
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+
+    boolean[] seen = new boolean[producers * perProducer];
+    int[] lastPerProducer = new int[producers];
+    Arrays.fill(lastPerProducer, -1);
+    start.countDown();
+    int total = 0;
+    while (total < seen.length)
+    {
+      total += queue.drainTo((next, size) ->
+      {
+        Assert.assertFalse("duplicate " + next, seen[next]);
+        seen[next] = true;
+        int producer = next / perProducer;
+        Assert.assertTrue("out of order " + next, next > lastPerProducer[producer]);
+        lastPerProducer[producer] = next;
+        return true;
+      }, TimeUnit.SECONDS.toNanos(1));
+    }
+    for (Thread thread : threads)
+    {
+      thread.join();
+    }
+    Assert.assertEquals(0, queue.count());
+    Assert.assertEquals(0, queue.sizeInBytes());
+  }
+}
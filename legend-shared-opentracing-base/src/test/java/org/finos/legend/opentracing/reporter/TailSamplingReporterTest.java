@@ -0,0 +1,187 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.reporter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import zipkin2.Span;
+
+public class TailSamplingReporterTest
+{
+  private final List<Span> reported = new CopyOnWriteArrayList<>();
+  private long nanoTime;
+  private TailSamplingReporter reporter;
+
+  @After
+  public void close()
+  {
+    reporter.close();
+  }
+
+  @Test
+  public void keepsTracesWithErrors()
+  {
+    reporter = newReporter(TailSamplingReporter.builder(reported::add).rate(0));
+
+    reportTrace(1, 1000, false);
+    Assert.assertTrue(reported.isEmpty());
+
+    reportTrace(2, 1000, true);
+    Assert.assertEquals(3, reported.size());
+    Assert.assertTrue(reported.stream().allMatch(s -> s.traceId().endsWith("2")));
+    Assert.assertEquals(0, reporter.spanCount());
+  }
+
+  @Test
+  public void keepsTracesWithSlowRoots()
+  {
+    reporter = newReporter(TailSamplingReporter.builder(reported::add).rate(0).latencyThreshold(500, TimeUnit.MILLISECONDS));
+
+    reportTrace(1, TimeUnit.MILLISECONDS.toMicros(499), false);
+    reportTrace(2, TimeUnit.MILLISECONDS.toMicros(500), false);
+    Assert.assertEquals(3, reported.size());
+    Assert.assertTrue(reported.stream().allMatch(s -> s.traceId().endsWith("2")));
+  }
+
+  @Test
+  public void keepsTracesAtTheBaseRate()
+  {
+    reporter = newReporter(TailSamplingReporter.builder(reported::add).rate(0.1f));
+
+    for (int i = 1; i <= 10_000; i++)
+    {
+      reportTrace(i * 7919L, 1000, false);
+    }
+    Assert.assertEquals(0.1, reported.size() / 30_000.0, 0.01);
+  }
+
+  @Test
+  public void evictsOldestTracesWhenFull()
+  {
+    reporter = newReporter(TailSamplingReporter.builder(reported::add).rate(0).maxSpans(4));
+
+    reporter.report(child(1, 10, true));
+    reporter.report(child(1, 11, false));
+    reporter.report(child(2, 20, false));
+    reporter.report(child(2, 21, false));
+    Assert.assertTrue(reported.isEmpty());
+
+    reporter.report(child(3, 30, false)); // evicts trace 1, kept for its error
+    Assert.assertEquals(2, reported.size());
+    Assert.assertEquals(3, reporter.spanCount());
+  }
+
+  @Test
+  public void evictsIncompleteTracesAfterTimeout()
+  {
+    reporter = newReporter(TailSamplingReporter.builder(reported::add).rate(0).traceTimeout(10, TimeUnit.SECONDS));
+
+    reporter.report(child(1, 10, true));
+    nanoTime += TimeUnit.SECONDS.toNanos(5);
+    reporter.report(child(2, 20, true));
+    reporter.evictExpired();
+    Assert.assertTrue(reported.isEmpty());
+
+    nanoTime += TimeUnit.SECONDS.toNanos(5);
+    reporter.evictExpired();
+    Assert.assertEquals(1, reported.size());
+    Assert.assertEquals(1, reporter.spanCount());
+
+    reporter.close();
+    Assert.assertEquals(2, reported.size());
+    Assert.assertEquals(0, reporter.spanCount());
+  }
+
+  @Test
+  public void concurrentTracesAreEachDecidedOnce() throws Exception
+  {
+    Queue<Span> kept = new ConcurrentLinkedQueue<>();
+    reporter = newReporter(TailSamplingReporter.builder(kept::add).rate(0).maxSpans(8));
+    int threads = 8;
+    int tracesPerThread = 2000;
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> reporters = new ArrayList<>();
+    for (int t = 0; t < threads; t++)
+    {
+      long base = t * (long) tracesPerThread;
+      Thread thread = new Thread(() ->
+      {
+        try
+        {
+          start.await();
+        } catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+        }
+        for (long traceId = base + 1; traceId <= base + tracesPerThread; traceId++)
+        {
+          // kept for their errors, whether the root completes the trace or it is evicted early
+          reporter.report(child(traceId, 2, true));
+          reporter.report(child(traceId, 3, true));
+          reporter.report(Span.newBuilder().traceId(0, traceId).id(1).name("root").duration(1).putTag("error", "").build());
+        }
+      });
+      thread.start();
+      reporters.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : reporters)
+    {
+      thread.join();
+    }
+    reporter.close();
+
+    Set<String> distinct = new HashSet<>();
+    kept.forEach(span -> distinct.add(span.traceId() + "/" + span.id()));
+    Assert.assertEquals(threads * tracesPerThread * 3, kept.size());
+    Assert.assertEquals(kept.size(), distinct.size());
+    Assert.assertEquals(0, reporter.spanCount());
+  }
+
+  private TailSamplingReporter newReporter(TailSamplingReporter.Builder builder)
+  {
+    return new TailSamplingReporter(builder, () -> nanoTime);
+  }
+
+  /**
+   * Reports two children, the second one failed if error is set, then their root.
+   */
+  private void reportTrace(long traceId, long rootDurationMicros, boolean error)
+  {
+    reporter.report(child(traceId, 2, false));
+    reporter.report(child(traceId, 3, error));
+    reporter.report(Span.newBuilder().traceId(0, traceId).id(1).name("root").duration(rootDurationMicros).build());
+  }
+
+  private static Span child(long traceId, long id, boolean error)
+  {
+    Span.Builder builder = Span.newBuilder().traceId(0, traceId).parentId(1).id(id).name("child").duration(1);
+    if (error)
+    {
+      builder.putTag("error", "true");
+    }
+    return builder.build();
+  }
+}
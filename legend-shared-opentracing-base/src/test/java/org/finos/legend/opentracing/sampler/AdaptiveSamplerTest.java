@@ -0,0 +1,161 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.sampler;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.finos.legend.opentracing.reporter.AsyncReporter;
+import org.junit.Assert;
+import org.junit.Test;
+import zipkin2.Call;
+import zipkin2.Span;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.Sender;
+
+public class AdaptiveSamplerTest
+{
+  private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final AsyncReporter<Span> reporter = AsyncReporter.builder(new NoopSender())
+      .messageTimeout(0, TimeUnit.MILLISECONDS)
+      .queuedMaxSpans(10)
+      .build();
+  private long nanoTime;
+
+  @Test
+  public void rateBacksOffWhileQueueIsSaturatedAndRecoversOnceDrained()
+  {
+    AdaptiveSampler sampler = new AdaptiveSampler(AdaptiveSampler.builder(reporter).rate(0.8f).minRate(0.1f), () -> nanoTime);
+
+    report(12); // fills the queue, dropping two
+    tick(sampler);
+    Assert.assertEquals(0.4f, sampler.rate(), 0.0001f);
+    tick(sampler);
+    tick(sampler);
+    tick(sampler);
+    Assert.assertEquals(0.1f, sampler.rate(), 0.0001f);
+
+    reporter.flush();
+    tick(sampler);
+    Assert.assertEquals(0.18f, sampler.rate(), 0.0001f);
+    for (int i = 0; i < 20; i++)
+    {
+      tick(sampler);
+    }
+    Assert.assertEquals(0.8f, sampler.rate(), 0.0001f);
+  }
+
+  @Test
+  public void rateHoldsBetweenThresholds()
+  {
+    AdaptiveSampler sampler = new AdaptiveSampler(AdaptiveSampler.builder(reporter).rate(0.5f), () -> nanoTime);
+
+    report(12);
+    tick(sampler);
+    Assert.assertEquals(0.25f, sampler.rate(), 0.0001f);
+
+    reporter.flush();
+    report(6); // over the low watermark, under the high one
+    tick(sampler);
+    Assert.assertEquals(0.25f, sampler.rate(), 0.0001f);
+  }
+
+  @Test
+  public void rateOnlyChangesOncePerInterval()
+  {
+    AdaptiveSampler sampler = new AdaptiveSampler(AdaptiveSampler.builder(reporter), () -> nanoTime);
+
+    report(12);
+    nanoTime += INTERVAL_NANOS - 1;
+    sampler.isSampled(1L);
+    Assert.assertEquals(1.0f, sampler.rate(), 0.0f);
+    nanoTime += 1;
+    sampler.isSampled(1L);
+    sampler.isSampled(1L);
+    Assert.assertEquals(0.5f, sampler.rate(), 0.0001f);
+  }
+
+  @Test
+  public void tracesSampledAtLowerRatesAreSampledAtHigherRates()
+  {
+    AdaptiveSampler sampler = new AdaptiveSampler(AdaptiveSampler.builder(reporter), () -> nanoTime);
+    Random random = new Random(42);
+    long[] traceIds = new long[10_000];
+    boolean[] sampledAtHalf = new boolean[traceIds.length];
+    int sampled = 0;
+    report(12);
+    tick(sampler);
+    Assert.assertEquals(0.5f, sampler.rate(), 0.0001f);
+    for (int i = 0; i < traceIds.length; i++)
+    {
+      traceIds[i] = random.nextLong();
+      sampledAtHalf[i] = sampler.isSampled(traceIds[i]);
+      sampled += sampledAtHalf[i] ? 1 : 0;
+    }
+    Assert.assertEquals(0.5, (double) sampled / traceIds.length, 0.02);
+
+    reporter.flush();
+    tick(sampler);
+    for (int i = 0; i < traceIds.length; i++)
+    {
+      if (sampledAtHalf[i])
+      {
+        Assert.assertTrue(sampler.isSampled(traceIds[i]));
+      }
+    }
+  }
+
+  private void report(int count)
+  {
+    for (int i = 1; i <= count; i++)
+    {
+      reporter.report(Span.newBuilder().traceId(i, i).id(i).name("span" + i).build());
+    }
+  }
+
+  private void tick(AdaptiveSampler sampler)
+  {
+    nanoTime += INTERVAL_NANOS;
+    sampler.isSampled(1L);
+  }
+
+  private static class NoopSender extends Sender
+  {
+    @Override
+    public Encoding encoding()
+    {
+      return Encoding.JSON;
+    }
+
+    @Override
+    public int messageMaxBytes()
+    {
+      return 500_000;
+    }
+
+    @Override
+    public int messageSizeInBytes(List<byte[]> encodedSpans)
+    {
+      return encoding().listSizeInBytes(encodedSpans);
+    }
+
+    @Override
+    public Call<Void> sendSpans(List<byte[]> encodedSpans)
+    {
+      return Call.create(null);
+    }
+  }
+}
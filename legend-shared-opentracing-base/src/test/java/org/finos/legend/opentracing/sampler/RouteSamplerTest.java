@@ -0,0 +1,105 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing.sampler;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteSamplerTest
+{
+  private long nanoTime;
+
+  @Test
+  public void routesHaveSeparateBudgets()
+  {
+    RouteSampler sampler = new RouteSampler(RouteSampler.builder(2).tracesPerSecond("/chatty", 5), () -> nanoTime);
+
+    Assert.assertEquals(5, sampleRepeatedly(sampler, "/chatty", 100));
+    Assert.assertEquals(2, sampleRepeatedly(sampler, "/rare", 100));
+    Assert.assertEquals(2, sampleRepeatedly(sampler, "/other", 100));
+  }
+
+  @Test
+  public void budgetRefillsOverTime()
+  {
+    RouteSampler sampler = new RouteSampler(RouteSampler.builder(10), () -> nanoTime);
+
+    Assert.assertEquals(10, sampleRepeatedly(sampler, "/a", 100));
+    nanoTime += TimeUnit.MILLISECONDS.toNanos(250);
+    Assert.assertEquals(2, sampleRepeatedly(sampler, "/a", 100));
+    nanoTime += TimeUnit.SECONDS.toNanos(10);
+    Assert.assertEquals(10, sampleRepeatedly(sampler, "/a", 100)); // never more than a second's worth
+  }
+
+  @Test
+  public void fractionalAndZeroBudgets()
+  {
+    RouteSampler sampler = new RouteSampler(RouteSampler.builder(0.5f).tracesPerSecond("/never", 0), () -> nanoTime);
+
+    Assert.assertEquals(0, sampleRepeatedly(sampler, "/never", 100));
+    Assert.assertEquals(1, sampleRepeatedly(sampler, "/slow", 100));
+    nanoTime += TimeUnit.SECONDS.toNanos(1);
+    Assert.assertEquals(0, sampleRepeatedly(sampler, "/slow", 100));
+    nanoTime += TimeUnit.SECONDS.toNanos(1);
+    Assert.assertEquals(1, sampleRepeatedly(sampler, "/slow", 100));
+  }
+
+  @Test
+  public void routesPastTheBoundShareOneBucket()
+  {
+    RouteSampler sampler = new RouteSampler(RouteSampler.builder(3).maxRoutes(2), () -> nanoTime);
+
+    for (int i = 0; i < 10_000; i++)
+    {
+      sampler.isSampled("/item/" + i);
+    }
+    Assert.assertEquals(2, sampler.buckets.size());
+    nanoTime += TimeUnit.SECONDS.toNanos(1);
+    Assert.assertEquals(3, sampleRepeatedly(sampler, "/item/a", 10) + sampleRepeatedly(sampler, "/item/b", 10));
+    Assert.assertEquals(3, sampleRepeatedly(sampler, "/item/0", 10));
+  }
+
+  @Test
+  public void concurrentCallersNeverExceedTheBudget() throws InterruptedException
+  {
+    RouteSampler sampler = new RouteSampler(RouteSampler.builder(50), () -> nanoTime);
+    int[] sampled = new int[8];
+    Thread[] threads = new Thread[sampled.length];
+    for (int t = 0; t < threads.length; t++)
+    {
+      int index = t;
+      threads[t] = new Thread(() -> sampled[index] = sampleRepeatedly(sampler, "/a", 1000));
+      threads[t].start();
+    }
+    int total = 0;
+    for (int t = 0; t < threads.length; t++)
+    {
+      threads[t].join();
+      total += sampled[t];
+    }
+    Assert.assertEquals(50, total);
+  }
+
+  private static int sampleRepeatedly(RouteSampler sampler, String route, int times)
+  {
+    int result = 0;
+    for (int i = 0; i < times; i++)
+    {
+      result += sampler.isSampled(route) ? 1 : 0;
+    }
+    return result;
+  }
+}
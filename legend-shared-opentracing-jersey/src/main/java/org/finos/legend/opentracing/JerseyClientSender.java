@@ -14,38 +14,302 @@
 
 package org.finos.legend.opentracing;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
-import javax.ws.rs.client.Invocation.Builder;
 import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import org.slf4j.Logger;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.Variant;
+import org.finos.legend.opentracing.reporter.AsyncReporter;
+import org.finos.legend.opentracing.reporter.EncodedSpan;
+import org.finos.legend.opentracing.reporter.EncodedSpanSender;
+import org.finos.legend.opentracing.reporter.RejectedMessageException;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.HttpUrlConnectorProvider;
+import org.glassfish.jersey.client.RequestEntityProcessing;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.glassfish.jersey.message.GZipEncoder;
 import zipkin2.Call;
 import zipkin2.Callback;
+import zipkin2.CheckResult;
 import zipkin2.codec.Encoding;
 import zipkin2.reporter.Sender;
 
-public class JerseyClientSender extends Sender
+public class JerseyClientSender extends Sender implements EncodedSpanSender
 {
 
-  private static final int messageMaxBytes = 5 * 1024 * 1024;
-  private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(JerseyClientSender.class);
-  private final Encoding encoding = Encoding.JSON;
-  private final Client client = ClientBuilder.newClient();
-  private final URI uri;
+  private static final int DEFAULT_MESSAGE_MAX_BYTES = 5 * 1024 * 1024;
+  private static final MediaType APPLICATION_PROTOBUF_TYPE = new MediaType("application", "x-protobuf");
+  private static final MediaType APPLICATION_THRIFT_TYPE = new MediaType("application", "x-thrift");
+  private static final int THRIFT_TYPE_STRUCT = 12;
+  private final Encoding encoding;
+  private final Client client;
+  private final WebTarget target;
   private final AuthenticationProvider authenticationProvider;
+  private final Compression compression;
+  private final int messageMaxBytes;
+  private final long callTimeoutNanos;
 
   public JerseyClientSender(URI uri,
                             AuthenticationProvider authenticationProvider)
   {
-    this.uri = uri;
-    this.authenticationProvider = authenticationProvider;
+    this(builder(uri, authenticationProvider));
+  }
+
+  private JerseyClientSender(Builder builder)
+  {
+    this.authenticationProvider = builder.authenticationProvider;
+    this.encoding = builder.encoding;
+    this.compression = builder.compression;
+    this.messageMaxBytes = builder.uncompressedMessageMaxBytes();
+    this.callTimeoutNanos = builder.callTimeoutNanos;
+    this.client = ClientBuilder.newClient()
+        .property(HttpUrlConnectorProvider.USE_FIXED_LENGTH_STREAMING, true)
+        .property(ClientProperties.CONNECT_TIMEOUT, toMillis(builder.connectTimeoutNanos))
+        .property(ClientProperties.READ_TIMEOUT, toMillis(builder.readTimeoutNanos))
+        .property(ClientProperties.ASYNC_THREADPOOL_SIZE, builder.maxConnections)
+        .register(GZipEncoder.class)
+        .register(DeflateEncoder.class);
+    this.target = client.target(builder.uri);
+  }
+
+  private static int toMillis(long nanos)
+  {
+    return (int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMillis(nanos));
+  }
+
+  public static Builder builder(URI uri, AuthenticationProvider authenticationProvider)
+  {
+    return new Builder(uri, authenticationProvider);
+  }
+
+  /**
+   * How message bodies are compressed on the wire.
+   */
+  public enum Compression
+  {
+    NONE(null),
+    GZIP("gzip"),
+    DEFLATE("deflate");
+
+    private final String contentEncoding;
+
+    Compression(String contentEncoding)
+    {
+      this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Value of the {@code Content-Encoding} header, or null when not compressed.
+     */
+    public String contentEncoding()
+    {
+      return contentEncoding;
+    }
+  }
+
+  public static final class Builder
+  {
+    private final URI uri;
+    private final AuthenticationProvider authenticationProvider;
+    private Encoding encoding = Encoding.JSON;
+    private Compression compression = Compression.NONE;
+    private int messageMaxBytes = DEFAULT_MESSAGE_MAX_BYTES;
+    private int compressionRatio = 1;
+    private long connectTimeoutNanos = TimeUnit.SECONDS.toNanos(10);
+    private long readTimeoutNanos = TimeUnit.SECONDS.toNanos(60);
+    private long callTimeoutNanos = 0;
+    private int maxConnections = 4;
+
+    private Builder(URI uri, AuthenticationProvider authenticationProvider)
+    {
+      if (uri == null)
+      {
+        throw new NullPointerException("uri == null");
+      }
+      if (authenticationProvider == null)
+      {
+        throw new NullPointerException("authenticationProvider == null");
+      }
+      this.uri = uri;
+      this.authenticationProvider = authenticationProvider;
+    }
+
+    /**
+     * Default {@link Encoding#JSON}, posted as {@code application/json}. {@link Encoding#PROTO3} is
+     * posted as {@code application/x-protobuf} and {@link Encoding#THRIFT} as {@code
+     * application/x-thrift}, as the Zipkin collector expects.
+     */
+    public Builder encoding(Encoding encoding)
+    {
+      if (encoding == null)
+      {
+        throw new NullPointerException("encoding == null");
+      }
+      this.encoding = encoding;
+      return this;
+    }
+
+    /**
+     * Default {@link Compression#NONE}. Compressed messages are streamed to the collector as they
+     * are compressed, with chunked transfer encoding.
+     */
+    public Builder compression(Compression compression)
+    {
+      if (compression == null)
+      {
+        throw new NullPointerException("compression == null");
+      }
+      this.compression = compression;
+      return this;
+    }
+
+    /**
+     * Maximum size of a message before compression. Default 5 MiB
+     */
+    public Builder messageMaxBytes(int messageMaxBytes)
+    {
+      if (messageMaxBytes <= 0)
+      {
+        throw new IllegalArgumentException("messageMaxBytes <= 0: " + messageMaxBytes);
+      }
+      this.messageMaxBytes = messageMaxBytes;
+      this.compressionRatio = 1;
+      return this;
+    }
+
+    /**
+     * Maximum size of a message after compression, for collectors that limit request bodies.
+     *
+     * <p>Messages are compressed as they are streamed, so their compressed size is not known when
+     * spans are bundled. Instead, messages are bundled up to {@code compressedMessageMaxBytes *
+     * minCompressionRatio} bytes before compression; choose a ratio that the spans reliably achieve.
+     */
+    public Builder compressedMessageMaxBytes(int compressedMessageMaxBytes, int minCompressionRatio)
+    {
+      if (compressedMessageMaxBytes <= 0)
+      {
+        throw new IllegalArgumentException("compressedMessageMaxBytes <= 0: " + compressedMessageMaxBytes);
+      }
+      if (minCompressionRatio < 1)
+      {
+        throw new IllegalArgumentException("minCompressionRatio < 1: " + minCompressionRatio);
+      }
+      this.messageMaxBytes = compressedMessageMaxBytes;
+      this.compressionRatio = minCompressionRatio;
+      return this;
+    }
+
+    private int uncompressedMessageMaxBytes()
+    {
+      return (int) Math.min(Integer.MAX_VALUE, (long) messageMaxBytes * compressionRatio);
+    }
+
+    /**
+     * Longest to wait for a connection to the collector. Default 10 seconds, 0 waits indefinitely
+     */
+    public Builder connectTimeout(long timeout, TimeUnit unit)
+    {
+      this.connectTimeoutNanos = toNanos("connectTimeout", timeout, unit);
+      return this;
+    }
+
+    /**
+     * Longest to wait for each read of the collector's response. Default 60 seconds, 0 waits
+     * indefinitely
+     */
+    public Builder readTimeout(long timeout, TimeUnit unit)
+    {
+      this.readTimeoutNanos = toNanos("readTimeout", timeout, unit);
+      return this;
+    }
+
+    /**
+     * Longest a synchronous send may take in total, which bounds how long a collector that is slow,
+     * but not idle, can hold up the reporter's flusher thread. Default 0, bounded only by the
+     * connect and read timeouts.
+     *
+     * <p>As a timed out send may still be writing its message, each message is copied before it is
+     * sent, instead of streamed from the reporter's buffers.
+     */
+    public Builder callTimeout(long timeout, TimeUnit unit)
+    {
+      this.callTimeoutNanos = toNanos("callTimeout", timeout, unit);
+      return this;
+    }
+
+    /**
+     * Maximum concurrent connections used by asynchronous sends, such as those of {@link
+     * AsyncReporter.Builder#maxInFlightMessages(int)}. Default 4
+     *
+     * <p>Connections are kept alive and reused between messages. Idle ones are pooled by the JDK's
+     * HTTP keep-alive cache, whose size per collector is the {@code http.maxConnections} system
+     * property.
+     */
+    public Builder maxConnections(int maxConnections)
+    {
+      if (maxConnections < 1)
+      {
+        throw new IllegalArgumentException("maxConnections < 1: " + maxConnections);
+      }
+      this.maxConnections = maxConnections;
+      return this;
+    }
+
+    private static long toNanos(String name, long timeout, TimeUnit unit)
+    {
+      if (timeout < 0)
+      {
+        throw new IllegalArgumentException(name + " < 0: " + timeout);
+      }
+      if (unit == null)
+      {
+        throw new NullPointerException("unit == null");
+      }
+      return unit.toNanos(timeout);
+    }
+
+    public JerseyClientSender build()
+    {
+      if (compressionRatio > 1 && compression == Compression.NONE)
+      {
+        throw new IllegalStateException("compressedMessageMaxBytes requires compression");
+      }
+      return new JerseyClientSender(this);
+    }
+  }
+
+  /**
+   * Posts an empty message, which the collector accepts when it is available.
+   */
+  @Override
+  public CheckResult check()
+  {
+    try
+    {
+      sendSpans(Collections.emptyList()).execute();
+      return CheckResult.OK;
+    } catch (IOException | RuntimeException e)
+    {
+      return CheckResult.failed(e);
+    }
   }
 
   @Override
@@ -66,46 +330,200 @@ public class JerseyClientSender extends Sender
     return encoding.listSizeInBytes(encodedSpans);
   }
 
+  private int messageSizeInBytes(int count, int spansSizeInBytes)
+  {
+    switch (encoding)
+    {
+      case JSON:
+        return spansSizeInBytes + 2 + (count > 1 ? count - 1 : 0); // [] and commas
+      case THRIFT:
+        return spansSizeInBytes + 5; // list header
+      default:
+        return spansSizeInBytes;
+    }
+  }
+
   @Override
   public Call<Void> sendSpans(List<byte[]> encodedSpans)
   {
-    Invocation.Builder request = client.target(uri).request();
+    int spansSizeInBytes = 0;
+    for (int i = 0, length = encodedSpans.size(); i < length; i++)
+    {
+      spansSizeInBytes += encodedSpans.get(i).length;
+    }
+    return post(encodedSpans.size(), spansSizeInBytes, (i, out) -> out.write(encodedSpans.get(i)));
+  }
+
+  @Override
+  public Call<Void> sendEncodedSpans(List<EncodedSpan> encodedSpans)
+  {
+    int spansSizeInBytes = 0;
+    for (int i = 0, length = encodedSpans.size(); i < length; i++)
+    {
+      spansSizeInBytes += encodedSpans.get(i).sizeInBytes();
+    }
+    return post(encodedSpans.size(), spansSizeInBytes, (i, out) -> encodedSpans.get(i).writeTo(out));
+  }
+
+  /**
+   * Writes the span at index, already encoded, to the message.
+   */
+  private interface SpanWriter
+  {
+    void writeSpan(int index, OutputStream out) throws IOException;
+  }
+
+  /**
+   * The message is written straight to the connection as it is sent. Uncompressed, its length is
+   * known up front, so the connection streams it with a fixed length instead of buffering it first.
+   * Compressed, it is streamed in chunks through the encoder registered for its content encoding.
+   */
+  private Call<Void> post(int count, int spansSizeInBytes, SpanWriter spans)
+  {
+    StreamingOutput message = out ->
+    {
+      writeListStart(count, out);
+      for (int i = 0; i < count; i++)
+      {
+        if (i > 0 && encoding == Encoding.JSON)
+        {
+          out.write(',');
+        }
+        spans.writeSpan(i, out);
+      }
+      if (encoding == Encoding.JSON)
+      {
+        out.write(']');
+      }
+    };
+
+    Invocation.Builder request = target.request();
     authenticationProvider.getAuthenticationHeaders().forEach(e -> request.header(e.name, e.value));
-    Entity<String> json = Entity
-        .json('[' + encodedSpans.stream().map(String::new).collect(
-            Collectors.joining(",")) + ']');
-    return new Executor(json, request);
+    if (compression == Compression.NONE)
+    {
+      request.header(HttpHeaders.CONTENT_LENGTH, messageSizeInBytes(count, spansSizeInBytes));
+    } else
+    {
+      request.property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.CHUNKED);
+    }
+    // the entity's encoding becomes its Content-Encoding header, which selects the encoder
+    Variant variant = new Variant(mediaType(encoding), (String) null, compression.contentEncoding());
+    return new Executor(Entity.entity(message, variant), messageSizeInBytes(count, spansSizeInBytes), request, callTimeoutNanos);
+  }
+
+  private void writeListStart(int count, OutputStream out) throws IOException
+  {
+    switch (encoding)
+    {
+      case JSON:
+        out.write('[');
+        break;
+      case THRIFT:
+        // list of structs, with a big-endian 32-bit size
+        out.write(THRIFT_TYPE_STRUCT);
+        out.write(count >>> 24);
+        out.write(count >>> 16);
+        out.write(count >>> 8);
+        out.write(count);
+        break;
+      default:
+        // PROTO3 spans are repeated fields that simply concatenate
+        break;
+    }
+  }
+
+  private static MediaType mediaType(Encoding encoding)
+  {
+    switch (encoding)
+    {
+      case JSON:
+        return MediaType.APPLICATION_JSON_TYPE;
+      case PROTO3:
+        return APPLICATION_PROTOBUF_TYPE;
+      case THRIFT:
+        return APPLICATION_THRIFT_TYPE;
+      default:
+        throw new UnsupportedOperationException(encoding.name());
+    }
   }
 
   private static class Executor extends Call<Void>
   {
 
-    private final Entity<String> entity;
+    private final Entity<StreamingOutput> entity;
+    private final int messageSizeInBytes;
     private final Invocation.Builder request;
+    private final long callTimeoutNanos;
     private Future<Response> response;
 
-    private Executor(Entity<String> entity, Builder request)
+    private Executor(Entity<StreamingOutput> entity, int messageSizeInBytes, Invocation.Builder request, long callTimeoutNanos)
     {
       this.entity = entity;
+      this.messageSizeInBytes = messageSizeInBytes;
       this.request = request;
+      this.callTimeoutNanos = callTimeoutNanos;
     }
 
+    /**
+     * Throws if the message was not accepted, so that the reporter can count or spool it.
+     */
     @Override
-    public Void execute()
+    public Void execute() throws IOException
+    {
+      // closing the response returns its connection to the keep-alive cache
+      try (Response response = post())
+      {
+        checkStatus(response);
+      } catch (ProcessingException e)
+      {
+        throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e);
+      }
+      return null;
+    }
+
+    private Response post() throws IOException
     {
+      if (callTimeoutNanos == 0)
+      {
+        return request.post(entity);
+      }
+      // the post can outlive the timeout, and with it the reporter's hold on the spans' buffers,
+      // which it recycles once execute returns. Send a copy that no one else can write to.
+      ByteArrayOutputStream copy = new ByteArrayOutputStream(messageSizeInBytes);
+      entity.getEntity().write(copy);
+      response = request.async().post(Entity.entity(copy.toByteArray(), entity.getVariant()));
       try
       {
-        Response response = request.post(entity);
-        if (!response.getStatusInfo().getFamily().equals(Response.Status.Family.SUCCESSFUL))
-        {
-          LOGGER.warn("Error sending tracing spans: " + response.getEntity());
-        }
-      } catch (Exception e)
+        return response.get(callTimeoutNanos, TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e)
       {
-        LOGGER.warn("Error sending tracing spans", e);
+        response.cancel(true);
+        throw new InterruptedIOException("Timed out sending tracing spans");
+      } catch (InterruptedException e)
+      {
+        response.cancel(true);
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted sending tracing spans");
+      } catch (ExecutionException e)
+      {
+        throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
       }
+    }
 
-      return null;
+    private static void checkStatus(Response response) throws IOException
+    {
+      Response.StatusType status = response.getStatusInfo();
+      if (status.getFamily().equals(Response.Status.Family.SUCCESSFUL))
+      {
+        return;
+      }
+      String message = "Error sending tracing spans: HTTP " + status.getStatusCode() + " " + status.getReasonPhrase();
+      // other client errors, such as 400 or 413, would be rejected again
+      if (status.getFamily().equals(Response.Status.Family.CLIENT_ERROR) && status.getStatusCode() != 408 && status.getStatusCode() != 429)
+      {
+        throw new RejectedMessageException(message);
+      }
+      throw new IOException(message);
     }
 
     @Override
@@ -116,6 +534,17 @@ public class JerseyClientSender extends Sender
         @Override
         public void completed(Response response)
         {
+          try
+          {
+            checkStatus(response);
+          } catch (IOException e)
+          {
+            callback.onError(e);
+            return;
+          } finally
+          {
+            response.close();
+          }
           callback.onSuccess(null);
         }
 
@@ -142,7 +571,7 @@ public class JerseyClientSender extends Sender
     @Override
     public Call<Void> clone()
     {
-      return new Executor(entity, request);
+      return new Executor(entity, messageSizeInBytes, request, callTimeoutNanos);
     }
   }
 
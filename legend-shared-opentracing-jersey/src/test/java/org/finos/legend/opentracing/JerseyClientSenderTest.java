@@ -15,21 +15,284 @@
 package org.finos.legend.opentracing;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URI;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.finos.legend.opentracing.reporter.AsyncReporter;
+import org.finos.legend.opentracing.reporter.RejectedMessageException;
+import org.junit.Assert;
 import org.junit.Test;
+import zipkin2.Span;
+import zipkin2.codec.Encoding;
+import zipkin2.codec.SpanBytesDecoder;
+import zipkin2.codec.SpanBytesEncoder;
 import zipkin2.reporter.Sender;
 
 public class JerseyClientSenderTest extends ClientSenderTest
 {
 
+  private static final Map<Encoding, String> CONTENT_TYPES = new EnumMap<>(Encoding.class);
+  private static final Map<Encoding, SpanBytesDecoder> DECODERS = new EnumMap<>(Encoding.class);
+
+  static {
+    CONTENT_TYPES.put(Encoding.JSON, "application/json");
+    CONTENT_TYPES.put(Encoding.PROTO3, "application/x-protobuf");
+    CONTENT_TYPES.put(Encoding.THRIFT, "application/x-thrift");
+    DECODERS.put(Encoding.JSON, SpanBytesDecoder.JSON_V2);
+    DECODERS.put(Encoding.PROTO3, SpanBytesDecoder.PROTO3);
+    DECODERS.put(Encoding.THRIFT, SpanBytesDecoder.THRIFT);
+  }
+
   @Override
   protected Sender createSender(URI uri, CookieAuthenticationProvider authProvider) {
     return new JerseyClientSender(uri, authProvider);
   }
 
+  @Override
+  protected Sender createCompressingSender(URI uri, CookieAuthenticationProvider authProvider, String contentEncoding) {
+    JerseyClientSender.Compression compression = "gzip".equals(contentEncoding)
+        ? JerseyClientSender.Compression.GZIP
+        : JerseyClientSender.Compression.DEFLATE;
+    return JerseyClientSender.builder(uri, authProvider).compression(compression).build();
+  }
+
   @Test
   public void testSendSpans() throws IOException, InterruptedException {
     super.testSendSpans();
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testSendGzipSpans() throws IOException, InterruptedException {
+    super.testSendCompressedSpans("gzip");
+  }
+
+  @Test
+  public void testSendDeflateSpans() throws IOException, InterruptedException {
+    super.testSendCompressedSpans("deflate");
+  }
+
+  @Test
+  public void testCompressedMessageMaxBytes() {
+    URI uri = URI.create("http://localhost:9411/api/v2/spans");
+    CookieAuthenticationProvider authProvider = new CookieAuthenticationProvider("LegendSSO", () -> "testToken");
+    Assert.assertEquals(1024, JerseyClientSender.builder(uri, authProvider).messageMaxBytes(1024).build().messageMaxBytes());
+    Assert.assertEquals(10 * 1024, JerseyClientSender.builder(uri, authProvider)
+        .compression(JerseyClientSender.Compression.GZIP)
+        .compressedMessageMaxBytes(1024, 10)
+        .build()
+        .messageMaxBytes());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCompressedMessageMaxBytesRequiresCompression() {
+    JerseyClientSender.builder(URI.create("http://localhost:9411/api/v2/spans"), new CookieAuthenticationProvider("LegendSSO", () -> "testToken"))
+        .compressedMessageMaxBytes(1024, 10)
+        .build();
+  }
+
+  @Test
+  public void testStreamsMessageWithFixedLength() throws IOException, InterruptedException {
+    try (MockWebServer mockWebServer = new MockWebServer())
+    {
+      mockWebServer.enqueue(new MockResponse());
+      Sender sender = createSender(mockWebServer.url("/").uri(),
+          new CookieAuthenticationProvider("LegendSSO", () -> "testToken"));
+
+      List<byte[]> encodedSpans = new ArrayList<>();
+      for (int i = 1; i <= 1000; i++)
+      {
+        encodedSpans.add(SpanBytesEncoder.JSON_V2.encode(Span.newBuilder().traceId(1, i).id(i).name("span" + i).build()));
+      }
+      sender.sendSpans(encodedSpans).execute();
+
+      RecordedRequest request = mockWebServer.takeRequest();
+      Assert.assertNull(request.getHeader("Transfer-Encoding"));
+      Assert.assertEquals(String.valueOf(sender.messageSizeInBytes(encodedSpans)), request.getHeader("Content-Length"));
+      Assert.assertEquals(1000, SpanBytesDecoder.JSON_V2.decodeList(request.getBody().readByteArray()).size());
+    }
+  }
+
+  @Test
+  public void testReportsInEachEncoding() throws IOException, InterruptedException {
+    Map<Encoding, Long> bodySizes = new EnumMap<>(Encoding.class);
+    for (Encoding encoding : Encoding.values())
+    {
+      try (MockWebServer mockWebServer = new MockWebServer())
+      {
+        mockWebServer.enqueue(new MockResponse());
+        JerseyClientSender sender = JerseyClientSender.builder(mockWebServer.url("/").uri(),
+            new CookieAuthenticationProvider("LegendSSO", () -> "testToken"))
+            .encoding(encoding)
+            .build();
+        AsyncReporter<Span> reporter = AsyncReporter.builder(sender).messageTimeout(0, TimeUnit.MILLISECONDS).build();
+        List<Span> spans = new ArrayList<>();
+        for (int i = 1; i <= 100; i++)
+        {
+          Span span = Span.newBuilder().traceId(1, i).id(i).name("span" + i).putTag("tagKey", "tagValue").build();
+          spans.add(span);
+          reporter.report(span);
+        }
+        reporter.flush();
+        reporter.close();
+
+        RecordedRequest request = mockWebServer.takeRequest();
+        Assert.assertEquals(encoding.name(), CONTENT_TYPES.get(encoding), request.getHeader("Content-Type"));
+        Assert.assertEquals(encoding.name(), spans, DECODERS.get(encoding).decodeList(request.getBody().readByteArray()));
+        bodySizes.put(encoding, request.getBodySize());
+      }
+    }
+    Assert.assertTrue(bodySizes.toString(), bodySizes.get(Encoding.PROTO3) < bodySizes.get(Encoding.JSON));
+    Assert.assertTrue(bodySizes.toString(), bodySizes.get(Encoding.THRIFT) < bodySizes.get(Encoding.JSON));
+  }
+
+  @Test
+  public void testReusesConnections() throws IOException, InterruptedException {
+    try (MockWebServer mockWebServer = new MockWebServer())
+    {
+      mockWebServer.enqueue(new MockResponse().setBody("ok"));
+      mockWebServer.enqueue(new MockResponse().setBody("ok"));
+      Sender sender = createSender(mockWebServer.url("/").uri(),
+          new CookieAuthenticationProvider("LegendSSO", "testToken"));
+      List<byte[]> encodedSpans = new ArrayList<>();
+      encodedSpans.add(SpanBytesEncoder.JSON_V2.encode(Span.newBuilder().traceId(1, 1).id(1).name("span").build()));
+
+      sender.sendSpans(encodedSpans).execute();
+      sender.sendSpans(encodedSpans).execute();
+
+      Assert.assertEquals(0, mockWebServer.takeRequest().getSequenceNumber());
+      Assert.assertEquals(1, mockWebServer.takeRequest().getSequenceNumber());
+    }
+  }
+
+  @Test
+  public void testCallTimeoutBoundsSlowCollector() throws IOException {
+    try (MockWebServer mockWebServer = new MockWebServer())
+    {
+      mockWebServer.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+      Sender sender = JerseyClientSender.builder(mockWebServer.url("/").uri(),
+          new CookieAuthenticationProvider("LegendSSO", "testToken"))
+          .callTimeout(200, TimeUnit.MILLISECONDS)
+          .build();
+      List<byte[]> encodedSpans = new ArrayList<>();
+      encodedSpans.add(SpanBytesEncoder.JSON_V2.encode(Span.newBuilder().traceId(1, 1).id(1).name("span").build()));
+
+      long start = System.nanoTime();
+      Assert.assertThrows(InterruptedIOException.class, () -> sender.sendSpans(encodedSpans).execute());
+      Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+  }
+
+  @Test
+  public void testCallTimeoutDoesNotReadSpansAfterReturning() throws Exception {
+    try (MockWebServer mockWebServer = new MockWebServer())
+    {
+      mockWebServer.enqueue(new MockResponse()
+          .setSocketPolicy(SocketPolicy.NO_RESPONSE)
+          .throttleBody(1024, 100, TimeUnit.MILLISECONDS));
+      Sender sender = JerseyClientSender.builder(mockWebServer.url("/").uri(),
+          new CookieAuthenticationProvider("LegendSSO", "testToken"))
+          .callTimeout(200, TimeUnit.MILLISECONDS)
+          .build();
+      byte[] encodedSpan = SpanBytesEncoder.JSON_V2.encode(Span.newBuilder().traceId(1, 1).id(1).name("span").build());
+      AtomicBoolean returned = new AtomicBoolean();
+      AtomicInteger readsAfterReturning = new AtomicInteger();
+      Thread caller = Thread.currentThread();
+      AtomicReference<Thread> writer = new AtomicReference<>();
+      // stands in for the reporter's pooled buffers, which it recycles once the send returns
+      List<byte[]> encodedSpans = new AbstractList<byte[]>()
+      {
+        @Override
+        public byte[] get(int index)
+        {
+          if (Thread.currentThread() != caller)
+          {
+            writer.set(Thread.currentThread());
+          }
+          if (returned.get())
+          {
+            readsAfterReturning.incrementAndGet();
+          }
+          return encodedSpan;
+        }
+
+        @Override
+        public int size()
+        {
+          return 1000;
+        }
+      };
+
+      Assert.assertThrows(InterruptedIOException.class, () -> sender.sendSpans(encodedSpans).execute());
+      returned.set(true);
+      // once the thread writing the message has left the sender, it can read no more spans
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (writer.get() != null && isSending(writer.get()) && System.nanoTime() < deadline)
+      {
+        Thread.yield();
+      }
+      Assert.assertEquals(0, readsAfterReturning.get());
+    }
+  }
+
+  @Test
+  public void testSurfacesCollectorErrors() throws IOException {
+    try (MockWebServer mockWebServer = new MockWebServer())
+    {
+      mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+      mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+      Sender sender = createSender(mockWebServer.url("/").uri(),
+          new CookieAuthenticationProvider("LegendSSO", "testToken"));
+      List<byte[]> encodedSpans = new ArrayList<>();
+      encodedSpans.add(SpanBytesEncoder.JSON_V2.encode(Span.newBuilder().traceId(1, 1).id(1).name("span").build()));
+
+      IOException e = Assert.assertThrows(IOException.class, () -> sender.sendSpans(encodedSpans).execute());
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("503"));
+      Assert.assertFalse(sender.check().ok());
+    }
+  }
+
+  @Test
+  public void testSurfacesRejectedMessages() throws IOException {
+    try (MockWebServer mockWebServer = new MockWebServer())
+    {
+      mockWebServer.enqueue(new MockResponse().setResponseCode(413));
+      mockWebServer.enqueue(new MockResponse().setResponseCode(429));
+      Sender sender = createSender(mockWebServer.url("/").uri(),
+          new CookieAuthenticationProvider("LegendSSO", "testToken"));
+      List<byte[]> encodedSpans = new ArrayList<>();
+      encodedSpans.add(SpanBytesEncoder.JSON_V2.encode(Span.newBuilder().traceId(1, 1).id(1).name("span").build()));
+
+      IOException rejected = Assert.assertThrows(IOException.class, () -> sender.sendSpans(encodedSpans).execute());
+      Assert.assertTrue(rejected.getMessage(), rejected instanceof RejectedMessageException);
+      IOException throttled = Assert.assertThrows(IOException.class, () -> sender.sendSpans(encodedSpans).execute());
+      Assert.assertFalse(throttled.getMessage(), throttled instanceof RejectedMessageException);
+    }
+  }
+
+  /**
+   * Whether the thread is still inside the sender, where it may read spans.
+   */
+  private static boolean isSending(Thread thread) {
+    for (StackTraceElement frame : thread.getStackTrace())
+    {
+      if (frame.getClassName().startsWith(JerseyClientSender.class.getName()))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
@@ -15,6 +15,8 @@
 package org.finos.legend.opentracing;
 
 import io.opentracing.Span;
+import java.util.Collections;
+import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -29,10 +31,15 @@ public class EnvironmentSpanDecorator implements org.finos.legend.opentracing.Se
     this.environment = environment;
   }
 
+  @Override
+  public Map<String, String> staticTags()
+  {
+    return Collections.singletonMap("environment", this.environment);
+  }
+
   @Override
   public void decorateRequest(HttpServletRequest request, Span span)
   {
-    span.setTag("environment", this.environment);
   }
 
   @Override
@@ -16,24 +16,22 @@ package org.finos.legend.opentracing;
 
 import io.opentracing.Scope;
 import io.opentracing.Span;
+import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
 import io.opentracing.contrib.jaxrs2.internal.SpanWrapper;
-import io.opentracing.contrib.jaxrs2.server.ServerHeadersExtractTextMap;
 import io.opentracing.propagation.Format;
-import io.opentracing.propagation.TextMapAdapter;
 import io.opentracing.tag.Tags;
 import io.prometheus.client.Gauge;
+import org.finos.legend.opentracing.sampler.RouteSampler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import javax.servlet.AsyncEvent;
 import javax.servlet.AsyncListener;
 import javax.servlet.Filter;
@@ -44,24 +42,62 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.ws.rs.core.MultivaluedHashMap;
 
 @SuppressWarnings("WeakerAccess")
 public class OpenTracingFilter implements Filter
 {
     private static final String SCOPE_PROPERTY = OpenTracingFilter.class.getName() + ".Scope";
+    private static final String UNFINISHED_PROPERTY = OpenTracingFilter.class.getName() + ".Unfinished";
     private static final Logger LOGGER = LoggerFactory.getLogger(OpenTracingFilter.class);
     private static final Gauge ACTIVE_SPAN_EXCEPTION = Gauge.build().name("activeSpan_exceptions").help("Metric for open active span errors").register();
+    private static final Gauge UNFINISHED_ASYNC_SPANS = Gauge.build().name("asyncSpan_unfinished").help("Spans of async requests not yet finished").register();
 
     private final Tracer tracer;
-    private final List<ServerSpanDecorator> spanDecorators;
-    private final Set<String> skipUrls;
+    private final ServerSpanDecorator[] spanDecorators;
+    private final String[] staticTagKeys;
+    private final String[] staticTagValues;
+    private final PathTrie skipUrls;
+    private final PathTrie routeTemplates;
+    private final RouteSampler routeSampler;
+    private final AsyncListener spanFinisher = new SpanFinisher();
 
-    public OpenTracingFilter(Tracer tracer, List<ServerSpanDecorator> spanDecorators, Collection<String> skipUrls)
+    /**
+     * Create OpenTracingFilter.
+     *
+     * @param tracer         Tracer to start spans with
+     * @param spanDecorators Decorators executed around each request/response, whose static tags are set as each span
+     *                       is started
+     * @param skipUrls       URLs to skip tracing on; a segment may be {@code *}, matching any one segment, and the
+     *                       last may be {@code **}, matching any remaining segments
+     * @param routeTemplates Templates such as {@code /api/project/{id}} naming the spans of the paths they match, so
+     *                       that spans are not named after ids; spans of other paths are named after the path
+     * @param routeSampler   Decides whether to sample requests that neither continue a trace nor carry an upstream
+     *                       sampling decision, by operation name, or null to leave this to the tracer's sampler
+     */
+    public OpenTracingFilter(Tracer tracer, List<ServerSpanDecorator> spanDecorators, Collection<String> skipUrls, Collection<String> routeTemplates, RouteSampler routeSampler)
     {
         this.tracer = tracer;
-        this.spanDecorators = (spanDecorators == null) ? Collections.emptyList() : spanDecorators;
-        this.skipUrls = (skipUrls == null) ? Collections.emptySet() : new HashSet<>(skipUrls);
+        this.spanDecorators = (spanDecorators == null) ? new ServerSpanDecorator[0] : spanDecorators.toArray(new ServerSpanDecorator[0]);
+        Map<String, String> staticTags = new LinkedHashMap<>();
+        for (ServerSpanDecorator decorator : this.spanDecorators)
+        {
+            staticTags.putAll(decorator.staticTags());
+        }
+        this.staticTagKeys = staticTags.keySet().toArray(new String[0]);
+        this.staticTagValues = staticTags.values().toArray(new String[0]);
+        this.skipUrls = PathTrie.compile(skipUrls);
+        this.routeTemplates = PathTrie.compile(routeTemplates);
+        this.routeSampler = routeSampler;
+    }
+
+    public OpenTracingFilter(Tracer tracer, List<ServerSpanDecorator> spanDecorators, Collection<String> skipUrls, RouteSampler routeSampler)
+    {
+        this(tracer, spanDecorators, skipUrls, null, routeSampler);
+    }
+
+    public OpenTracingFilter(Tracer tracer, List<ServerSpanDecorator> spanDecorators, Collection<String> skipUrls)
+    {
+        this(tracer, spanDecorators, skipUrls, null);
     }
 
     public OpenTracingFilter(Tracer tracer, List<ServerSpanDecorator> spanDecorators)
@@ -86,21 +122,35 @@ public class OpenTracingFilter implements Filter
         HttpServletRequest httpRequest = (HttpServletRequest) request;
 
         String uri = httpRequest.getRequestURI();
-        if (this.skipUrls.contains(uri))
+        if (this.skipUrls.match(uri) != null)
         {
             chain.doFilter(request, response);
             return;
         }
 
-        Tracer.SpanBuilder spanBuilder = this.tracer.buildSpan(httpRequest.getPathInfo())
+        String pathInfo = httpRequest.getPathInfo();
+        String routeTemplate = this.routeTemplates.match(pathInfo);
+        String operationName = (routeTemplate == null) ? pathInfo : routeTemplate;
+        Tracer.SpanBuilder spanBuilder = this.tracer.buildSpan(operationName)
                 .ignoreActiveSpan()
                 .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER);
+        for (int i = 0; i < this.staticTagKeys.length; i++)
+        {
+            spanBuilder.withTag(this.staticTagKeys[i], this.staticTagValues[i]);
+        }
 
-        MultivaluedHashMap<String, String> headerMap = new MultivaluedHashMap<>();
-        Collections.list(httpRequest.getHeaderNames())
-                .forEach(header -> headerMap.put(header, Collections.list(httpRequest.getHeaders(header))));
-
-        spanBuilder.asChildOf(this.tracer.extract(Format.Builtin.HTTP_HEADERS, new ServerHeadersExtractTextMap(headerMap)));
+        RequestHeadersExtractTextMap requestHeaders = new RequestHeadersExtractTextMap(httpRequest);
+        SpanContext parent = this.tracer.extract(Format.Builtin.HTTP_HEADERS, requestHeaders);
+        if (this.routeSampler != null && (parent == null || parent.toTraceId() == null) && !requestHeaders.isSamplingHeaderRead())
+        {
+            // A new trace not yet decided upstream: Brave only honours sampling.priority on spans without a parent,
+            // even an empty one
+            spanBuilder.withTag(Tags.SAMPLING_PRIORITY.getKey(), this.routeSampler.isSampled(operationName) ? 1 : 0);
+        }
+        else
+        {
+            spanBuilder.asChildOf(parent);
+        }
 
         try (Scope scope = spanBuilder.startActive(false))
         {
@@ -110,14 +160,15 @@ public class OpenTracingFilter implements Filter
                 // Update request
                 try
                 {
-                    this.spanDecorators.forEach(d -> d.decorateRequest(httpRequest, span));
+                    for (ServerSpanDecorator decorator : this.spanDecorators)
+                    {
+                        decorator.decorateRequest(httpRequest, span);
+                    }
 
                     httpRequest.setAttribute(SCOPE_PROPERTY, scope);
                     httpRequest.setAttribute(SpanWrapper.PROPERTY_NAME, new SpanWrapper(span, scope));
 
-                    Map<String, String> props = new HashMap<>();
-                    this.tracer.inject(span.context(), Format.Builtin.HTTP_HEADERS, new TextMapAdapter(props));
-                    props.forEach(httpResponse::addHeader);
+                    this.tracer.inject(span.context(), Format.Builtin.HTTP_HEADERS, new ResponseHeadersInjectTextMap(httpResponse));
                 }
                 catch (Throwable t)
                 {
@@ -131,7 +182,7 @@ public class OpenTracingFilter implements Filter
                 // Update response
                 try
                 {
-                    this.spanDecorators.forEach(d -> d.decorateResponse(httpResponse, span));
+                    decorateResponse(httpResponse, span);
                 }
                 catch (Throwable t)
                 {
@@ -150,7 +201,10 @@ public class OpenTracingFilter implements Filter
                 if (request.isAsyncStarted())
                 {
                     LOGGER.debug("Async request, not finishing the span now (trace id: {})", span.context().toTraceId());
-                    request.getAsyncContext().addListener(new SpanFinisher(span), request, response);
+                    // counted before the listener is added, so that it cannot be uncounted first
+                    request.setAttribute(UNFINISHED_PROPERTY, Boolean.TRUE);
+                    UNFINISHED_ASYNC_SPANS.inc();
+                    request.getAsyncContext().addListener(this.spanFinisher, request, response);
                 }
                 else
                 {
@@ -180,6 +234,14 @@ public class OpenTracingFilter implements Filter
     {
     }
 
+    private void decorateResponse(HttpServletResponse response, Span span)
+    {
+        for (ServerSpanDecorator decorator : this.spanDecorators)
+        {
+            decorator.decorateResponse(response, span);
+        }
+    }
+
     private static void addExceptionLogs(Span span, Throwable throwable)
     {
         Tags.ERROR.set(span, true);
@@ -189,36 +251,106 @@ public class OpenTracingFilter implements Filter
         span.log(errorLogs);
     }
 
-    static class SpanFinisher implements AsyncListener
+    /**
+     * Finishes the spans of async requests, which it finds in the request attributes, so one instance serves every
+     * request. Spans are uncounted from the unfinished gauge once finished, whether here or by whoever else holds
+     * their {@link SpanWrapper}.
+     */
+    class SpanFinisher implements AsyncListener
     {
-        private final Span span;
-
-        SpanFinisher(Span span)
-        {
-            this.span = span;
-        }
-
         @Override
         public void onComplete(AsyncEvent event)
         {
-            span.finish();
+            SpanWrapper spanWrapper = spanWrapper(event);
+            if (spanWrapper != null && !spanWrapper.isFinished())
+            {
+                Span span = spanWrapper.get();
+                try
+                {
+                    decorateResponse((HttpServletResponse) event.getSuppliedResponse(), span);
+                }
+                catch (Throwable t)
+                {
+                    LOGGER.warn("Error updating async response (trace id: {})", span.context().toTraceId(), t);
+                }
+                finish(spanWrapper);
+            }
+            uncount(event, spanWrapper);
         }
 
         @Override
         public void onTimeout(AsyncEvent event)
         {
+            SpanWrapper spanWrapper = spanWrapper(event);
+            if (spanWrapper != null && !spanWrapper.isFinished())
+            {
+                Span span = spanWrapper.get();
+                Tags.ERROR.set(span, true);
+                Map<String, Object> timeoutLogs = new HashMap<>(2);
+                timeoutLogs.put("event", "timeout");
+                timeoutLogs.put("message", "Async request timed out");
+                span.log(timeoutLogs);
+                finish(spanWrapper);
+            }
+            uncount(event, spanWrapper);
         }
 
         @Override
         public void onError(AsyncEvent event)
         {
-            // this handler is called when exception is thrown in async handler
-            // note that exception logs are added in filter not here
+            // called when an exception is thrown in an async handler; exceptions thrown by the chain are logged in the
+            // filter instead
+            SpanWrapper spanWrapper = spanWrapper(event);
+            if (spanWrapper != null && !spanWrapper.isFinished())
+            {
+                addExceptionLogs(spanWrapper.get(), event.getThrowable());
+                finish(spanWrapper);
+            }
+            uncount(event, spanWrapper);
         }
 
         @Override
         public void onStartAsync(AsyncEvent event)
         {
+            // listeners are cleared when the request goes async again
+            event.getAsyncContext().addListener(this, event.getSuppliedRequest(), event.getSuppliedResponse());
+        }
+
+        private SpanWrapper spanWrapper(AsyncEvent event)
+        {
+            return (SpanWrapper) event.getSuppliedRequest().getAttribute(SpanWrapper.PROPERTY_NAME);
+        }
+
+        private void finish(SpanWrapper spanWrapper)
+        {
+            // the container may call listeners from several threads, e.g. onTimeout then onComplete
+            synchronized (spanWrapper)
+            {
+                if (spanWrapper.isFinished())
+                {
+                    return;
+                }
+                spanWrapper.finish();
+            }
+        }
+
+        private void uncount(AsyncEvent event, SpanWrapper spanWrapper)
+        {
+            if (spanWrapper == null || !spanWrapper.isFinished())
+            {
+                return;
+            }
+            ServletRequest request = event.getSuppliedRequest();
+            // the span's lock makes removing the shared marker once atomic
+            synchronized (spanWrapper)
+            {
+                if (request.getAttribute(UNFINISHED_PROPERTY) == null)
+                {
+                    return;
+                }
+                request.removeAttribute(UNFINISHED_PROPERTY);
+            }
+            UNFINISHED_ASYNC_SPANS.dec();
         }
     }
 }
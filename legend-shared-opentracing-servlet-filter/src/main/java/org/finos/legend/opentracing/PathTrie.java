@@ -0,0 +1,230 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing;
+
+import java.util.Collection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiled set of path patterns, matched one {@code /}-separated segment at a time. A pattern
+ * segment is either literal, {@code *} or a {@code {name}} template variable, matching any one
+ * segment, or a final {@code **}, matching any remaining segments including none. A trailing slash
+ * is ignored.
+ *
+ * <p>Literal segments are looked up in an open-addressed table hashed over the path's characters in
+ * place, so matching allocates nothing. Literal segments are preferred over variables, which are
+ * preferred over {@code **}. Matching backtracks only where a literal and a variable both match a
+ * segment but not the rest of the path, so for typical routes it takes time proportional to the
+ * path's length.
+ *
+ * <p>Patterns are paths, so one that does not start with {@code /} is treated as if it did.
+ */
+final class PathTrie
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger(PathTrie.class);
+
+  private final Node root = new Node();
+
+  private PathTrie()
+  {
+  }
+
+  static PathTrie compile(Collection<String> patterns)
+  {
+    PathTrie result = new PathTrie();
+    if (patterns != null)
+    {
+      patterns.forEach(result::add);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the pattern matching the path, or null if none does.
+   */
+  String match(String path)
+  {
+    if (path == null || path.isEmpty() || path.charAt(0) != '/')
+    {
+      return null;
+    }
+    return match(this.root, path, 1);
+  }
+
+  private static String match(Node node, String path, int start)
+  {
+    if (start >= path.length())
+    {
+      return node.value != null ? node.value : node.remainderValue;
+    }
+    int end = path.indexOf('/', start);
+    if (end < 0)
+    {
+      end = path.length();
+    }
+    Node literal = node.child(path, start, end);
+    if (literal != null)
+    {
+      String result = match(literal, path, end + 1);
+      if (result != null)
+      {
+        return result;
+      }
+    }
+    if (node.variable != null)
+    {
+      String result = match(node.variable, path, end + 1);
+      if (result != null)
+      {
+        return result;
+      }
+    }
+    return node.remainderValue;
+  }
+
+  private void add(String pattern)
+  {
+    if (pattern == null || pattern.isEmpty())
+    {
+      return; // matches no path, as it never did
+    }
+    if (pattern.charAt(0) != '/')
+    {
+      LOGGER.warn("Path pattern {} does not start with /, matching /{} instead", pattern, pattern);
+      pattern = "/" + pattern;
+    }
+    Node node = this.root;
+    int start = 1;
+    while (start < pattern.length())
+    {
+      int end = pattern.indexOf('/', start);
+      if (end < 0)
+      {
+        end = pattern.length();
+      }
+      String segment = pattern.substring(start, end);
+      if ("**".equals(segment))
+      {
+        if (end < pattern.length() - 1)
+        {
+          throw new IllegalArgumentException("** should be the last segment of a path pattern: " + pattern);
+        }
+        if (node.remainderValue == null)
+        {
+          node.remainderValue = pattern;
+        }
+        return;
+      }
+      if ("*".equals(segment) || (segment.startsWith("{") && segment.endsWith("}")))
+      {
+        if (node.variable == null)
+        {
+          node.variable = new Node();
+        }
+        node = node.variable;
+      }
+      else
+      {
+        node = node.getOrAddChild(segment);
+      }
+      start = end + 1;
+    }
+    if (node.value == null)
+    {
+      node.value = pattern;
+    }
+  }
+
+  private static int hash(CharSequence chars, int start, int end)
+  {
+    int h = 0;
+    for (int i = start; i < end; i++)
+    {
+      h = 31 * h + chars.charAt(i);
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private static final class Node
+  {
+    private String[] segments = new String[2];
+    private Node[] children = new Node[2];
+    private int size;
+    private Node variable;
+    private String value; // pattern ending at this node
+    private String remainderValue; // pattern ending with ** at this node
+
+    Node child(String path, int start, int end)
+    {
+      int length = end - start;
+      int mask = this.segments.length - 1;
+      for (int i = hash(path, start, end) & mask; this.segments[i] != null; i = (i + 1) & mask)
+      {
+        String segment = this.segments[i];
+        if (segment.length() == length && path.regionMatches(start, segment, 0, length))
+        {
+          return this.children[i];
+        }
+      }
+      return null;
+    }
+
+    Node getOrAddChild(String segment)
+    {
+      Node result = child(segment, 0, segment.length());
+      if (result != null)
+      {
+        return result;
+      }
+      if ((this.size + 1) * 2 > this.segments.length)
+      {
+        resize();
+      }
+      result = new Node();
+      put(segment, result);
+      return result;
+    }
+
+    private void put(String segment, Node child)
+    {
+      int mask = this.segments.length - 1;
+      int i = hash(segment, 0, segment.length()) & mask;
+      while (this.segments[i] != null)
+      {
+        i = (i + 1) & mask;
+      }
+      this.segments[i] = segment;
+      this.children[i] = child;
+      this.size++;
+    }
+
+    private void resize()
+    {
+      String[] oldSegments = this.segments;
+      Node[] oldChildren = this.children;
+      this.segments = new String[oldSegments.length * 2];
+      this.children = new Node[oldChildren.length * 2];
+      this.size = 0;
+      for (int i = 0; i < oldSegments.length; i++)
+      {
+        if (oldSegments[i] != null)
+        {
+          put(oldSegments[i], oldChildren[i]);
+        }
+      }
+    }
+  }
+}
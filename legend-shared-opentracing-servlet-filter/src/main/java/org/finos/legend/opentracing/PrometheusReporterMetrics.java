@@ -0,0 +1,241 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import io.prometheus.client.SimpleCollector;
+import java.util.ArrayList;
+import java.util.List;
+import org.finos.legend.opentracing.reporter.AsyncReporterMetrics;
+
+/**
+ * Publishes what the span reporter is doing as Prometheus metrics prefixed {@code zipkin_reporter_}.
+ * Pass {@link #get()} to {@link OpenTracing.Builder#metrics} to record them.
+ *
+ * <p>Counters and gauges are updated without locks. Message sizes and latencies are histograms with
+ * exponential buckets, so that they keep their relative precision across orders of magnitude.
+ */
+public class PrometheusReporterMetrics implements AsyncReporterMetrics
+{
+  static final String PREFIX = "zipkin_reporter_";
+
+  private static volatile PrometheusReporterMetrics instance;
+
+  private final List<Collector> collectors = new ArrayList<>();
+  private final Counter spans = counter("spans_total", "Spans reported");
+  private final Counter spanBytes = counter("span_bytes_total", "Encoded size of spans reported");
+  private final Counter messages = counter("messages_total", "Messages sent");
+  private final Histogram messageBytes = register(Histogram.build()
+      .name(PREFIX + "message_bytes")
+      .help("Size of messages sent")
+      .exponentialBuckets(1024, 2, 14)); // 1 KiB to 8 MiB
+  private final Counter messagesDropped = register(Counter.build()
+      .name(PREFIX + "messages_dropped_total")
+      .help("Messages that failed to send, by exception")
+      .labelNames("cause"));
+  private final Counter spansDropped = counter("spans_dropped_total", "Spans dropped");
+  private final Counter spansDroppedByCause = register(Counter.build()
+      .name(PREFIX + "spans_dropped_by_cause_total")
+      .help("Spans dropped, by cause")
+      .labelNames("cause"));
+  private final Gauge queuedSpans = gauge("queued_spans", "Spans pending send");
+  private final Gauge queuedBytes = gauge("queued_bytes", "Encoded size of spans pending send");
+  private final Counter messagesSpooled = counter("messages_spooled_total", "Messages spooled to disk");
+  private final Counter spansSpooled = counter("spans_spooled_total", "Spans spooled to disk");
+  private final Counter messagesReplayed = counter("messages_replayed_total", "Spooled messages sent");
+  private final Counter spansReplayed = counter("spans_replayed_total", "Spooled spans sent");
+  private final Gauge spooledMessages = gauge("spooled_messages", "Spooled messages pending send");
+  private final Gauge spooledBytes = gauge("spooled_bytes", "Size of spooled messages pending send");
+  private final Histogram flushDuration = latency("flush_duration_seconds", "Time to bundle and hand a message to the sender");
+  private final Histogram sendDuration = latency("send_duration_seconds", "Time to send a message");
+  private final Gauge samplingRate = gauge("sampling_rate", "Probability with which new traces are sampled");
+
+  /**
+   * Creates metrics registered with the given registry. There may only be one per registry.
+   */
+  public PrometheusReporterMetrics(CollectorRegistry registry)
+  {
+    for (AsyncReporterMetrics.DropCause cause : AsyncReporterMetrics.DropCause.values())
+    {
+      spansDroppedByCause.labels(cause.name()); // so that every cause is published, even at zero
+    }
+    collectors.forEach(registry::register);
+  }
+
+  /**
+   * Returns the metrics registered with the default registry.
+   */
+  public static PrometheusReporterMetrics get()
+  {
+    PrometheusReporterMetrics result = instance;
+    if (result == null)
+    {
+      synchronized (PrometheusReporterMetrics.class)
+      {
+        result = instance;
+        if (result == null)
+        {
+          result = instance = new PrometheusReporterMetrics(CollectorRegistry.defaultRegistry);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Current samples of every metric, as a registry would collect them.
+   */
+  public List<Collector.MetricFamilySamples> collect()
+  {
+    List<Collector.MetricFamilySamples> result = new ArrayList<>();
+    collectors.forEach(c -> result.addAll(c.collect()));
+    return result;
+  }
+
+  @Override
+  public void incrementMessages()
+  {
+    messages.inc();
+  }
+
+  @Override
+  public void incrementMessagesDropped(Throwable cause)
+  {
+    messagesDropped.labels(cause.getClass().getSimpleName()).inc();
+  }
+
+  @Override
+  public void incrementSpans(int quantity)
+  {
+    spans.inc(quantity);
+  }
+
+  @Override
+  public void incrementSpanBytes(int quantity)
+  {
+    spanBytes.inc(quantity);
+  }
+
+  @Override
+  public void incrementMessageBytes(int quantity)
+  {
+    messageBytes.observe(quantity);
+  }
+
+  @Override
+  public void incrementSpansDropped(int quantity)
+  {
+    spansDropped.inc(quantity);
+  }
+
+  @Override
+  public void incrementSpansDropped(DropCause cause, int quantity)
+  {
+    spansDroppedByCause.labels(cause.name()).inc(quantity);
+  }
+
+  @Override
+  public void updateQueuedSpans(int update)
+  {
+    queuedSpans.set(update);
+  }
+
+  @Override
+  public void updateQueuedBytes(int update)
+  {
+    queuedBytes.set(update);
+  }
+
+  @Override
+  public void incrementMessagesSpooled()
+  {
+    messagesSpooled.inc();
+  }
+
+  @Override
+  public void incrementSpansSpooled(int quantity)
+  {
+    spansSpooled.inc(quantity);
+  }
+
+  @Override
+  public void incrementMessagesReplayed()
+  {
+    messagesReplayed.inc();
+  }
+
+  @Override
+  public void incrementSpansReplayed(int quantity)
+  {
+    spansReplayed.inc(quantity);
+  }
+
+  @Override
+  public void updateSpooledMessages(int quantity)
+  {
+    spooledMessages.set(quantity);
+  }
+
+  @Override
+  public void updateSpooledBytes(long quantity)
+  {
+    spooledBytes.set(quantity);
+  }
+
+  @Override
+  public void recordFlushNanos(long nanos)
+  {
+    flushDuration.observe(nanos / Collector.NANOSECONDS_PER_SECOND);
+  }
+
+  @Override
+  public void recordSendNanos(long nanos)
+  {
+    sendDuration.observe(nanos / Collector.NANOSECONDS_PER_SECOND);
+  }
+
+  @Override
+  public void updateSamplingRate(float rate)
+  {
+    samplingRate.set(rate);
+  }
+
+  private Counter counter(String name, String help)
+  {
+    return register(Counter.build().name(PREFIX + name).help(help));
+  }
+
+  private Gauge gauge(String name, String help)
+  {
+    return register(Gauge.build().name(PREFIX + name).help(help));
+  }
+
+  private Histogram latency(String name, String help)
+  {
+    // 100 microseconds to 13 seconds
+    return register(Histogram.build().name(PREFIX + name).help(help).exponentialBuckets(0.0001, 2, 18));
+  }
+
+  private <C extends SimpleCollector<?>> C register(SimpleCollector.Builder<?, C> builder)
+  {
+    C result = builder.create();
+    collectors.add(result);
+    return result;
+  }
+}
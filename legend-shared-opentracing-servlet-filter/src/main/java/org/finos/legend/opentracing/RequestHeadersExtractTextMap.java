@@ -0,0 +1,123 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing;
+
+import io.opentracing.propagation.TextMap;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * View of a request's headers for {@link io.opentracing.Tracer#extract}, without copying them. Each
+ * header's value is only looked up if the tracer asks for it, which it does only for the headers it
+ * propagates. Multi-valued headers yield their first value.
+ *
+ * <p>The iterator returns itself as the entry, so an entry is only valid until the next call to
+ * {@link Iterator#next()}. Tracers read entries as they iterate, so they never notice.
+ *
+ * <p>It also notes whether the tracer read a header carrying a sampling decision, such as B3's sampled or debug flags,
+ * which may come without a trace id.
+ */
+final class RequestHeadersExtractTextMap implements TextMap
+{
+  private final HttpServletRequest request;
+  private boolean samplingHeaderRead;
+
+  RequestHeadersExtractTextMap(HttpServletRequest request)
+  {
+    this.request = request;
+  }
+
+  @Override
+  public Iterator<Map.Entry<String, String>> iterator()
+  {
+    Enumeration<String> headerNames = request.getHeaderNames();
+    return headerNames == null ? Collections.emptyIterator() : new HeaderIterator(headerNames);
+  }
+
+  /**
+   * Whether the tracer read a header carrying an upstream sampling decision, so that it extracted one even if it
+   * extracted no trace id.
+   */
+  boolean isSamplingHeaderRead()
+  {
+    return samplingHeaderRead;
+  }
+
+  private static boolean isSamplingHeader(String name)
+  {
+    return "x-b3-sampled".equalsIgnoreCase(name) || "x-b3-flags".equalsIgnoreCase(name) || "b3".equalsIgnoreCase(name);
+  }
+
+  @Override
+  public void put(String key, String value)
+  {
+    throw new UnsupportedOperationException(RequestHeadersExtractTextMap.class.getName() + " should only be used with Tracer.extract()");
+  }
+
+  private final class HeaderIterator implements Iterator<Map.Entry<String, String>>, Map.Entry<String, String>
+  {
+    private final Enumeration<String> headerNames;
+    private String name;
+
+    HeaderIterator(Enumeration<String> headerNames)
+    {
+      this.headerNames = headerNames;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      return headerNames.hasMoreElements();
+    }
+
+    @Override
+    public Map.Entry<String, String> next()
+    {
+      if (!headerNames.hasMoreElements())
+      {
+        throw new NoSuchElementException();
+      }
+      name = headerNames.nextElement();
+      return this;
+    }
+
+    @Override
+    public String getKey()
+    {
+      return name;
+    }
+
+    @Override
+    public String getValue()
+    {
+      String value = request.getHeader(name);
+      if (value != null && isSamplingHeader(name))
+      {
+        samplingHeaderRead = true;
+      }
+      return value;
+    }
+
+    @Override
+    public String setValue(String value)
+    {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
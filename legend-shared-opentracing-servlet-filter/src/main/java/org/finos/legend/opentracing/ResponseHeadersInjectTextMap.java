@@ -0,0 +1,45 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing;
+
+import io.opentracing.propagation.TextMap;
+import java.util.Iterator;
+import java.util.Map;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Adds headers injected by {@link io.opentracing.Tracer#inject} straight to a response.
+ */
+final class ResponseHeadersInjectTextMap implements TextMap
+{
+  private final HttpServletResponse response;
+
+  ResponseHeadersInjectTextMap(HttpServletResponse response)
+  {
+    this.response = response;
+  }
+
+  @Override
+  public Iterator<Map.Entry<String, String>> iterator()
+  {
+    throw new UnsupportedOperationException(ResponseHeadersInjectTextMap.class.getName() + " should only be used with Tracer.inject()");
+  }
+
+  @Override
+  public void put(String key, String value)
+  {
+    response.addHeader(key, value);
+  }
+}
@@ -15,11 +15,21 @@
 package org.finos.legend.opentracing;
 
 import io.opentracing.Span;
+import java.util.Collections;
+import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 public interface ServerSpanDecorator
 {
+  /**
+   * Tags with the same value on every span of the process, such as its host. {@link OpenTracingFilter}
+   * calls this once, when it is created, and sets them on each span as it is started.
+   */
+  default Map<String, String> staticTags()
+  {
+    return Collections.emptyMap();
+  }
 
   void decorateRequest(HttpServletRequest request, Span span);
 
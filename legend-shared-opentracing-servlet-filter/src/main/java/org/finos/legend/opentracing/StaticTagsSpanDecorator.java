@@ -0,0 +1,51 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing;
+
+import io.opentracing.Span;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Sets the given tags, such as the service's version, on every span.
+ */
+public class StaticTagsSpanDecorator implements ServerSpanDecorator
+{
+  private final Map<String, String> tags;
+
+  public StaticTagsSpanDecorator(Map<String, String> tags)
+  {
+    this.tags = Collections.unmodifiableMap(new LinkedHashMap<>(tags));
+  }
+
+  @Override
+  public Map<String, String> staticTags()
+  {
+    return this.tags;
+  }
+
+  @Override
+  public void decorateRequest(HttpServletRequest request, Span span)
+  {
+  }
+
+  @Override
+  public void decorateResponse(HttpServletResponse response, Span span)
+  {
+  }
+}
@@ -18,6 +18,8 @@ import io.opentracing.Span;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.security.Principal;
+import java.util.Collections;
+import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -26,6 +28,12 @@ public class UserNameDecorator implements org.finos.legend.opentracing.ServerSpa
 
   private static final String SERVER_HOST = getServerHost();
 
+  @Override
+  public Map<String, String> staticTags()
+  {
+    return SERVER_HOST == null ? Collections.emptyMap() : Collections.singletonMap("serverHost", SERVER_HOST);
+  }
+
   public void decorateRequest(HttpServletRequest request, Span span)
   {
     Principal principal = request.getUserPrincipal();
@@ -34,8 +42,6 @@ public class UserNameDecorator implements org.finos.legend.opentracing.ServerSpa
       String user = principal.getName();
       span.setTag("user", user);
     }
-
-    span.setTag("serverHost", SERVER_HOST);
   }
 
   public void decorateResponse(HttpServletResponse response, Span span)
@@ -51,6 +57,6 @@ public class UserNameDecorator implements org.finos.legend.opentracing.ServerSpa
     {
       //ignored
     }
-    return "";
+    return null;
   }
 }
\ No newline at end of file
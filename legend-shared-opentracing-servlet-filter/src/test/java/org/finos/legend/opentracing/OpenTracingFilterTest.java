@@ -14,24 +14,49 @@
 
 package org.finos.legend.opentracing;
 
+import brave.Tracing;
+import brave.opentracing.BraveTracer;
 import io.opentracing.contrib.jaxrs2.internal.SpanWrapper;
 import io.opentracing.mock.MockSpan;
 import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
+import io.prometheus.client.CollectorRegistry;
+import org.finos.legend.opentracing.sampler.RouteSampler;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import static io.opentracing.contrib.jaxrs2.internal.SpanWrapper.PROPERTY_NAME;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -91,4 +116,314 @@ public class OpenTracingFilterTest
     MockSpan.LogEntry logEntry = span.logEntries().get(0);
     Assert.assertEquals(exception, logEntry.fields().get("error.object"));
   }
+
+  @Test
+  public void routeSamplerDecidesNewTraces() throws IOException, ServletException
+  {
+    MockTracer tracer = new MockTracer();
+    RouteSampler routeSampler = RouteSampler.builder(1).build();
+    OpenTracingFilter filter = new OpenTracingFilter(tracer, null, null, routeSampler);
+
+    filter.doFilter(request("/chatty", Collections.emptyMap()), mock(HttpServletResponse.class), mock(FilterChain.class));
+    filter.doFilter(request("/chatty", Collections.emptyMap()), mock(HttpServletResponse.class), mock(FilterChain.class));
+    filter.doFilter(request("/rare", Collections.emptyMap()), mock(HttpServletResponse.class), mock(FilterChain.class));
+
+    Assert.assertEquals(3, tracer.finishedSpans().size());
+    Assert.assertEquals(1, tracer.finishedSpans().get(0).tags().get(Tags.SAMPLING_PRIORITY.getKey()));
+    Assert.assertEquals(0, tracer.finishedSpans().get(1).tags().get(Tags.SAMPLING_PRIORITY.getKey()));
+    Assert.assertEquals(1, tracer.finishedSpans().get(2).tags().get(Tags.SAMPLING_PRIORITY.getKey()));
+  }
+
+  @Test
+  public void routeSamplerLeavesContinuedTracesToTheirParent() throws IOException, ServletException
+  {
+    MockTracer tracer = new MockTracer();
+    RouteSampler routeSampler = RouteSampler.builder(0).build();
+    OpenTracingFilter filter = new OpenTracingFilter(tracer, null, null, routeSampler);
+    Map<String, String> headers = new HashMap<>();
+    headers.put("traceid", "7");
+    headers.put("spanid", "8");
+
+    filter.doFilter(request("/chatty", headers), mock(HttpServletResponse.class), mock(FilterChain.class));
+
+    MockSpan span = tracer.finishedSpans().get(0);
+    Assert.assertEquals(7, span.context().traceId());
+    Assert.assertEquals(8, span.parentId());
+    Assert.assertFalse(span.tags().containsKey(Tags.SAMPLING_PRIORITY.getKey()));
+  }
+
+  @Test
+  public void routeSamplerLeavesUpstreamSamplingDecisions() throws IOException, ServletException
+  {
+    List<zipkin2.Span> reported = new ArrayList<>();
+    Tracing tracing = Tracing.newBuilder().spanReporter(reported::add).build();
+    try
+    {
+      OpenTracingFilter filter = new OpenTracingFilter(BraveTracer.create(tracing), null, null, RouteSampler.builder(1).build());
+
+      filter.doFilter(request("/chatty", Collections.singletonMap("X-B3-Sampled", "0")), mock(HttpServletResponse.class), mock(FilterChain.class));
+      Assert.assertEquals(0, reported.size());
+
+      filter.doFilter(request("/chatty", Collections.emptyMap()), mock(HttpServletResponse.class), mock(FilterChain.class));
+      filter.doFilter(request("/chatty", Collections.emptyMap()), mock(HttpServletResponse.class), mock(FilterChain.class));
+      Assert.assertEquals(1, reported.size());
+
+      // the route's budget is spent, but debug traces are always sampled
+      filter.doFilter(request("/chatty", Collections.singletonMap("X-B3-Flags", "1")), mock(HttpServletResponse.class), mock(FilterChain.class));
+      Assert.assertEquals(2, reported.size());
+      Assert.assertEquals(Boolean.TRUE, reported.get(1).debug());
+    }
+    finally
+    {
+      tracing.close();
+    }
+  }
+
+  @Test
+  public void onlyPropagationHeadersAreRead() throws IOException, ServletException
+  {
+    MockTracer tracer = new MockTracer();
+    OpenTracingFilter filter = new OpenTracingFilter(tracer);
+    Map<String, String> headers = new LinkedHashMap<>();
+    for (int i = 0; i < 40; i++)
+    {
+      headers.put("x-header-" + i, "value" + i);
+    }
+    headers.put("traceid", "7");
+    headers.put("spanid", "8");
+    HttpServletRequest httpRequest = request("/path", headers);
+    HttpServletResponse httpResponse = mock(HttpServletResponse.class);
+
+    filter.doFilter(httpRequest, httpResponse, mock(FilterChain.class));
+
+    MockSpan span = tracer.finishedSpans().get(0);
+    Assert.assertEquals(7, span.context().traceId());
+    Assert.assertEquals(8, span.parentId());
+    verify(httpRequest).getHeader("traceid");
+    verify(httpRequest).getHeader("spanid");
+    verify(httpRequest, never()).getHeader(startsWith("x-header-"));
+    verify(httpRequest, never()).getHeaders(anyString());
+    verify(httpResponse).addHeader("traceid", "7");
+    verify(httpResponse).addHeader("spanid", String.valueOf(span.context().spanId()));
+  }
+
+  @Test
+  public void spansAreNamedAfterRouteTemplatesAndSkipUrlsMatchPatterns() throws IOException, ServletException
+  {
+    MockTracer tracer = new MockTracer();
+    OpenTracingFilter filter = new OpenTracingFilter(tracer, null, Arrays.asList("/health", "/static/**"), Arrays.asList("/api/project/{id}", "/api/project/{id}/workspace/{workspaceId}"), null);
+    FilterChain chain = mock(FilterChain.class);
+
+    filter.doFilter(uri("/health"), mock(HttpServletResponse.class), chain);
+    filter.doFilter(uri("/static/js/app.js"), mock(HttpServletResponse.class), chain);
+    filter.doFilter(request("/api/project/PROD-1", Collections.emptyMap()), mock(HttpServletResponse.class), chain);
+    filter.doFilter(request("/api/project/PROD-2/workspace/ws", Collections.emptyMap()), mock(HttpServletResponse.class), chain);
+    filter.doFilter(request("/api/other", Collections.emptyMap()), mock(HttpServletResponse.class), chain);
+
+    Assert.assertEquals(3, tracer.finishedSpans().size());
+    Assert.assertEquals("/api/project/{id}", tracer.finishedSpans().get(0).operationName());
+    Assert.assertEquals("/api/project/{id}/workspace/{workspaceId}", tracer.finishedSpans().get(1).operationName());
+    Assert.assertEquals("/api/other", tracer.finishedSpans().get(2).operationName());
+  }
+
+  @Test
+  public void staticTagsAreResolvedOnceAndSetOnEverySpan() throws IOException, ServletException
+  {
+    MockTracer tracer = new MockTracer();
+    ServerSpanDecorator hostDecorator = mock(ServerSpanDecorator.class);
+    when(hostDecorator.staticTags()).thenReturn(Collections.singletonMap("serverHost", "host1"));
+    List<ServerSpanDecorator> decorators = Arrays.asList(
+        hostDecorator,
+        new EnvironmentSpanDecorator("prod"),
+        new StaticTagsSpanDecorator(Collections.singletonMap("version", "1.2.3")));
+    OpenTracingFilter filter = new OpenTracingFilter(tracer, decorators);
+
+    for (int i = 0; i < 3; i++)
+    {
+      filter.doFilter(request("/path", Collections.emptyMap()), mock(HttpServletResponse.class), mock(FilterChain.class));
+    }
+
+    verify(hostDecorator).staticTags();
+    verify(hostDecorator, times(3)).decorateRequest(any(), any());
+    Assert.assertEquals(3, tracer.finishedSpans().size());
+    for (MockSpan span : tracer.finishedSpans())
+    {
+      Assert.assertEquals("host1", span.tags().get("serverHost"));
+      Assert.assertEquals("prod", span.tags().get("environment"));
+      Assert.assertEquals("1.2.3", span.tags().get("version"));
+    }
+  }
+
+  @Test
+  public void asyncRequestSpanIsFinishedOnComplete() throws IOException, ServletException
+  {
+    MockTracer tracer = new MockTracer();
+    OpenTracingFilter filter = new OpenTracingFilter(tracer, Collections.singletonList(new StandardSpanDecorator()));
+    AsyncRequest first = new AsyncRequest();
+    AsyncRequest second = new AsyncRequest();
+
+    first.filter(filter);
+    second.filter(filter);
+    Assert.assertEquals(0, tracer.finishedSpans().size());
+    Assert.assertSame(first.listener, second.listener);
+
+    when(first.response.getStatus()).thenReturn(202);
+    first.listener.onComplete(first.event(null));
+    Assert.assertEquals(1, tracer.finishedSpans().size());
+    Assert.assertEquals(202, tracer.finishedSpans().get(0).tags().get(Tags.HTTP_STATUS.getKey()));
+  }
+
+  @Test
+  public void asyncRequestSpanIsFinishedOnTimeoutAndError() throws IOException, ServletException
+  {
+    MockTracer tracer = new MockTracer();
+    OpenTracingFilter filter = new OpenTracingFilter(tracer);
+    AsyncRequest timedOut = new AsyncRequest();
+    AsyncRequest failed = new AsyncRequest();
+    double unfinished = unfinishedAsyncSpans();
+
+    timedOut.filter(filter);
+    failed.filter(filter);
+    Assert.assertEquals(unfinished + 2, unfinishedAsyncSpans(), 0.0);
+
+    timedOut.listener.onTimeout(timedOut.event(null));
+    timedOut.listener.onComplete(timedOut.event(null)); // the container completes timed out requests too
+    RuntimeException exception = new RuntimeException("Stuff went wrong");
+    failed.listener.onError(failed.event(exception));
+
+    Assert.assertEquals(2, tracer.finishedSpans().size());
+    MockSpan timedOutSpan = tracer.finishedSpans().get(0);
+    Assert.assertEquals(Boolean.TRUE, timedOutSpan.tags().get("error"));
+    Assert.assertEquals("timeout", timedOutSpan.logEntries().get(0).fields().get("event"));
+    MockSpan failedSpan = tracer.finishedSpans().get(1);
+    Assert.assertEquals(Boolean.TRUE, failedSpan.tags().get("error"));
+    Assert.assertEquals(exception, failedSpan.logEntries().get(0).fields().get("error.object"));
+    Assert.assertEquals(unfinished, unfinishedAsyncSpans(), 0.0);
+  }
+
+  @Test
+  public void asyncRequestSpanFinishedElsewhereIsUncounted() throws IOException, ServletException
+  {
+    MockTracer tracer = new MockTracer();
+    OpenTracingFilter filter = new OpenTracingFilter(tracer);
+    AsyncRequest request = new AsyncRequest();
+    double unfinished = unfinishedAsyncSpans();
+
+    request.filter(filter);
+    Assert.assertEquals(unfinished + 1, unfinishedAsyncSpans(), 0.0);
+
+    ((SpanWrapper) request.attributes.get(SpanWrapper.PROPERTY_NAME)).finish();
+    request.listener.onComplete(request.event(null));
+    request.listener.onComplete(request.event(null));
+    Assert.assertEquals(1, tracer.finishedSpans().size());
+    Assert.assertEquals(unfinished, unfinishedAsyncSpans(), 0.0);
+  }
+
+  @Test
+  public void asyncRequestSoak() throws Exception
+  {
+    int requests = 2000;
+    MockTracer tracer = new MockTracer();
+    OpenTracingFilter filter = new OpenTracingFilter(tracer, Collections.singletonList(new StandardSpanDecorator()));
+    List<AsyncRequest> asyncRequests = new ArrayList<>(requests);
+    for (int i = 0; i < requests; i++)
+    {
+      asyncRequests.add(new AsyncRequest());
+    }
+    double unfinished = unfinishedAsyncSpans();
+
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    try
+    {
+      List<Future<?>> started = new ArrayList<>(requests);
+      for (AsyncRequest asyncRequest : asyncRequests)
+      {
+        started.add(executor.submit(() -> asyncRequest.filter(filter)));
+      }
+      for (Future<?> future : started)
+      {
+        future.get(30, TimeUnit.SECONDS);
+      }
+      Assert.assertEquals(unfinished + requests, unfinishedAsyncSpans(), 0.0);
+
+      List<Future<?>> completed = new ArrayList<>(requests);
+      for (AsyncRequest asyncRequest : asyncRequests)
+      {
+        completed.add(executor.submit(() ->
+        {
+          asyncRequest.listener.onTimeout(asyncRequest.event(null));
+          asyncRequest.listener.onComplete(asyncRequest.event(null));
+          return null;
+        }));
+      }
+      for (Future<?> future : completed)
+      {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+
+    // every request shares one listener, holding no state of its own, and no span is left behind
+    Assert.assertEquals(1, asyncRequests.stream().map(r -> r.listener).distinct().count());
+    Assert.assertEquals(requests, tracer.finishedSpans().size());
+    Assert.assertEquals(unfinished, unfinishedAsyncSpans(), 0.0);
+  }
+
+  private static double unfinishedAsyncSpans()
+  {
+    return CollectorRegistry.defaultRegistry.getSampleValue("asyncSpan_unfinished");
+  }
+
+  /**
+   * Mocks of a request that goes async, remembering its attributes and the listener added to it.
+   */
+  private static class AsyncRequest
+  {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    final AsyncContext asyncContext = mock(AsyncContext.class);
+    final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    volatile AsyncListener listener;
+
+    AsyncRequest()
+    {
+      when(request.getHeaderNames()).thenReturn(Collections.emptyEnumeration());
+      when(request.isAsyncStarted()).thenReturn(true);
+      when(request.getAsyncContext()).thenReturn(asyncContext);
+      doAnswer(i -> attributes.put(i.getArgument(0), i.getArgument(1))).when(request).setAttribute(anyString(), any());
+      when(request.getAttribute(anyString())).thenAnswer(i -> attributes.get(i.<String>getArgument(0)));
+      doAnswer(i -> attributes.remove(i.<String>getArgument(0))).when(request).removeAttribute(anyString());
+      doAnswer(i -> listener = i.getArgument(0)).when(asyncContext).addListener(any(AsyncListener.class), any(), any());
+    }
+
+    Void filter(OpenTracingFilter filter) throws IOException, ServletException
+    {
+      filter.doFilter(request, response, mock(FilterChain.class));
+      return null;
+    }
+
+    AsyncEvent event(Throwable throwable)
+    {
+      return new AsyncEvent(asyncContext, request, response, throwable);
+    }
+  }
+
+  private static HttpServletRequest uri(String requestUri)
+  {
+    HttpServletRequest httpRequest = mock(HttpServletRequest.class);
+    when(httpRequest.getRequestURI()).thenReturn(requestUri);
+    return httpRequest;
+  }
+
+  private static HttpServletRequest request(String pathInfo, Map<String, String> headers)
+  {
+    HttpServletRequest httpRequest = mock(HttpServletRequest.class);
+    when(httpRequest.getPathInfo()).thenReturn(pathInfo);
+    when(httpRequest.getHeaderNames()).thenReturn(Collections.enumeration(headers.keySet()));
+    headers.forEach((name, value) -> when(httpRequest.getHeader(name)).thenReturn(value));
+    return httpRequest;
+  }
 }
@@ -0,0 +1,114 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PathTrieTest
+{
+  @Test
+  public void matchesLiteralPaths()
+  {
+    PathTrie trie = PathTrie.compile(Arrays.asList("/", "/health", "/api/projects"));
+
+    Assert.assertEquals("/", trie.match("/"));
+    Assert.assertEquals("/health", trie.match("/health"));
+    Assert.assertEquals("/health", trie.match("/health/"));
+    Assert.assertEquals("/api/projects", trie.match("/api/projects"));
+    Assert.assertNull(trie.match("/api"));
+    Assert.assertNull(trie.match("/api/projects/1"));
+    Assert.assertNull(trie.match("/healthy"));
+    Assert.assertNull(trie.match("health"));
+    Assert.assertNull(trie.match(null));
+  }
+
+  @Test
+  public void variablesMatchOneSegment()
+  {
+    PathTrie trie = PathTrie.compile(Arrays.asList("/api/project/{id}", "/api/project/{id}/workspace/{workspaceId}", "/api/*/ping"));
+
+    Assert.assertEquals("/api/project/{id}", trie.match("/api/project/PROD-1"));
+    Assert.assertEquals("/api/project/{id}/workspace/{workspaceId}", trie.match("/api/project/PROD-1/workspace/ws"));
+    Assert.assertEquals("/api/*/ping", trie.match("/api/server/ping"));
+    Assert.assertNull(trie.match("/api/project"));
+    Assert.assertNull(trie.match("/api/project/PROD-1/workspace"));
+  }
+
+  @Test
+  public void remainderMatchesAnyRemainingSegments()
+  {
+    PathTrie trie = PathTrie.compile(Arrays.asList("/static/**", "/static/index.html"));
+
+    Assert.assertEquals("/static/**", trie.match("/static"));
+    Assert.assertEquals("/static/**", trie.match("/static/js/app.js"));
+    Assert.assertEquals("/static/index.html", trie.match("/static/index.html"));
+    Assert.assertNull(trie.match("/other/js/app.js"));
+  }
+
+  @Test
+  public void literalSegmentsArePreferredAndBacktrackedFrom()
+  {
+    PathTrie trie = PathTrie.compile(Arrays.asList("/api/project/{id}/groups", "/api/project/new", "/api/**"));
+
+    Assert.assertEquals("/api/project/new", trie.match("/api/project/new"));
+    Assert.assertEquals("/api/project/{id}/groups", trie.match("/api/project/new/groups"));
+    Assert.assertEquals("/api/**", trie.match("/api/project/new/other"));
+  }
+
+  @Test
+  public void manyLiteralSegments()
+  {
+    String[] patterns = new String[500];
+    for (int i = 0; i < patterns.length; i++)
+    {
+      patterns[i] = "/route" + i + "/{id}";
+    }
+    PathTrie trie = PathTrie.compile(Arrays.asList(patterns));
+
+    for (int i = 0; i < patterns.length; i++)
+    {
+      Assert.assertEquals(patterns[i], trie.match("/route" + i + "/" + i));
+    }
+    Assert.assertNull(trie.match("/route500/1"));
+  }
+
+  @Test
+  public void emptyTrieMatchesNothing()
+  {
+    PathTrie trie = PathTrie.compile(Collections.emptyList());
+
+    Assert.assertNull(trie.match("/"));
+    Assert.assertNull(PathTrie.compile(null).match("/api"));
+  }
+
+  @Test
+  public void patternsWithoutLeadingSlashAreNormalized()
+  {
+    PathTrie trie = PathTrie.compile(Arrays.asList("health", "api/project/{id}", ""));
+
+    Assert.assertEquals("/health", trie.match("/health"));
+    Assert.assertEquals("/api/project/{id}", trie.match("/api/project/PROD-1"));
+    Assert.assertNull(trie.match("/"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void remainderMustBeLast()
+  {
+    PathTrie.compile(Collections.singletonList("/static/**/index.html"));
+  }
+}
@@ -0,0 +1,75 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.opentracing;
+
+import io.prometheus.client.CollectorRegistry;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.finos.legend.opentracing.reporter.AsyncReporterMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PrometheusReporterMetricsTest
+{
+  private final CollectorRegistry registry = new CollectorRegistry();
+  private final PrometheusReporterMetrics metrics = new PrometheusReporterMetrics(registry);
+
+  @Test
+  public void countersAndGauges()
+  {
+    metrics.incrementSpans(3);
+    metrics.incrementSpanBytes(300);
+    metrics.incrementSpansDropped(2);
+    metrics.incrementSpansDropped(AsyncReporterMetrics.DropCause.QUEUE_FULL, 2);
+    metrics.incrementMessagesDropped(new IOException());
+    metrics.updateQueuedSpans(5);
+    metrics.updateSamplingRate(0.25f);
+
+    Assert.assertEquals(3.0, value("zipkin_reporter_spans_total"), 0.0);
+    Assert.assertEquals(300.0, value("zipkin_reporter_span_bytes_total"), 0.0);
+    Assert.assertEquals(2.0, value("zipkin_reporter_spans_dropped_total"), 0.0);
+    Assert.assertEquals(2.0, value("zipkin_reporter_spans_dropped_by_cause_total", "cause", "QUEUE_FULL"), 0.0);
+    Assert.assertEquals(0.0, value("zipkin_reporter_spans_dropped_by_cause_total", "cause", "CLOSED"), 0.0);
+    Assert.assertEquals(1.0, value("zipkin_reporter_messages_dropped_total", "cause", "IOException"), 0.0);
+    Assert.assertEquals(5.0, value("zipkin_reporter_queued_spans"), 0.0);
+    Assert.assertEquals(0.25, value("zipkin_reporter_sampling_rate"), 0.0);
+  }
+
+  @Test
+  public void histograms()
+  {
+    metrics.incrementMessages();
+    metrics.incrementMessageBytes(3000);
+    metrics.recordSendNanos(TimeUnit.MILLISECONDS.toNanos(5));
+    metrics.recordSendNanos(TimeUnit.MILLISECONDS.toNanos(500));
+
+    Assert.assertEquals(1.0, value("zipkin_reporter_message_bytes_count"), 0.0);
+    Assert.assertEquals(0.0, value("zipkin_reporter_message_bytes_bucket", "le", "2048.0"), 0.0);
+    Assert.assertEquals(1.0, value("zipkin_reporter_message_bytes_bucket", "le", "4096.0"), 0.0);
+    Assert.assertEquals(2.0, value("zipkin_reporter_send_duration_seconds_count"), 0.0);
+    Assert.assertEquals(0.505, value("zipkin_reporter_send_duration_seconds_sum"), 0.0001);
+    Assert.assertEquals(0.0, value("zipkin_reporter_flush_duration_seconds_count"), 0.0);
+  }
+
+  private double value(String name)
+  {
+    return registry.getSampleValue(name);
+  }
+
+  private double value(String name, String labelName, String labelValue)
+  {
+    return registry.getSampleValue(name, new String[]{labelName}, new String[]{labelValue});
+  }
+}
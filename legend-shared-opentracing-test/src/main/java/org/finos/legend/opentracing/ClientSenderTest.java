@@ -14,11 +14,15 @@
 
 package org.finos.legend.opentracing;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpCookie;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
@@ -35,8 +39,27 @@ public abstract class ClientSenderTest
   protected abstract Sender createSender(URI uri,
                                          CookieAuthenticationProvider cookieAuthenticationProvider);
 
+  /**
+   * Creates a sender that compresses messages with the given content encoding, such as "gzip".
+   */
+  protected Sender createCompressingSender(URI uri,
+                                           CookieAuthenticationProvider cookieAuthenticationProvider,
+                                           String contentEncoding)
+  {
+    throw new UnsupportedOperationException("compression is not supported");
+  }
 
   protected void testSendSpans() throws IOException, InterruptedException
+  {
+    sendAndCheckSpans(null);
+  }
+
+  protected void testSendCompressedSpans(String contentEncoding) throws IOException, InterruptedException
+  {
+    sendAndCheckSpans(contentEncoding);
+  }
+
+  private void sendAndCheckSpans(String contentEncoding) throws IOException, InterruptedException
   {
     try (MockWebServer mockWebServer = new MockWebServer())
     {
@@ -46,8 +69,9 @@ public abstract class ClientSenderTest
       {
         CookieAuthenticationProvider tokenProvider =
             new CookieAuthenticationProvider("LegendSSO", () -> "testToken");
-        Sender sender = createSender(mockWebServer.url("/").uri(),
-            tokenProvider);
+        Sender sender = contentEncoding == null
+            ? createSender(mockWebServer.url("/").uri(), tokenProvider)
+            : createCompressingSender(mockWebServer.url("/").uri(), tokenProvider, contentEncoding);
 
         Span span1 = Span.newBuilder()
             .id("abcdef")
@@ -77,7 +101,8 @@ public abstract class ClientSenderTest
         HttpCookie httpCookie = cookies.get(0);
         Assert.assertEquals("LegendSSO", httpCookie.getName());
         Assert.assertEquals("testToken", httpCookie.getValue());
-        byte[] sent = request.getBody().readByteArray();
+        Assert.assertEquals(contentEncoding, request.getHeader("Content-Encoding"));
+        byte[] sent = decodeBody(request);
         List<Span> results = SpanBytesDecoder.JSON_V2.decodeList(sent);
         Assert.assertEquals(2, results.size());
         Span testSpan1 = results.get(0);
@@ -92,5 +117,37 @@ public abstract class ClientSenderTest
     }
   }
 
-
+  /**
+   * Returns the request body, decompressed according to its {@code Content-Encoding}.
+   */
+  protected static byte[] decodeBody(RecordedRequest request) throws IOException
+  {
+    String contentEncoding = request.getHeader("Content-Encoding");
+    if (contentEncoding == null)
+    {
+      return request.getBody().readByteArray();
+    }
+    InputStream body = request.getBody().inputStream();
+    switch (contentEncoding)
+    {
+      case "gzip":
+        body = new GZIPInputStream(body);
+        break;
+      case "deflate":
+        body = new InflaterInputStream(body);
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported Content-Encoding: " + contentEncoding);
+    }
+    try (InputStream in = body)
+    {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      for (int read = in.read(buffer); read != -1; read = in.read(buffer))
+      {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    }
+  }
 }
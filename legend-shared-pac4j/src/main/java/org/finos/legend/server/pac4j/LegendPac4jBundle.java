@@ -14,8 +14,11 @@
 
 package org.finos.legend.server.pac4j;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
+import com.mongodb.WriteConcern;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
@@ -37,6 +40,9 @@ import org.finos.legend.server.pac4j.internal.SecurityFilterHandler;
 import org.finos.legend.server.pac4j.internal.UsernameFilter;
 import org.finos.legend.server.pac4j.kerberos.SubjectExecutor;
 import org.finos.legend.server.pac4j.mongostore.MongoDbSessionStore;
+import org.finos.legend.server.pac4j.mongostore.SessionNearCache;
+import org.finos.legend.server.pac4j.mongostore.SessionWriteBehind;
+import org.finos.legend.server.pac4j.mongostore.SessionWriteBehindFilter;
 import org.jspecify.annotations.NonNull;
 import org.pac4j.core.client.Client;
 import org.pac4j.core.config.Config;
@@ -182,15 +188,22 @@ public class LegendPac4jBundle<C extends Configuration> extends Pac4jBundle<C> i
                             MongoCollection<Document> userSessions = subjectExecutor.execute(
                                     () -> finalDb.getCollection(legendConfig.getMongoSession().getCollection()));
 
+                            LegendPac4jConfiguration.MongoSessionConfiguration mongoSession = legendConfig.getMongoSession();
+                            SessionNearCache nearCache = mongoSession.getNearCacheMaxSessions() > 0
+                                    ? new SessionNearCache(mongoSession.getNearCacheMaxSessions(), mongoSession.getNearCacheTtl(), mongoSession.getMaxSessionLength())
+                                    : null;
+                            SessionWriteBehind writeBehind = mongoSession.getWriteBehindInterval() > 0
+                                    ? new SessionWriteBehind(userSessions, subjectExecutor, mongoSession.getWriteBehindInterval(), mongoSession.getWriteBehindMaxSessions(), writeConcern(mongoSession.getWriteBehindWriteConcern()))
+                                    : null;
                             config.setSessionStore(
                                     new MongoDbSessionStore(
-                                            legendConfig.getMongoSession().getCryptoAlgorithm(),
-                                            legendConfig.getMongoSession().getMaxSessionLength(),
+                                            mongoSession.getCryptoAlgorithm(),
+                                            mongoSession.getMaxSessionLength(),
                                             userSessions, ImmutableMap.of(
                                             JEEContext.class, new JEESessionStore(),
                                             JaxRsContext.class, new ServletSessionStore(),
                                             ServletJaxRsContext.class, new ServletSessionStore()),
-                                            subjectExecutor, legendConfig.getTrustedPackages(), sessionCookieName));
+                                            subjectExecutor, legendConfig.getTrustedPackages(), sessionCookieName, nearCache, writeBehind));
                         }
                         return config;
                     }
@@ -296,6 +309,32 @@ public class LegendPac4jBundle<C extends Configuration> extends Pac4jBundle<C> i
                         });
         environment.getApplicationContext()
                         .setAttribute(PAC4J_SESSION_STORE,this.getConfig().getSessionStore());
+        if (this.getConfig().getSessionStore() instanceof MongoDbSessionStore)
+        {
+            MongoDbSessionStore mongoDbSessionStore = (MongoDbSessionStore) this.getConfig().getSessionStore();
+            SessionWriteBehind writeBehind = mongoDbSessionStore.getWriteBehind();
+            if (writeBehind != null)
+            {
+                environment.lifecycle().manage(writeBehind);
+                // ahead of pac4j's filters, as its callback filter redirects without passing the request on
+                environment
+                        .servlets()
+                        .addFilter("SessionWriteBehind", new SessionWriteBehindFilter(mongoDbSessionStore))
+                        .addMappingForUrlPatterns(EnumSet.allOf(DispatcherType.class), false, "/*");
+                environment.metrics().register(MetricRegistry.name(SessionWriteBehind.class, "pendingSessions"), (Gauge<Integer>) writeBehind::getPendingSessions);
+                environment.metrics().register(MetricRegistry.name(SessionWriteBehind.class, "writes"), (Gauge<Long>) writeBehind::getWriteCount);
+                environment.metrics().register(MetricRegistry.name(SessionWriteBehind.class, "failedWrites"), (Gauge<Long>) writeBehind::getFailedWriteCount);
+                environment.metrics().register(MetricRegistry.name(SessionWriteBehind.class, "rejected"), (Gauge<Long>) writeBehind::getRejectedCount);
+            }
+            SessionNearCache nearCache = mongoDbSessionStore.getNearCache();
+            if (nearCache != null)
+            {
+                environment.metrics().register(MetricRegistry.name(SessionNearCache.class, "hits"), (Gauge<Long>) nearCache::getHitCount);
+                environment.metrics().register(MetricRegistry.name(SessionNearCache.class, "misses"), (Gauge<Long>) nearCache::getMissCount);
+                environment.metrics().register(MetricRegistry.name(SessionNearCache.class, "evictions"), (Gauge<Long>) nearCache::getEvictionCount);
+                environment.metrics().register(MetricRegistry.name(SessionNearCache.class, "size"), (Gauge<Long>) nearCache::size);
+            }
+        }
         swapClientFinderAndStorageDecision(environment);
     }
 
@@ -352,4 +391,14 @@ public class LegendPac4jBundle<C extends Configuration> extends Pac4jBundle<C> i
         }
         return helper;
     }
+
+    private static WriteConcern writeConcern(String name)
+    {
+        WriteConcern writeConcern = WriteConcern.valueOf(name);
+        if (writeConcern == null)
+        {
+            throw new IllegalArgumentException("Unknown write concern: " + name);
+        }
+        return writeConcern;
+    }
 }
@@ -303,10 +303,18 @@ public final class LegendPac4jConfiguration
     {
         private static final String DEFAULT_CRYPTO_ALGORITHM = "AES";
         private static final int DEFAULT_MAX_SESSION_LENGTH = 7200;
+        private static final int DEFAULT_NEAR_CACHE_TTL = 60;
+        private static final String DEFAULT_WRITE_BEHIND_WRITE_CONCERN = "ACKNOWLEDGED";
+        private static final int DEFAULT_WRITE_BEHIND_MAX_SESSIONS = 10000;
         private boolean enabled;
         private String collection;
         private String cryptoAlgorithm = DEFAULT_CRYPTO_ALGORITHM;
         private int maxSessionLength = DEFAULT_MAX_SESSION_LENGTH;
+        private int nearCacheMaxSessions;
+        private int nearCacheTtl = DEFAULT_NEAR_CACHE_TTL;
+        private int writeBehindInterval;
+        private String writeBehindWriteConcern = DEFAULT_WRITE_BEHIND_WRITE_CONCERN;
+        private int writeBehindMaxSessions = DEFAULT_WRITE_BEHIND_MAX_SESSIONS;
 
         public boolean isEnabled()
         {
@@ -328,6 +336,10 @@ public final class LegendPac4jConfiguration
             this.collection = collection;
         }
 
+        /**
+         * Cipher transformation session attributes are encrypted with. AES/GCM/NoPadding also authenticates them,
+         * unlike the default AES, but cannot read attributes written with another algorithm.
+         */
         public String getCryptoAlgorithm()
         {
             return cryptoAlgorithm;
@@ -364,6 +376,115 @@ public final class LegendPac4jConfiguration
             }
         }
 
+        /**
+         * Most sessions whose attributes each node caches, or 0 not to cache them.
+         */
+        public int getNearCacheMaxSessions()
+        {
+            return nearCacheMaxSessions;
+        }
+
+        public void setNearCacheMaxSessions(int nearCacheMaxSessions)
+        {
+            this.nearCacheMaxSessions = nearCacheMaxSessions;
+        }
+
+        private void defaultNearCacheMaxSessions(int nearCacheMaxSessions)
+        {
+            if (this.nearCacheMaxSessions == 0)
+            {
+                this.nearCacheMaxSessions = nearCacheMaxSessions;
+            }
+        }
+
+        /**
+         * Seconds a node caches a session's attributes for, which bounds how long changes made on other nodes go
+         * unseen.
+         */
+        public int getNearCacheTtl()
+        {
+            return nearCacheTtl;
+        }
+
+        public void setNearCacheTtl(int nearCacheTtl)
+        {
+            this.nearCacheTtl = nearCacheTtl;
+        }
+
+        private void defaultNearCacheTtl(int nearCacheTtl)
+        {
+            if (this.nearCacheTtl == DEFAULT_NEAR_CACHE_TTL)
+            {
+                this.nearCacheTtl = nearCacheTtl;
+            }
+        }
+
+        /**
+         * Milliseconds for which session attributes may be kept on the node that set them before being written, or 0
+         * to write them as they are set.
+         */
+        public int getWriteBehindInterval()
+        {
+            return writeBehindInterval;
+        }
+
+        public void setWriteBehindInterval(int writeBehindInterval)
+        {
+            this.writeBehindInterval = writeBehindInterval;
+        }
+
+        private void defaultWriteBehindInterval(int writeBehindInterval)
+        {
+            if (this.writeBehindInterval == 0)
+            {
+                this.writeBehindInterval = writeBehindInterval;
+            }
+        }
+
+        /**
+         * Name of the Mongo write concern, such as MAJORITY or JOURNALED, that attributes written behind are written
+         * with.
+         */
+        public String getWriteBehindWriteConcern()
+        {
+            return writeBehindWriteConcern;
+        }
+
+        public void setWriteBehindWriteConcern(String writeBehindWriteConcern)
+        {
+            this.writeBehindWriteConcern = writeBehindWriteConcern;
+        }
+
+        private void defaultWriteBehindWriteConcern(String writeBehindWriteConcern)
+        {
+            if (this.writeBehindWriteConcern.equals(DEFAULT_WRITE_BEHIND_WRITE_CONCERN))
+            {
+                this.writeBehindWriteConcern = writeBehindWriteConcern;
+            }
+        }
+
+        /**
+         * Most sessions whose attributes may wait to be written. Attributes of further sessions are written as they
+         * are set.
+         */
+        public int getWriteBehindMaxSessions()
+        {
+            return writeBehindMaxSessions;
+        }
+
+        public void setWriteBehindMaxSessions(int writeBehindMaxSessions)
+        {
+            this.writeBehindMaxSessions = writeBehindMaxSessions;
+        }
+
+        private void defaultWriteBehindMaxSessions(int writeBehindMaxSessions)
+        {
+            if (this.writeBehindMaxSessions == DEFAULT_WRITE_BEHIND_MAX_SESSIONS)
+            {
+                this.writeBehindMaxSessions = writeBehindMaxSessions;
+            }
+        }
+
         private void defaultEnabled(boolean enabled)
         {
             this.enabled = this.enabled || enabled;
@@ -383,6 +504,11 @@ public final class LegendPac4jConfiguration
             this.defaultCryptoAlgorithm(other.getCryptoAlgorithm());
             this.defaultEnabled(other.isEnabled());
             this.defaultMaxSessionLength(other.getMaxSessionLength());
+            this.defaultNearCacheMaxSessions(other.getNearCacheMaxSessions());
+            this.defaultNearCacheTtl(other.getNearCacheTtl());
+            this.defaultWriteBehindInterval(other.getWriteBehindInterval());
+            this.defaultWriteBehindWriteConcern(other.getWriteBehindWriteConcern());
+            this.defaultWriteBehindMaxSessions(other.getWriteBehindMaxSessions());
         }
     }
 
@@ -16,6 +16,7 @@ package org.finos.legend.server.pac4j.mongostore;
 
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.UpdateOptions;
 import org.bson.Document;
 import org.finos.legend.server.pac4j.LegendPac4jBundle;
 import org.finos.legend.server.pac4j.internal.HttpSessionStore;
@@ -44,11 +45,16 @@ public class MongoDbSessionStore extends HttpSessionStore
     private static final Logger logger = LoggerFactory.getLogger(MongoDbSessionStore.class);
     private static final String CREATED_FIELD = "created";
     private static final String ID_FIELD = "_id";
+    private static final String SESSION_DOCUMENT_ATTRIBUTE = MongoDbSessionStore.class.getName() + ".sessionDocument";
+    private static final String SESSION_GENERATION_ATTRIBUTE = MongoDbSessionStore.class.getName() + ".sessionGeneration";
+    private static final String NEW_SESSION_ATTRIBUTE = MongoDbSessionStore.class.getName() + ".newSession";
     private final MongoCollection<Document> userSessions;
     private final SessionCrypt sessionCrypt;
     private final int maxSessionLength;
     private final JavaSerializationHelper serializationHelper;
     private final SubjectExecutor subjectExecutor;
+    private final SessionNearCache nearCache;
+    private final SessionWriteBehind writeBehind;
 
     private String sessionTokenName;
 
@@ -80,9 +86,52 @@ public class MongoDbSessionStore extends HttpSessionStore
             String algorithm, int maxSessionLength, MongoCollection<Document> userSessions,
             Map<Class<? extends WebContext>, SessionStore<? extends WebContext>> underlyingStores,
             SubjectExecutor subjectExecutor, List<String> extraTrustedPackages, String sessionTokenName)
+    {
+        this(algorithm, maxSessionLength, userSessions, underlyingStores, subjectExecutor, extraTrustedPackages, sessionTokenName, null);
+    }
+
+    /**
+     * Create MongoDb session store.
+     *
+     * @param algorithm        Crypto Algorithm for serialized data
+     * @param maxSessionLength Expire data after
+     * @param userSessions     Mongo Collection
+     * @param underlyingStores Fallback stores
+     * @param subjectExecutor  Execute DB actions using a Subject
+     * @param nearCache        Cache of attributes read from Mongo, or null to read them from Mongo whenever the
+     *                         underlying store does not have them
+     */
+    public MongoDbSessionStore(
+            String algorithm, int maxSessionLength, MongoCollection<Document> userSessions,
+            Map<Class<? extends WebContext>, SessionStore<? extends WebContext>> underlyingStores,
+            SubjectExecutor subjectExecutor, List<String> extraTrustedPackages, String sessionTokenName,
+            SessionNearCache nearCache)
+    {
+        this(algorithm, maxSessionLength, userSessions, underlyingStores, subjectExecutor, extraTrustedPackages, sessionTokenName, nearCache, null);
+    }
+
+    /**
+     * Create MongoDb session store.
+     *
+     * @param algorithm        Crypto Algorithm for serialized data
+     * @param maxSessionLength Expire data after
+     * @param userSessions     Mongo Collection
+     * @param underlyingStores Fallback stores
+     * @param subjectExecutor  Execute DB actions using a Subject
+     * @param nearCache        Cache of attributes read from Mongo, or null to read them from Mongo whenever the
+     *                         underlying store does not have them
+     * @param writeBehind      Writer of attributes in the background, or null to write them as they are set
+     */
+    public MongoDbSessionStore(
+            String algorithm, int maxSessionLength, MongoCollection<Document> userSessions,
+            Map<Class<? extends WebContext>, SessionStore<? extends WebContext>> underlyingStores,
+            SubjectExecutor subjectExecutor, List<String> extraTrustedPackages, String sessionTokenName,
+            SessionNearCache nearCache, SessionWriteBehind writeBehind)
     {
         super(underlyingStores);
         this.subjectExecutor = subjectExecutor;
+        this.nearCache = nearCache;
+        this.writeBehind = writeBehind;
         sessionCrypt = new SessionCrypt(algorithm);
         this.maxSessionLength = maxSessionLength;
         this.serializationHelper = LegendPac4jBundle.getSerializationHelper(extraTrustedPackages);
@@ -107,30 +156,36 @@ public class MongoDbSessionStore extends HttpSessionStore
         return token;
     }
 
+    /**
+     * Only issues the token: its session document is upserted by the first {@link #set}, so that requests which
+     * never set an attribute, such as anonymous ones, do not write to Mongo.
+     */
     private SessionToken createSsoKey(WebContext context)
     {
-        SessionToken token;
-        token = SessionToken.generate();
+        SessionToken token = SessionToken.generate();
         token.saveInContext(this.sessionTokenName, context, maxSessionLength);
-        SessionToken finalToken = token;
-        this.subjectExecutor.execute((PrivilegedAction<Void>) () ->
-        {
-            userSessions.insertOne(getSearchSpec(finalToken).append(CREATED_FIELD, new Date()));
-            return null;
-        });
+        context.setRequestAttribute(NEW_SESSION_ATTRIBUTE, getSessionId(token));
         return token;
     }
 
+    /**
+     * Whether the token was created during this request and nothing has been set on its session since, in which
+     * case Mongo has nothing for it.
+     */
+    private boolean isUnwritten(WebContext context, SessionToken token)
+    {
+        Optional<String> newSessionId = context.getRequestAttribute(NEW_SESSION_ATTRIBUTE);
+        return newSessionId.isPresent() && newSessionId.get().equals(getSessionId(token));
+    }
+
     private Document getSearchSpec(SessionToken token)
     {
-        return new Document(ID_FIELD, UuidUtils.toHexString(token.getSessionId()));
+        return new Document(ID_FIELD, getSessionId(token));
     }
 
-    @Override
-    public String getOrCreateSessionId(WebContext context)
+    private static String getSessionId(SessionToken token)
     {
-        getOrCreateSsoKey(context);
-        return super.getOrCreateSessionId(context);
+        return UuidUtils.toHexString(token.getSessionId());
     }
 
     @Override
@@ -139,29 +194,54 @@ public class MongoDbSessionStore extends HttpSessionStore
         Object res = super.get(context, key).orElse(null);
         if (res == null)
         {
-            final SessionToken token = getOrCreateSsoKey(context);
-            Document doc = this.subjectExecutor.execute(() -> userSessions.find(getSearchSpec(token)).first());
-            if (doc != null)
+            final SessionToken token = SessionToken.fromContext(this.sessionTokenName, context);
+            if (token == null || isUnwritten(context, token))
             {
-                String serialized = doc.getString(key);
-                if (serialized != null)
+                return Optional.empty();
+            }
+            // attributes set on this node but not yet written are the latest
+            String serialized = this.writeBehind == null ? null : this.writeBehind.get(getSessionId(token), key);
+            res = (serialized != null || this.nearCache == null) ? null : this.nearCache.get(token, key);
+            if (res != null)
+            {
+                super.set(context, key, res);
+                return Optional.of(res);
+            }
+            Document doc = null;
+            if (serialized == null)
+            {
+                doc = getSessionDocument(context, token);
+                if (doc == null)
                 {
-                    try
-                    {
-                        res =
-                                serializationHelper.deserializeFromBytes(
-                                        sessionCrypt.fromCryptedString(serialized, token));
-                        //Once we have it, store it in the regular session store for later access
-                        super.set(context, key, res);
-                    } catch (GeneralSecurityException e)
+                    if (this.writeBehind == null || !this.writeBehind.isPending(getSessionId(token)))
                     {
-                        logger.warn("Unable to deserialize session data for user", e);
+                        token.removeFromContext(this.sessionTokenName, context); //force the token to expire because it doesn't match any credential in session store.
                     }
+                    return Optional.empty();
                 }
+                serialized = doc.getString(key);
             }
-            else
+            if (serialized != null)
             {
-                token.removeFromContext(this.sessionTokenName, context); //force the token to expire because it doesn't match any credential in session store.
+                try
+                {
+                    res =
+                            serializationHelper.deserializeFromBytes(
+                                    sessionCrypt.fromCryptedString(serialized, token));
+                    //Once we have it, store it in the regular session store for later access
+                    super.set(context, key, res);
+                    if (this.nearCache != null && doc != null && res != null)
+                    {
+                        Optional<Long> generation = context.getRequestAttribute(SESSION_GENERATION_ATTRIBUTE);
+                        if (generation.isPresent())
+                        {
+                            this.nearCache.put(token, generation.get(), doc.getDate(CREATED_FIELD), key, res);
+                        }
+                    }
+                } catch (GeneralSecurityException e)
+                {
+                    logger.warn("Unable to deserialize session data for user", e);
+                }
             }
         }
         else if (SessionToken.fromContext(this.sessionTokenName, context) == null)
@@ -177,6 +257,29 @@ public class MongoDbSessionStore extends HttpSessionStore
         return Optional.ofNullable(res);
     }
 
+    /**
+     * Reads the session document once per request, keeping it as a request attribute, so that every attribute the
+     * underlying store misses during the request is decrypted from the same read. The near-cache generation read
+     * beforehand is kept alongside it.
+     */
+    private Document getSessionDocument(WebContext context, SessionToken token)
+    {
+        Optional<Document> cached = context.getRequestAttribute(SESSION_DOCUMENT_ATTRIBUTE);
+        Document searchSpec = getSearchSpec(token);
+        if (cached.isPresent() && searchSpec.get(ID_FIELD).equals(cached.get().get(ID_FIELD)))
+        {
+            return cached.get();
+        }
+        Long generation = (this.nearCache == null) ? null : this.nearCache.generation(token);
+        Document doc = this.subjectExecutor.execute(() -> userSessions.find(searchSpec).first());
+        if (doc != null)
+        {
+            context.setRequestAttribute(SESSION_DOCUMENT_ATTRIBUTE, doc);
+            context.setRequestAttribute(SESSION_GENERATION_ATTRIBUTE, generation);
+        }
+        return doc;
+    }
+
     @Override
     public void set(WebContext context, String key, Object value)
     {
@@ -187,13 +290,34 @@ public class MongoDbSessionStore extends HttpSessionStore
             byte[] serialized = new JavaSerializationHelper().serializeToBytes(serializable);
             try
             {
-                this.subjectExecutor.executeWithException(() -> userSessions.updateOne(
-                        getSearchSpec(token),
-                        new Document("$set", new Document(key, sessionCrypt.toCryptedString(serialized, token)))));
-            } catch (PrivilegedActionException e)
+                String crypted = sessionCrypt.toCryptedString(serialized, token);
+                // only a token issued during this request creates its document, so that a destroyed, expired or
+                // forged session is not brought back
+                boolean create = isUnwritten(context, token);
+                if (this.writeBehind == null || !this.writeBehind.set(getSessionId(token), key, crypted, create))
+                {
+                    if (create)
+                    {
+                        this.subjectExecutor.executeWithException(() -> userSessions.updateOne(
+                                getSearchSpec(token),
+                                new Document("$set", new Document(key, crypted))
+                                        .append("$setOnInsert", new Document(CREATED_FIELD, new Date())),
+                                new UpdateOptions().upsert(true)));
+                    }
+                    else
+                    {
+                        this.subjectExecutor.executeWithException(() -> userSessions.updateOne(
+                                getSearchSpec(token),
+                                new Document("$set", new Document(key, crypted))));
+                    }
+                }
+                context.setRequestAttribute(NEW_SESSION_ATTRIBUTE, null);
+            } catch (GeneralSecurityException | PrivilegedActionException e)
             {
                 logger.warn("Unable to serialize session data for user", e);
             }
+            context.setRequestAttribute(SESSION_DOCUMENT_ATTRIBUTE, null);
+            invalidateNearCache(token);
         }
         super.set(context, key, value);
     }
@@ -201,12 +325,58 @@ public class MongoDbSessionStore extends HttpSessionStore
     @Override
     public boolean destroySession(WebContext context)
     {
-        final SessionToken token = getOrCreateSsoKey(context);
+        final SessionToken token = SessionToken.fromContext(this.sessionTokenName, context);
+        if (token == null)
+        {
+            return super.destroySession(context);
+        }
         token.saveInContext(this.sessionTokenName, context, 0);
-        this.subjectExecutor.execute(() -> userSessions.deleteMany(getSearchSpec(token)));
+        if (!isUnwritten(context, token))
+        {
+            if (this.writeBehind != null)
+            {
+                this.writeBehind.destroy(getSessionId(token));
+            }
+            else
+            {
+                this.subjectExecutor.execute(() -> userSessions.deleteMany(getSearchSpec(token)));
+            }
+        }
+        context.setRequestAttribute(SESSION_DOCUMENT_ATTRIBUTE, null);
+        invalidateNearCache(token);
         return super.destroySession(context);
     }
 
+    private void invalidateNearCache(SessionToken token)
+    {
+        if (this.nearCache != null)
+        {
+            this.nearCache.invalidate(token);
+        }
+    }
+
+    /**
+     * Writes the attributes set on the context's session that are written behind and not yet written.
+     */
+    public void flush(WebContext context)
+    {
+        SessionToken token = SessionToken.fromContext(this.sessionTokenName, context);
+        if (this.writeBehind != null && token != null)
+        {
+            this.writeBehind.flush(getSessionId(token));
+        }
+    }
+
+    public SessionWriteBehind getWriteBehind()
+    {
+        return writeBehind;
+    }
+
+    public SessionNearCache getNearCache()
+    {
+        return nearCache;
+    }
+
     public JavaSerializationHelper getSerializationHelper()
     {
         return serializationHelper;
@@ -17,36 +17,155 @@ package org.finos.legend.server.pac4j.mongostore;
 import org.finos.legend.server.pac4j.sessionutil.SessionToken;
 import org.finos.legend.server.pac4j.sessionutil.UuidUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
 import java.util.Base64;
 import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
+/**
+ * Encrypts session attributes with the session's key.
+ *
+ * <p>The algorithm is a {@link Cipher} transformation such as {@code AES}. Transformations in GCM mode, such as
+ * {@code AES/GCM/NoPadding}, are authenticated: each value is encrypted with a random IV, which is stored ahead of
+ * it, and a value that was tampered with fails to decrypt.
+ *
+ * <p>Looking up a cipher is slow, and synchronized in some JDKs, so each thread keeps its own, along with the
+ * buffer values are Base64 coded into.
+ */
 class SessionCrypt
 {
+  private static final int GCM_IV_BYTES = 12;
+  private static final int GCM_TAG_BITS = 128;
+  private static final int MAX_RETAINED_BUFFER_BYTES = 64 * 1024;
+  private static final SecureRandom random = new SecureRandom();
+
   private final String cryptAlgorithm;
+  private final String keyAlgorithm;
+  private final boolean gcm;
+  private final ThreadLocal<Buffers> buffers = new ThreadLocal<>();
 
   SessionCrypt(String cryptAlgorithm)
   {
     this.cryptAlgorithm = cryptAlgorithm;
+    int slash = cryptAlgorithm.indexOf('/');
+    this.keyAlgorithm = (slash < 0) ? cryptAlgorithm : cryptAlgorithm.substring(0, slash);
+    this.gcm = cryptAlgorithm.toUpperCase().contains("/GCM/");
+    try
+    {
+      buffers();
+    } catch (GeneralSecurityException e)
+    {
+      throw new IllegalArgumentException("Unsupported session crypto algorithm: " + cryptAlgorithm, e);
+    }
   }
 
   String toCryptedString(byte[] in, SessionToken token) throws GeneralSecurityException
   {
-    byte[] keyBytes = UuidUtils.toByteArray(token.getSessionKey());
-    SecretKeySpec secretKey = new SecretKeySpec(keyBytes, cryptAlgorithm);
-    Cipher cipher = Cipher.getInstance(cryptAlgorithm);
-    cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-    byte[] crypted = cipher.doFinal(in);
-    return Base64.getEncoder().encodeToString(crypted);
+    Buffers buffers = buffers();
+    Cipher cipher = buffers.cipher;
+    byte[] crypted;
+    if (gcm)
+    {
+      byte[] iv = new byte[GCM_IV_BYTES];
+      random.nextBytes(iv);
+      cipher.init(Cipher.ENCRYPT_MODE, secretKey(token), new GCMParameterSpec(GCM_TAG_BITS, iv));
+      crypted = new byte[GCM_IV_BYTES + cipher.getOutputSize(in.length)];
+      System.arraycopy(iv, 0, crypted, 0, GCM_IV_BYTES);
+      cipher.doFinal(in, 0, in.length, crypted, GCM_IV_BYTES);
+    } else
+    {
+      cipher.init(Cipher.ENCRYPT_MODE, secretKey(token));
+      crypted = cipher.doFinal(in);
+    }
+    byte[] encoded = buffers.encoded(4 * ((crypted.length + 2) / 3));
+    int length = Base64.getEncoder().encode(crypted, encoded);
+    return new String(encoded, 0, length, StandardCharsets.ISO_8859_1);
   }
 
   byte[] fromCryptedString(String in, SessionToken token) throws GeneralSecurityException
   {
-    byte[] keyBytes = UuidUtils.toByteArray(token.getSessionKey());
-    SecretKeySpec secretKey = new SecretKeySpec(keyBytes, cryptAlgorithm);
-    Cipher cipher = Cipher.getInstance(cryptAlgorithm);
-    cipher.init(Cipher.DECRYPT_MODE, secretKey);
-    return cipher.doFinal(Base64.getDecoder().decode(in));
+    Buffers buffers = buffers();
+    Cipher cipher = buffers.cipher;
+    byte[] encoded = in.getBytes(StandardCharsets.ISO_8859_1);
+    byte[] crypted = buffers.decoded(3 * (encoded.length / 4));
+    int length;
+    try
+    {
+      length = Base64.getDecoder().decode(encoded, crypted);
+    } catch (IllegalArgumentException e)
+    {
+      throw new GeneralSecurityException("Session data is not Base64", e);
+    }
+    if (gcm)
+    {
+      if (length < GCM_IV_BYTES)
+      {
+        throw new GeneralSecurityException("Session data is too short to hold an IV");
+      }
+      cipher.init(Cipher.DECRYPT_MODE, secretKey(token), new GCMParameterSpec(GCM_TAG_BITS, crypted, 0, GCM_IV_BYTES));
+      return cipher.doFinal(crypted, GCM_IV_BYTES, length - GCM_IV_BYTES);
+    }
+    cipher.init(Cipher.DECRYPT_MODE, secretKey(token));
+    return cipher.doFinal(crypted, 0, length);
+  }
+
+  private SecretKeySpec secretKey(SessionToken token)
+  {
+    // every session has its own key, so only the cipher is worth keeping
+    return new SecretKeySpec(UuidUtils.toByteArray(token.getSessionKey()), keyAlgorithm);
+  }
+
+  private Buffers buffers() throws GeneralSecurityException
+  {
+    Buffers result = buffers.get();
+    if (result == null)
+    {
+      result = new Buffers(Cipher.getInstance(cryptAlgorithm));
+      buffers.set(result);
+    }
+    return result;
+  }
+
+  private static class Buffers
+  {
+    private final Cipher cipher;
+    private byte[] encoded = new byte[0];
+    private byte[] decoded = new byte[0];
+
+    private Buffers(Cipher cipher)
+    {
+      this.cipher = cipher;
+    }
+
+    private byte[] encoded(int size)
+    {
+      if (encoded.length >= size)
+      {
+        return encoded;
+      }
+      byte[] result = new byte[size];
+      if (size <= MAX_RETAINED_BUFFER_BYTES)
+      {
+        encoded = result;
+      }
+      return result;
+    }
+
+    private byte[] decoded(int size)
+    {
+      if (decoded.length >= size)
+      {
+        return decoded;
+      }
+      byte[] result = new byte[size];
+      if (size <= MAX_RETAINED_BUFFER_BYTES)
+      {
+        decoded = result;
+      }
+      return result;
+    }
   }
-}
\ No newline at end of file
+}
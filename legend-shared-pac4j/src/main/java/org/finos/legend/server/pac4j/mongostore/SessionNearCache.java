@@ -0,0 +1,178 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.server.pac4j.mongostore;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.finos.legend.server.pac4j.sessionutil.SessionToken;
+
+/**
+ * Per-node cache of decrypted, deserialized session attributes, keyed by session id, so that a request whose
+ * Jetty session is cold does not read and decrypt the session document again.
+ *
+ * <p>Entries are evicted once the cache holds more than its maximum number of sessions, once they have been cached
+ * for longer than its time to live, and once their session document would have expired in Mongo. Attributes set or
+ * sessions destroyed on another node are only seen here once the entry expires, so the time to live bounds how stale
+ * they may be.
+ *
+ * <p>Invalidating a session bumps its generation, and an attribute read from a document before the generation changed
+ * is not cached, so that a read racing a set on this node cannot cache the attribute the set replaced. Generations are
+ * kept per stripe of sessions, so an invalidation may also skip caching attributes of other sessions of its stripe.
+ */
+public class SessionNearCache
+{
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final Cache<UUID, Entry> cache;
+    private final long maxSessionLengthMillis;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    /**
+     * Create SessionNearCache.
+     *
+     * @param maxSessions      Most sessions to hold attributes of
+     * @param ttlSeconds       Longest to hold a session's attributes for
+     * @param maxSessionLength Seconds after which session documents expire in Mongo
+     */
+    public SessionNearCache(int maxSessions, int ttlSeconds, int maxSessionLength)
+    {
+        this(maxSessions, ttlSeconds, maxSessionLength, Ticker.systemTicker());
+    }
+
+    SessionNearCache(int maxSessions, int ttlSeconds, int maxSessionLength, Ticker ticker)
+    {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSessions)
+                .expireAfterWrite(Math.min(ttlSeconds, maxSessionLength), TimeUnit.SECONDS)
+                .ticker(ticker)
+                .<UUID, Entry>removalListener(notification ->
+                {
+                    if (notification.wasEvicted())
+                    {
+                        this.evictionCount.incrementAndGet();
+                    }
+                })
+                .build();
+        this.maxSessionLengthMillis = TimeUnit.SECONDS.toMillis(maxSessionLength);
+    }
+
+    /**
+     * Returns the attribute of the token's session, or null if it is not cached.
+     */
+    Object get(SessionToken token, String key)
+    {
+        Entry entry = this.cache.getIfPresent(token.getSessionId());
+        if (entry != null && entry.expiresAtMillis <= System.currentTimeMillis())
+        {
+            this.cache.asMap().remove(token.getSessionId(), entry);
+            this.evictionCount.incrementAndGet();
+            entry = null;
+        }
+        // the key must match too, or knowing a session's id would be enough to read its attributes
+        Object result = (entry == null || !entry.sessionKey.equals(token.getSessionKey())) ? null : entry.attributes.get(key);
+        (result == null ? this.missCount : this.hitCount).incrementAndGet();
+        return result;
+    }
+
+    /**
+     * Returns the generation of the token's session, to be read before its document is.
+     */
+    long generation(SessionToken token)
+    {
+        return this.generations.get(stripe(token));
+    }
+
+    /**
+     * Caches an attribute read from the token's session document, created at the given date, unless the session was
+     * invalidated since the document was read at the given generation.
+     */
+    void put(SessionToken token, long generation, Date created, String key, Object value)
+    {
+        int stripe = stripe(token);
+        if (this.generations.get(stripe) != generation)
+        {
+            return;
+        }
+        long expiresAtMillis = (created == null ? System.currentTimeMillis() : created.getTime()) + this.maxSessionLengthMillis;
+        Entry entry = this.cache.asMap().computeIfAbsent(token.getSessionId(), id -> new Entry(token.getSessionKey(), expiresAtMillis));
+        if (entry.sessionKey.equals(token.getSessionKey()))
+        {
+            entry.attributes.put(key, value);
+            // an invalidation that began meanwhile may have missed the attribute
+            if (this.generations.get(stripe) != generation)
+            {
+                this.cache.asMap().remove(token.getSessionId(), entry);
+            }
+        }
+    }
+
+    void invalidate(SessionToken token)
+    {
+        // bumped first, so that puts racing the invalidation either skip or remove their entry
+        this.generations.incrementAndGet(stripe(token));
+        this.cache.invalidate(token.getSessionId());
+    }
+
+    private static int stripe(SessionToken token)
+    {
+        return token.getSessionId().hashCode() & (GENERATION_STRIPES - 1);
+    }
+
+    public long getHitCount()
+    {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount()
+    {
+        return this.missCount.get();
+    }
+
+    public long getEvictionCount()
+    {
+        // expired entries are only evicted, and counted, as the cache is maintained
+        this.cache.cleanUp();
+        return this.evictionCount.get();
+    }
+
+    public long size()
+    {
+        return this.cache.size();
+    }
+
+    private static class Entry
+    {
+        private final UUID sessionKey;
+        private final long expiresAtMillis;
+        private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+        private Entry(UUID sessionKey, long expiresAtMillis)
+        {
+            this.sessionKey = sessionKey;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.server.pac4j.mongostore;
+
+import com.google.common.util.concurrent.Striped;
+import com.mongodb.MongoException;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import io.dropwizard.lifecycle.Managed;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import org.bson.Document;
+import org.finos.legend.server.pac4j.kerberos.SubjectExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces the session attributes set on this node into one {@code $set} per session, written in the background
+ * with a single unordered bulk write.
+ *
+ * <p>Attributes waiting to be written are read back by {@link MongoDbSessionStore} before it reads Mongo, so a node
+ * always reads its own writes. Other nodes only see them once written: before the response of the request that set
+ * them is sent, if {@link SessionWriteBehindFilter} is installed, or after the flush interval otherwise. A write that
+ * fails is retried at the next flush, and whatever is left is written when the application stops.
+ *
+ * <p>At most {@code maxPendingSessions} sessions wait to be written. Attributes of further sessions are not accepted,
+ * and the store writes them synchronously instead, so that memory stays bounded while Mongo is unavailable.
+ *
+ * <p>Only sessions whose document the store asked to create are upserted, and attributes, writes and destruction of
+ * a session hold its lock, so that a session destroyed meanwhile is not brought back. Attributes set on a session
+ * destroyed since the last flush are discarded.
+ */
+public class SessionWriteBehind implements Managed
+{
+    private static final Logger logger = LoggerFactory.getLogger(SessionWriteBehind.class);
+    private static final String ID_FIELD = "_id";
+    private static final String CREATED_FIELD = "created";
+    private static final int LOCK_STRIPES = 64;
+
+    private final MongoCollection<Document> userSessions;
+    private final SubjectExecutor subjectExecutor;
+    private final int maxPendingSessions;
+    private final ConcurrentHashMap<String, Document> pending = new ConcurrentHashMap<>();
+    private final Set<String> created = ConcurrentHashMap.newKeySet();
+    private final Set<String> destroyed = ConcurrentHashMap.newKeySet();
+    private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong failedWriteCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Create SessionWriteBehind.
+     *
+     * @param userSessions        Mongo Collection
+     * @param subjectExecutor     Execute DB actions using a Subject
+     * @param flushIntervalMillis Longest an attribute waits to be written
+     * @param maxPendingSessions  Most sessions with attributes waiting to be written
+     * @param writeConcern        Write concern of the bulk writes, which sets how durable a written attribute is
+     */
+    public SessionWriteBehind(MongoCollection<Document> userSessions, SubjectExecutor subjectExecutor, long flushIntervalMillis, int maxPendingSessions, WriteConcern writeConcern)
+    {
+        if (maxPendingSessions < 1)
+        {
+            throw new IllegalArgumentException("maxPendingSessions < 1: " + maxPendingSessions);
+        }
+        this.userSessions = userSessions.withWriteConcern(writeConcern);
+        this.subjectExecutor = subjectExecutor;
+        this.maxPendingSessions = maxPendingSessions;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "session-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns false, without keeping the attribute, if too many sessions already wait to be written. Discards the
+     * attribute if the session was destroyed since the last flush.
+     *
+     * @param create Whether the session's document is to be created if it does not exist
+     */
+    boolean set(String sessionId, String key, String cryptedValue, boolean create)
+    {
+        Lock lock = this.locks.get(sessionId);
+        lock.lock();
+        try
+        {
+            if (this.destroyed.contains(sessionId))
+            {
+                return true;
+            }
+            if (this.pending.size() >= this.maxPendingSessions && !this.pending.containsKey(sessionId))
+            {
+                this.rejectedCount.incrementAndGet();
+                return false;
+            }
+            // documents are replaced rather than changed, so that one being written is never changed underneath
+            this.pending.compute(sessionId, (id, update) ->
+            {
+                Document result = (update == null) ? new Document() : new Document(update);
+                result.put(key, cryptedValue);
+                return result;
+            });
+            if (create)
+            {
+                this.created.add(sessionId);
+            }
+            return true;
+        } finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the crypted value of an attribute not yet written, or null if there is none.
+     */
+    String get(String sessionId, String key)
+    {
+        Document update = this.pending.get(sessionId);
+        return (update == null) ? null : update.getString(key);
+    }
+
+    boolean isPending(String sessionId)
+    {
+        return this.pending.containsKey(sessionId);
+    }
+
+    /**
+     * Discards the attributes of the session not yet written, and deletes those written, once no write of the session
+     * is in flight.
+     */
+    void destroy(String sessionId)
+    {
+        Lock lock = this.locks.get(sessionId);
+        lock.lock();
+        try
+        {
+            this.pending.remove(sessionId);
+            this.created.remove(sessionId);
+            this.destroyed.add(sessionId);
+            this.subjectExecutor.execute(() -> this.userSessions.deleteMany(new Document(ID_FIELD, sessionId)));
+        } finally
+        {
+            lock.unlock();
+        }
+    }
+
+    void flush(String sessionId)
+    {
+        if (this.pending.containsKey(sessionId))
+        {
+            write(Collections.singletonList(sessionId));
+        }
+    }
+
+    /**
+     * Writes every attribute not yet written.
+     */
+    public void flush()
+    {
+        // sessions destroyed before this flush began can no longer have attributes set on this node
+        List<String> forgotten = new ArrayList<>(this.destroyed);
+        if (!this.pending.isEmpty())
+        {
+            write(new ArrayList<>(this.pending.keySet()));
+        }
+        this.destroyed.removeAll(forgotten);
+    }
+
+    public int getPendingSessions()
+    {
+        return this.pending.size();
+    }
+
+    /**
+     * Count of bulk writes that succeeded.
+     */
+    public long getWriteCount()
+    {
+        return this.writeCount.get();
+    }
+
+    /**
+     * Count of bulk writes that failed, whose attributes were kept to be retried.
+     */
+    public long getFailedWriteCount()
+    {
+        return this.failedWriteCount.get();
+    }
+
+    /**
+     * Count of attributes not accepted because too many sessions waited to be written.
+     */
+    public long getRejectedCount()
+    {
+        return this.rejectedCount.get();
+    }
+
+    private void write(Collection<String> sessionIds)
+    {
+        Iterable<Lock> sessionLocks = this.locks.bulkGet(sessionIds);
+        sessionLocks.forEach(Lock::lock);
+        try
+        {
+            // read under the locks, as sessions may have been written by another flush, or destroyed, meanwhile
+            Map<String, Document> updates = new HashMap<>(sessionIds.size());
+            for (String id : sessionIds)
+            {
+                Document update = this.pending.get(id);
+                if (update != null)
+                {
+                    updates.put(id, update);
+                }
+            }
+            if (updates.isEmpty())
+            {
+                return;
+            }
+            List<UpdateOneModel<Document>> models = new ArrayList<>(updates.size());
+            Date now = new Date();
+            UpdateOptions upsert = new UpdateOptions().upsert(true);
+            UpdateOptions update = new UpdateOptions();
+            updates.forEach((id, attributes) -> models.add(new UpdateOneModel<>(
+                    new Document(ID_FIELD, id),
+                    new Document("$set", attributes).append("$setOnInsert", new Document(CREATED_FIELD, now)),
+                    this.created.contains(id) ? upsert : update)));
+            try
+            {
+                this.subjectExecutor.execute(() -> this.userSessions.bulkWrite(models, new BulkWriteOptions().ordered(false)));
+                this.writeCount.incrementAndGet();
+                // only forget updates that were not replaced while being written
+                updates.forEach(this.pending::remove);
+                updates.keySet().forEach(this.created::remove);
+            } catch (MongoException e)
+            {
+                this.failedWriteCount.incrementAndGet();
+                logger.warn("Unable to write session data for {} sessions, will retry", updates.size(), e);
+            }
+        } finally
+        {
+            sessionLocks.forEach(Lock::unlock);
+        }
+    }
+
+    @Override
+    public void start()
+    {
+    }
+
+    @Override
+    public void stop() throws InterruptedException
+    {
+        this.executor.shutdown();
+        this.executor.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+    }
+}
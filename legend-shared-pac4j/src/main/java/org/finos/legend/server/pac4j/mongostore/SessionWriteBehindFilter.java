@@ -0,0 +1,66 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.server.pac4j.mongostore;
+
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.pac4j.core.context.JEEContext;
+
+/**
+ * Writes the session attributes a request set, if {@link MongoDbSessionStore} writes them behind, once the request
+ * has been handled.
+ *
+ * <p>It must run ahead of filters that respond without passing the request on, such as pac4j's callback filter, and
+ * of anything that commits the response, so that the attributes are written before the client can send its next
+ * request to another node.
+ */
+public class SessionWriteBehindFilter implements Filter
+{
+    private final MongoDbSessionStore sessionStore;
+
+    public SessionWriteBehindFilter(MongoDbSessionStore sessionStore)
+    {
+        this.sessionStore = sessionStore;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig)
+    {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException
+    {
+        try
+        {
+            chain.doFilter(request, response);
+        } finally
+        {
+            this.sessionStore.flush(new JEEContext((HttpServletRequest) request, (HttpServletResponse) response));
+        }
+    }
+
+    @Override
+    public void destroy()
+    {
+    }
+}
@@ -0,0 +1,41 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.server.pac4j;
+
+import org.pac4j.core.client.IndirectClient;
+import org.pac4j.core.credentials.TokenCredentials;
+import org.pac4j.core.exception.http.FoundAction;
+import org.pac4j.core.profile.CommonProfile;
+
+import java.util.Optional;
+
+/**
+ * Indirect client whose callback authenticates every request as the same user.
+ */
+public class CallbackTestClient extends IndirectClient<TokenCredentials>
+{
+    @Override
+    protected void clientInit()
+    {
+        defaultRedirectionActionBuilder(context -> Optional.of(new FoundAction("/login")));
+        defaultCredentialsExtractor(context -> Optional.of(new TokenCredentials("token")));
+        defaultAuthenticator((credentials, context) ->
+        {
+            CommonProfile profile = new CommonProfile();
+            profile.setId("testUser");
+            credentials.setUserProfile(profile);
+        });
+    }
+}
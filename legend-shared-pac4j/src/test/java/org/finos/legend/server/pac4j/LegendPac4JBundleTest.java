@@ -14,23 +14,36 @@
 
 package org.finos.legend.server.pac4j;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.health.HealthCheckRegistry;
 import com.google.common.collect.ImmutableList;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
 import io.dropwizard.Configuration;
 import io.dropwizard.setup.Environment;
+import org.bson.Document;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletHandler;
+import org.finos.legend.server.pac4j.mongostore.MongoDbSessionStore;
+import org.finos.legend.server.pac4j.mongostore.SessionNearCache;
 import org.junit.Test;
 import org.pac4j.core.client.finder.ClientFinder;
 import org.pac4j.core.config.Config;
 import org.pac4j.core.engine.DefaultSecurityLogic;
 import org.pac4j.core.engine.decision.AlwaysUseSessionProfileStorageDecision;
 import org.pac4j.core.engine.decision.ProfileStorageDecision;
+import org.pac4j.core.util.Pac4jConstants;
 import org.pac4j.dropwizard.Pac4jFactory;
 import org.pac4j.jee.filter.SecurityFilter;
 
+import java.net.InetSocketAddress;
 import java.util.Collections;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 
@@ -107,4 +120,83 @@ public class LegendPac4JBundleTest
     assertTrue(storageDecision instanceof AlwaysUseSessionProfileStorageDecision);
   }
 
+  @Test
+  public void testWriteBehindIsFlushedBeforeTheCallbackRedirects() throws Exception
+  {
+    MongoServer mongoServer = new MongoServer(new MemoryBackend());
+    InetSocketAddress address = mongoServer.bind();
+    Server server = new Server();
+    try (MongoClient client = MongoClients.create("mongodb://" + address.getHostName() + ":" + address.getPort()))
+    {
+      LegendPac4jConfiguration.MongoSessionConfiguration mongoSession = new LegendPac4jConfiguration.MongoSessionConfiguration();
+      mongoSession.setEnabled(true);
+      mongoSession.setCollection("userSessions");
+      // long enough that only the end of the request can have written the profile
+      mongoSession.setWriteBehindInterval(3_600_000);
+      LegendPac4jConfiguration config = new LegendPac4jConfiguration();
+      config.setCallbackPrefix("/test");
+      config.setClients(ImmutableList.of(new CallbackTestClient()));
+      config.setMongoUri("mongodb://" + address.getHostName() + ":" + address.getPort());
+      config.setMongoDb("test");
+      config.setMongoSession(mongoSession);
+      LegendPac4jBundle<Configuration> bundle = new LegendPac4jBundle<>(c -> config);
+      Environment e = new Environment("serverEnv", null, null, new MetricRegistry(), null, new HealthCheckRegistry());
+      bundle.run(new Configuration(), e);
+
+      LocalConnector connector = new LocalConnector(server);
+      server.addConnector(connector);
+      server.setHandler(e.getApplicationContext());
+      server.start();
+      String response = connector.getResponse(
+          "GET /test/callback?client_name=CallbackTestClient HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+
+      assertTrue(response, response.startsWith("HTTP/1.1 302"));
+      MongoDbSessionStore sessionStore = (MongoDbSessionStore) bundle.getConfig().getSessionStore();
+      assertEquals(0, sessionStore.getWriteBehind().getPendingSessions());
+      Document session = client.getDatabase("test").getCollection("userSessions").find().first();
+      assertNotNull(session);
+      assertTrue(session.keySet().toString(), session.containsKey(Pac4jConstants.USER_PROFILES));
+    }
+    finally
+    {
+      server.stop();
+      mongoServer.shutdown();
+    }
+  }
+
+  @Test
+  public void testNearCacheMetricsAreRegistered() throws Exception
+  {
+    MongoServer mongoServer = new MongoServer(new MemoryBackend());
+    InetSocketAddress address = mongoServer.bind();
+    try
+    {
+      LegendPac4jConfiguration.MongoSessionConfiguration mongoSession = new LegendPac4jConfiguration.MongoSessionConfiguration();
+      mongoSession.setEnabled(true);
+      mongoSession.setCollection("userSessions");
+      mongoSession.setNearCacheMaxSessions(10);
+      LegendPac4jConfiguration config = new LegendPac4jConfiguration();
+      config.setCallbackPrefix("/test");
+      config.setClients(ImmutableList.of(new TestClient()));
+      config.setMongoUri("mongodb://" + address.getHostName() + ":" + address.getPort());
+      config.setMongoDb("test");
+      config.setMongoSession(mongoSession);
+      LegendPac4jBundle<Configuration> bundle = new LegendPac4jBundle<>(c -> config);
+      Environment e = new Environment("serverEnv", null, null, new MetricRegistry(), null, new HealthCheckRegistry());
+      bundle.run(new Configuration(), e);
+
+      SessionNearCache nearCache = ((MongoDbSessionStore) bundle.getConfig().getSessionStore()).getNearCache();
+      assertNotNull(nearCache);
+      Map<String, Gauge> gauges = e.metrics().getGauges();
+      assertEquals(0L, gauges.get(MetricRegistry.name(SessionNearCache.class, "hits")).getValue());
+      assertEquals(0L, gauges.get(MetricRegistry.name(SessionNearCache.class, "misses")).getValue());
+      assertEquals(0L, gauges.get(MetricRegistry.name(SessionNearCache.class, "evictions")).getValue());
+      assertEquals(0L, gauges.get(MetricRegistry.name(SessionNearCache.class, "size")).getValue());
+    }
+    finally
+    {
+      mongoServer.shutdown();
+    }
+  }
+
 }
@@ -16,16 +16,26 @@ package org.finos.legend.server.pac4j.mongostore;
 
 import com.google.common.collect.ImmutableMap;
 import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.WriteConcern;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
 import de.bwaldvogel.mongo.MongoServer;
 import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.finos.legend.server.pac4j.SessionStoreTestUtil;
+import org.finos.legend.server.pac4j.kerberos.SubjectExecutor;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -45,6 +55,7 @@ public class MongoDbSessionStoreTest
     private static MongoServer server;
     private static MongoClient client;
     private static MongoDatabase db;
+    private static ConnectionString connectionString;
     private MongoDbSessionStore store;
     private static final String SESSION_COLLECTION = "sessionData";
 
@@ -54,7 +65,8 @@ public class MongoDbSessionStoreTest
         server = new MongoServer(new MemoryBackend());
         InetSocketAddress serverAddress = server.bind();
 
-        client = MongoClients.create(new ConnectionString("mongodb://"+serverAddress.getHostName() +":"+ serverAddress.getPort()));
+        connectionString = new ConnectionString("mongodb://"+serverAddress.getHostName() +":"+ serverAddress.getPort());
+        client = MongoClients.create(connectionString);
         db = client.getDatabase("test");
     }
 
@@ -163,4 +175,351 @@ public class MongoDbSessionStoreTest
         assertNotEquals(secondaryResponseCookies[0].getMaxAge(), initialResponseCookies[0].getMaxAge());
         assertEquals(secondaryResponseCookies[0].getMaxAge(), 0); //maxAge is now zero which should expire the cookie the moment it goes to client
     }
+
+    @Test
+    public void testNearCacheServesColdSessionsWithoutMongo()
+    {
+        SessionNearCache nearCache = new SessionNearCache(10, 60, 100);
+        MongoDbSessionStore cachingStore = new MongoDbSessionStore("AES", 100, db.getCollection(SESSION_COLLECTION), ImmutableMap.of(JEEContext.class, new JEESessionStore()), new SubjectExecutor(null), new ArrayList<>(), "LegendSSOTest", nearCache);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cachingStore.set(new JEEContext(new MockHttpServletRequest(), response), "testKey", "testValue");
+
+        assertEquals("testValue", cachingStore.get(coldRequest(response.getCookies()), "testKey").get());
+        this.emptySessionData();
+        assertEquals("testValue", cachingStore.get(coldRequest(response.getCookies()), "testKey").get());
+
+        assertEquals(1, nearCache.getMissCount());
+        assertEquals(1, nearCache.getHitCount());
+    }
+
+    @Test
+    public void testSetAndDestroySessionInvalidateNearCache()
+    {
+        SessionNearCache nearCache = new SessionNearCache(10, 60, 100);
+        MongoDbSessionStore cachingStore = new MongoDbSessionStore("AES", 100, db.getCollection(SESSION_COLLECTION), ImmutableMap.of(JEEContext.class, new JEESessionStore()), new SubjectExecutor(null), new ArrayList<>(), "LegendSSOTest", nearCache);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cachingStore.set(new JEEContext(new MockHttpServletRequest(), response), "testKey", "testValue");
+        Cookie[] cookies = response.getCookies();
+        assertEquals("testValue", cachingStore.get(coldRequest(cookies), "testKey").get());
+
+        cachingStore.set(coldRequest(cookies), "testKey", "newValue");
+        assertEquals(0, nearCache.size());
+        assertEquals("newValue", cachingStore.get(coldRequest(cookies), "testKey").get());
+
+        cachingStore.destroySession(coldRequest(cookies));
+        assertEquals(0, nearCache.size());
+        assertFalse(cachingStore.get(coldRequest(cookies), "testKey").isPresent());
+    }
+
+    @Test
+    public void testNearCacheDoesNotKeepAttributesReadBeforeASet()
+    {
+        SessionNearCache nearCache = new SessionNearCache(10, 60, 100);
+        MongoDbSessionStore cachingStore = new MongoDbSessionStore("AES", 100, db.getCollection(SESSION_COLLECTION), ImmutableMap.of(JEEContext.class, new JEESessionStore()), new SubjectExecutor(null), new ArrayList<>(), "LegendSSOTest", nearCache);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        JEEContext requestContext = new JEEContext(new MockHttpServletRequest(), response);
+        cachingStore.set(requestContext, "testKey1", "testValue1");
+        cachingStore.set(requestContext, "testKey2", "testValue2");
+        Cookie[] cookies = response.getCookies();
+
+        // a slow request reads the document, then another sets an attribute before the first caches it
+        JEEContext slowContext = coldRequest(cookies);
+        assertEquals("testValue1", cachingStore.get(slowContext, "testKey1").get());
+        cachingStore.set(coldRequest(cookies), "testKey2", "newValue2");
+        assertEquals("testValue2", cachingStore.get(slowContext, "testKey2").get());
+
+        assertEquals("newValue2", cachingStore.get(coldRequest(cookies), "testKey2").get());
+    }
+
+    @Test
+    public void testColdSessionDocumentIsReadOncePerRequest()
+    {
+        AtomicInteger finds = new AtomicInteger();
+        try (MongoClient countingClient = countingClient(finds, "find"))
+        {
+            MongoDbSessionStore countingStore = new MongoDbSessionStore("AES", 100, countingClient.getDatabase("test").getCollection(SESSION_COLLECTION), ImmutableMap.of(JEEContext.class, new JEESessionStore()), new ArrayList<>(), "LegendSSOTest");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            JEEContext requestContext = new JEEContext(new MockHttpServletRequest(), response);
+            countingStore.set(requestContext, "testKey1", "testValue1");
+            countingStore.set(requestContext, "testKey2", "testValue2");
+            countingStore.set(requestContext, "testKey3", "testValue3");
+            finds.set(0);
+
+            JEEContext coldContext = coldRequest(response.getCookies());
+            assertEquals("testValue1", countingStore.get(coldContext, "testKey1").get());
+            assertEquals("testValue2", countingStore.get(coldContext, "testKey2").get());
+            assertEquals("testValue3", countingStore.get(coldContext, "testKey3").get());
+            assertFalse(countingStore.get(coldContext, "missingKey").isPresent());
+            assertEquals(1, finds.get());
+
+            countingStore.get(coldRequest(response.getCookies()), "testKey1");
+            assertEquals(2, finds.get());
+        }
+    }
+
+    @Test
+    public void testOnlySessionsWithAttributesWriteToMongo()
+    {
+        this.emptySessionData();
+        AtomicInteger writes = new AtomicInteger();
+        AtomicInteger finds = new AtomicInteger();
+        try (MongoClient countingClient = countingClient(ImmutableMap.of("insert", writes, "update", writes, "delete", writes, "find", finds)))
+        {
+            MongoDbSessionStore countingStore = new MongoDbSessionStore("AES", 100, countingClient.getDatabase("test").getCollection(SESSION_COLLECTION), ImmutableMap.of(JEEContext.class, new JEESessionStore()), new ArrayList<>(), "LegendSSOTest");
+            int authenticated = 0;
+            for (int i = 0; i < 1000; i++)
+            {
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                JEEContext requestContext = new JEEContext(new MockHttpServletRequest(), response);
+                assertFalse(countingStore.get(requestContext, "profiles").isPresent());
+                countingStore.getOrCreateSessionId(requestContext);
+                if (i % 10 == 0)
+                {
+                    countingStore.set(requestContext, "profiles", "profile" + i);
+                    countingStore.set(requestContext, "requestedUrl", "/url" + i);
+                    assertEquals("profile" + i, countingStore.get(coldRequest(response.getCookies()), "profiles").get());
+                    authenticated++;
+                }
+                else
+                {
+                    assertEquals(0, response.getCookies().length);
+                    JEEContext nextContext = coldRequest(response.getCookies());
+                    assertFalse(countingStore.get(nextContext, "profiles").isPresent());
+                    countingStore.getOrCreateSessionId(nextContext);
+                }
+            }
+            // anonymous requests neither read nor write, and the first attribute set on a session creates its document
+            assertEquals(2 * authenticated, writes.get());
+            assertEquals(authenticated, finds.get());
+            assertEquals(authenticated, db.getCollection(SESSION_COLLECTION).countDocuments());
+
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            JEEContext anonymousContext = new JEEContext(new MockHttpServletRequest(), response);
+            countingStore.getOrCreateSessionId(anonymousContext);
+            countingStore.destroySession(anonymousContext);
+            assertEquals(2 * authenticated, writes.get());
+        }
+    }
+
+    @Test
+    public void testWriteBehindCoalescesSetsIntoOneWrite() throws Exception
+    {
+        AtomicInteger writes = new AtomicInteger();
+        try (MongoClient countingClient = countingClient(writes, "update"))
+        {
+            SessionWriteBehind writeBehind = new SessionWriteBehind(countingClient.getDatabase("test").getCollection(SESSION_COLLECTION), new SubjectExecutor(null), 3_600_000, 100, WriteConcern.ACKNOWLEDGED);
+            MongoDbSessionStore writingStore = new MongoDbSessionStore("AES", 100, countingClient.getDatabase("test").getCollection(SESSION_COLLECTION), ImmutableMap.of(JEEContext.class, new JEESessionStore()), new SubjectExecutor(null), new ArrayList<>(), "LegendSSOTest", null, writeBehind);
+            try
+            {
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                JEEContext requestContext = new JEEContext(new MockHttpServletRequest(), response);
+                writingStore.set(requestContext, "testKey1", "testValue1");
+                writingStore.set(requestContext, "testKey2", "testValue2");
+                writingStore.set(requestContext, "testKey1", "newValue1");
+                assertEquals(0, writes.get());
+                assertEquals(1, writeBehind.getPendingSessions());
+
+                // this node reads its own writes before they are written
+                assertEquals("newValue1", writingStore.get(coldRequest(response.getCookies()), "testKey1").get());
+                assertEquals(0, writes.get());
+
+                writingStore.flush(requestContext);
+                assertEquals(1, writes.get());
+                assertEquals(0, writeBehind.getPendingSessions());
+                assertEquals("newValue1", store.get(coldRequest(response.getCookies()), "testKey1").get());
+                assertEquals("testValue2", store.get(coldRequest(response.getCookies()), "testKey2").get());
+
+                writingStore.flush(requestContext);
+                assertEquals(1, writes.get());
+            }
+            finally
+            {
+                writeBehind.stop();
+            }
+        }
+    }
+
+    @Test
+    public void testDestroySessionDiscardsWritesBehind() throws Exception
+    {
+        SessionWriteBehind writeBehind = new SessionWriteBehind(db.getCollection(SESSION_COLLECTION), new SubjectExecutor(null), 3_600_000, 100, WriteConcern.ACKNOWLEDGED);
+        MongoDbSessionStore writingStore = new MongoDbSessionStore("AES", 100, db.getCollection(SESSION_COLLECTION), ImmutableMap.of(JEEContext.class, new JEESessionStore()), new SubjectExecutor(null), new ArrayList<>(), "LegendSSOTest", null, writeBehind);
+        try
+        {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            writingStore.set(new JEEContext(new MockHttpServletRequest(), response), "testKey", "testValue");
+            Cookie[] cookies = response.getCookies();
+
+            writingStore.destroySession(coldRequest(cookies));
+            assertEquals(0, writeBehind.getPendingSessions());
+            writeBehind.flush();
+            assertFalse(writingStore.get(coldRequest(cookies), "testKey").isPresent());
+        }
+        finally
+        {
+            writeBehind.stop();
+        }
+    }
+
+    @Test
+    public void testSetOnUnknownSessionDoesNotCreateIt()
+    {
+        this.emptySessionData();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        store.set(new JEEContext(new MockHttpServletRequest(), response), "testKey", "testValue");
+        Cookie[] cookies = response.getCookies();
+
+        // a request racing the logout, or carrying a stale or forged cookie
+        store.destroySession(coldRequest(cookies));
+        store.set(coldRequest(cookies), "testKey", "newValue");
+        assertEquals(0, db.getCollection(SESSION_COLLECTION).countDocuments());
+        assertFalse(store.get(coldRequest(cookies), "testKey").isPresent());
+    }
+
+    @Test
+    public void testWriteBehindDiscardsSetsOnDestroyedSessions() throws Exception
+    {
+        this.emptySessionData();
+        SessionWriteBehind writeBehind = new SessionWriteBehind(db.getCollection(SESSION_COLLECTION), new SubjectExecutor(null), 3_600_000, 100, WriteConcern.ACKNOWLEDGED);
+        MongoDbSessionStore writingStore = new MongoDbSessionStore("AES", 100, db.getCollection(SESSION_COLLECTION), ImmutableMap.of(JEEContext.class, new JEESessionStore()), new SubjectExecutor(null), new ArrayList<>(), "LegendSSOTest", null, writeBehind);
+        try
+        {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            JEEContext requestContext = new JEEContext(new MockHttpServletRequest(), response);
+            writingStore.set(requestContext, "testKey", "testValue");
+            writingStore.flush(requestContext);
+            Cookie[] cookies = response.getCookies();
+            assertEquals(1, db.getCollection(SESSION_COLLECTION).countDocuments());
+
+            writingStore.destroySession(coldRequest(cookies));
+            writingStore.set(coldRequest(cookies), "testKey", "newValue");
+            assertEquals(0, writeBehind.getPendingSessions());
+            writeBehind.flush();
+
+            // once the tombstone is gone, a late set is written but matches no document
+            writingStore.set(coldRequest(cookies), "testKey", "newValue");
+            assertEquals(1, writeBehind.getPendingSessions());
+            writeBehind.flush();
+            assertEquals(0, writeBehind.getPendingSessions());
+            assertEquals(0, db.getCollection(SESSION_COLLECTION).countDocuments());
+        }
+        finally
+        {
+            writeBehind.stop();
+        }
+    }
+
+    @Test
+    public void testDestroySessionWaitsForWriteInFlight() throws Exception
+    {
+        AtomicReference<MongoDbSessionStore> writingStore = new AtomicReference<>();
+        AtomicReference<Cookie[]> cookies = new AtomicReference<>();
+        AtomicReference<Thread> destroyer = new AtomicReference<>();
+        MongoClientSettings settings = MongoClientSettings.builder()
+                .applyConnectionString(connectionString)
+                .addCommandListener(new CommandListener()
+                {
+                    @Override
+                    public void commandStarted(CommandStartedEvent event)
+                    {
+                        if ("update".equals(event.getCommandName()) && destroyer.get() == null)
+                        {
+                            // log out while the write is in flight, letting the write go on only once the delete has
+                            // either finished, overtaking it, or is waiting for it
+                            Thread thread = new Thread(() -> writingStore.get().destroySession(coldRequest(cookies.get())));
+                            destroyer.set(thread);
+                            thread.start();
+                            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                            while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TERMINATED && System.nanoTime() < deadline)
+                            {
+                                Thread.yield();
+                            }
+                        }
+                    }
+                })
+                .build();
+        try (MongoClient slowClient = MongoClients.create(settings))
+        {
+            SessionWriteBehind writeBehind = new SessionWriteBehind(slowClient.getDatabase("test").getCollection(SESSION_COLLECTION), new SubjectExecutor(null), 3_600_000, 100, WriteConcern.ACKNOWLEDGED);
+            writingStore.set(new MongoDbSessionStore("AES", 100, slowClient.getDatabase("test").getCollection(SESSION_COLLECTION), ImmutableMap.of(JEEContext.class, new JEESessionStore()), new SubjectExecutor(null), new ArrayList<>(), "LegendSSOTest", null, writeBehind));
+            try
+            {
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                JEEContext requestContext = new JEEContext(new MockHttpServletRequest(), response);
+                writingStore.get().set(requestContext, "testKey", "testValue");
+                cookies.set(response.getCookies());
+
+                writingStore.get().flush(requestContext);
+                destroyer.get().join();
+                assertFalse(store.get(coldRequest(cookies.get()), "testKey").isPresent());
+            }
+            finally
+            {
+                writeBehind.stop();
+            }
+        }
+    }
+
+    @Test
+    public void testWriteBehindWritesSynchronouslyWhenFull() throws Exception
+    {
+        SessionWriteBehind writeBehind = new SessionWriteBehind(db.getCollection(SESSION_COLLECTION), new SubjectExecutor(null), 3_600_000, 1, WriteConcern.ACKNOWLEDGED);
+        MongoDbSessionStore writingStore = new MongoDbSessionStore("AES", 100, db.getCollection(SESSION_COLLECTION), ImmutableMap.of(JEEContext.class, new JEESessionStore()), new SubjectExecutor(null), new ArrayList<>(), "LegendSSOTest", null, writeBehind);
+        try
+        {
+            MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+            writingStore.set(new JEEContext(new MockHttpServletRequest(), firstResponse), "testKey", "first");
+            MockHttpServletResponse secondResponse = new MockHttpServletResponse();
+            JEEContext secondContext = new JEEContext(new MockHttpServletRequest(), secondResponse);
+            writingStore.set(secondContext, "testKey", "second");
+            writingStore.set(secondContext, "otherKey", "second");
+
+            assertEquals(1, writeBehind.getPendingSessions());
+            assertEquals(2, writeBehind.getRejectedCount());
+            assertFalse(store.get(coldRequest(firstResponse.getCookies()), "testKey").isPresent());
+            assertEquals("second", store.get(coldRequest(secondResponse.getCookies()), "testKey").get());
+        }
+        finally
+        {
+            writeBehind.stop();
+        }
+    }
+
+    private static MongoClient countingClient(AtomicInteger count, String... commandNames)
+    {
+        Map<String, AtomicInteger> counts = new HashMap<>();
+        for (String commandName : commandNames)
+        {
+            counts.put(commandName, count);
+        }
+        return countingClient(counts);
+    }
+
+    private static MongoClient countingClient(Map<String, AtomicInteger> counts)
+    {
+        MongoClientSettings settings = MongoClientSettings.builder()
+                .applyConnectionString(connectionString)
+                .addCommandListener(new CommandListener()
+                {
+                    @Override
+                    public void commandStarted(CommandStartedEvent event)
+                    {
+                        AtomicInteger count = counts.get(event.getCommandName());
+                        if (count != null)
+                        {
+                            count.incrementAndGet();
+                        }
+                    }
+                })
+                .build();
+        return MongoClients.create(settings);
+    }
+
+    private static JEEContext coldRequest(Cookie[] cookies)
+    {
+        // the SSO cookie but not the underlying session, as after a restart or on another node
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(cookies);
+        return new JEEContext(request, new MockHttpServletResponse());
+    }
 }
@@ -0,0 +1,135 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.server.pac4j.mongostore;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.finos.legend.server.pac4j.sessionutil.SessionToken;
+import org.finos.legend.server.pac4j.sessionutil.UuidUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SessionCryptTest
+{
+    private static final byte[] VALUE = "some serialized session attribute".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testAesRoundTripsAndReadsValuesWrittenBefore() throws Exception
+    {
+        SessionCrypt crypt = new SessionCrypt("AES");
+        SessionToken token = SessionToken.generate();
+        assertArrayEquals(VALUE, crypt.fromCryptedString(crypt.toCryptedString(VALUE, token), token));
+
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(UuidUtils.toByteArray(token.getSessionKey()), "AES"));
+        String written = Base64.getEncoder().encodeToString(cipher.doFinal(VALUE));
+        assertEquals(written, crypt.toCryptedString(VALUE, token));
+        assertArrayEquals(VALUE, crypt.fromCryptedString(written, token));
+    }
+
+    @Test
+    public void testGcmUsesRandomIvs() throws Exception
+    {
+        SessionCrypt crypt = new SessionCrypt("AES/GCM/NoPadding");
+        SessionToken token = SessionToken.generate();
+        String first = crypt.toCryptedString(VALUE, token);
+        String second = crypt.toCryptedString(VALUE, token);
+
+        assertNotEquals(first, second);
+        assertArrayEquals(VALUE, crypt.fromCryptedString(first, token));
+        assertArrayEquals(VALUE, crypt.fromCryptedString(second, token));
+    }
+
+    @Test
+    public void testGcmRejectsTamperedValues() throws Exception
+    {
+        SessionCrypt crypt = new SessionCrypt("AES/GCM/NoPadding");
+        SessionToken token = SessionToken.generate();
+        byte[] crypted = Base64.getDecoder().decode(crypt.toCryptedString(VALUE, token));
+        crypted[crypted.length / 2] ^= 1;
+
+        assertDecryptFails(crypt, Base64.getEncoder().encodeToString(crypted), token);
+        assertDecryptFails(crypt, crypt.toCryptedString(VALUE, token), SessionToken.generate());
+        assertDecryptFails(crypt, "AAAA", token);
+        assertDecryptFails(crypt, "not base64!", token);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownAlgorithmFailsOnCreation()
+    {
+        new SessionCrypt("NoSuchCipher");
+    }
+
+    @Test
+    public void testRoundTripsOfValuesOfManySizesAcrossThreads() throws Exception
+    {
+        for (String algorithm : new String[]{"AES", "AES/GCM/NoPadding"})
+        {
+            SessionCrypt crypt = new SessionCrypt(algorithm);
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try
+            {
+                List<Future<Void>> results = new ArrayList<>();
+                for (int t = 0; t < 8; t++)
+                {
+                    int thread = t;
+                    results.add(executor.submit((Callable<Void>) () ->
+                    {
+                        for (int i = 0; i < 500; i++)
+                        {
+                            SessionToken token = SessionToken.generate();
+                            byte[] value = new byte[1 + (thread * 500 + i) * 37 % 20000];
+                            value[value.length / 2] = (byte) i;
+                            assertArrayEquals(value, crypt.fromCryptedString(crypt.toCryptedString(value, token), token));
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<Void> result : results)
+                {
+                    result.get();
+                }
+            }
+            finally
+            {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private static void assertDecryptFails(SessionCrypt crypt, String crypted, SessionToken token)
+    {
+        try
+        {
+            crypt.fromCryptedString(crypted, token);
+            fail("Expected decryption to fail");
+        }
+        catch (GeneralSecurityException expected)
+        {
+            // expected
+        }
+    }
+}
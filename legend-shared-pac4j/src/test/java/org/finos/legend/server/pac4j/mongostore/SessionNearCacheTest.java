@@ -0,0 +1,127 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.server.pac4j.mongostore;
+
+import com.google.common.base.Ticker;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.finos.legend.server.pac4j.sessionutil.SessionToken;
+import org.finos.legend.server.pac4j.sessionutil.UuidUtils;
+import org.junit.Test;
+import org.pac4j.core.context.JEEContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SessionNearCacheTest
+{
+    private long nanoTime;
+    private final Ticker ticker = new Ticker()
+    {
+        @Override
+        public long read()
+        {
+            return nanoTime;
+        }
+    };
+
+    @Test
+    public void testHitsAndMisses()
+    {
+        SessionNearCache cache = new SessionNearCache(10, 60, 100, ticker);
+        SessionToken token = SessionToken.generate();
+        cache.put(token, cache.generation(token), new Date(), "key", "value");
+
+        assertEquals("value", cache.get(token, "key"));
+        assertNull(cache.get(token, "otherKey"));
+        assertNull(cache.get(SessionToken.generate(), "key"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testEntriesExpireAfterTtl()
+    {
+        SessionNearCache cache = new SessionNearCache(10, 60, 100, ticker);
+        SessionToken token = SessionToken.generate();
+        cache.put(token, cache.generation(token), new Date(), "key", "value");
+
+        nanoTime += TimeUnit.SECONDS.toNanos(61);
+
+        assertNull(cache.get(token, "key"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testEntriesExpireWithTheirSessionDocument()
+    {
+        SessionNearCache cache = new SessionNearCache(10, 60, 100, ticker);
+        SessionToken token = SessionToken.generate();
+        cache.put(token, cache.generation(token), new Date(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(101)), "key", "value");
+
+        assertNull(cache.get(token, "key"));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedSessionsAreEvicted()
+    {
+        SessionNearCache cache = new SessionNearCache(2, 60, 100, ticker);
+        SessionToken first = SessionToken.generate();
+        SessionToken second = SessionToken.generate();
+        SessionToken third = SessionToken.generate();
+        cache.put(first, cache.generation(first), new Date(), "key", "first");
+        cache.put(second, cache.generation(second), new Date(), "key", "second");
+        cache.get(first, "key");
+        cache.put(third, cache.generation(third), new Date(), "key", "third");
+
+        assertEquals("first", cache.get(first, "key"));
+        assertNull(cache.get(second, "key"));
+        assertEquals("third", cache.get(third, "key"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testSessionKeyMustMatch()
+    {
+        SessionNearCache cache = new SessionNearCache(10, 60, 100, ticker);
+        SessionToken token = SessionToken.generate();
+        cache.put(token, cache.generation(token), new Date(), "key", "value");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("LegendSSOTest", UuidUtils.toHexString(token.getSessionId()) + "/" + UuidUtils.toHexString(UuidUtils.newUuid()));
+        SessionToken forged = SessionToken.fromContext("LegendSSOTest", new JEEContext(request, new MockHttpServletResponse()));
+
+        assertNull(cache.get(forged, "key"));
+    }
+
+    @Test
+    public void testAttributesReadBeforeAnInvalidationAreNotCached()
+    {
+        SessionNearCache cache = new SessionNearCache(10, 60, 100, ticker);
+        SessionToken token = SessionToken.generate();
+        long generation = cache.generation(token);
+        cache.invalidate(token);
+        cache.put(token, generation, new Date(), "key", "stale");
+
+        assertNull(cache.get(token, "key"));
+        assertEquals(0, cache.size());
+
+        cache.put(token, cache.generation(token), new Date(), "key", "value");
+        assertEquals("value", cache.get(token, "key"));
+    }
+}
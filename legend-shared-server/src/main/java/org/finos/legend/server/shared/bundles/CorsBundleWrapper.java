@@ -17,20 +17,37 @@ package org.finos.legend.server.shared.bundles;
 import io.dropwizard.ConfiguredBundle;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
 import javax.servlet.DispatcherType;
 import javax.servlet.FilterRegistration;
 import org.eclipse.jetty.servlets.CrossOriginFilter;
+import org.finos.legend.opentracing.propagation.PropagationFormat;
 
 @SuppressWarnings("unused")
 public class CorsBundleWrapper<T> implements ConfiguredBundle<T>
 {
 
   private final ConfiguredBundle<T> authBundle;
+  private final List<PropagationFormat> propagationFormats;
 
   public CorsBundleWrapper(ConfiguredBundle<T> authBundle)
+  {
+    this(authBundle, null);
+  }
+
+  /**
+   * Create CorsBundleWrapper.
+   *
+   * @param authBundle         Bundle to run before allowing cross-origin requests
+   * @param propagationFormats Trace propagation formats, as passed to the tracer, whose headers are allowed, or null
+   *                           for B3 multi-header only, as the tracer uses then
+   */
+  public CorsBundleWrapper(ConfiguredBundle<T> authBundle, List<PropagationFormat> propagationFormats)
   {
     this.authBundle = authBundle;
+    this.propagationFormats = (propagationFormats == null) ? Collections.singletonList(PropagationFormat.B3_MULTI) : propagationFormats;
   }
 
   @Override
@@ -41,10 +58,9 @@ public class CorsBundleWrapper<T> implements ConfiguredBundle<T>
     final FilterRegistration.Dynamic cors =
         environment.servlets().addFilter("CORS", CrossOriginFilter.class);
     cors.setInitParameter("allowedOrigins", "*");
-    cors.setInitParameter(
-        "allowedHeaders",
-        "X-Requested-With,Content-Type,Accept,Origin,Access-Control-Allow-Credentials,"
-            + "x-b3-parentspanid,x-b3-sampled,x-b3-spanid,x-b3-traceid");
+    StringBuilder allowedHeaders = new StringBuilder("X-Requested-With,Content-Type,Accept,Origin,Access-Control-Allow-Credentials");
+    this.propagationFormats.forEach(format -> format.headerNames().forEach(name -> allowedHeaders.append(',').append(name)));
+    cors.setInitParameter("allowedHeaders", allowedHeaders.toString());
     cors.setInitParameter("allowedMethods", "GET,PUT,POST,DELETE,HEAD");
     cors.addMappingForUrlPatterns(EnumSet.allOf(DispatcherType.class), false, "/*");
   }
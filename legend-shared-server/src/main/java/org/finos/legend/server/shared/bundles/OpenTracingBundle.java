@@ -19,6 +19,7 @@ import io.dropwizard.Bundle;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 import io.opentracing.Span;
+import io.opentracing.Tracer;
 import io.opentracing.contrib.jaxrs2.internal.CastUtils;
 import io.opentracing.contrib.jaxrs2.internal.SpanWrapper;
 import org.finos.legend.opentracing.jaxrs2.InterceptorSpanDecorator;
@@ -26,26 +27,25 @@ import org.finos.legend.opentracing.jaxrs2.ServerTracingInterceptor;
 import io.opentracing.log.Fields;
 import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.security.Principal;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.servlet.DispatcherType;
 import javax.servlet.FilterRegistration;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.Priorities;
 import javax.ws.rs.container.DynamicFeature;
 import javax.ws.rs.ext.InterceptorContext;
 import javax.ws.rs.ext.ReaderInterceptorContext;
 import javax.ws.rs.ext.WriterInterceptorContext;
 
+import org.finos.legend.opentracing.OpenTracing;
 import org.finos.legend.opentracing.OpenTracingFilter;
+import org.finos.legend.opentracing.PrometheusReporterMetrics;
 import org.finos.legend.opentracing.ServerSpanDecorator;
 import org.finos.legend.opentracing.StandardSpanDecorator;
+import org.finos.legend.opentracing.UserNameDecorator;
+import org.finos.legend.opentracing.sampler.RouteSampler;
 
 import static io.opentracing.contrib.jaxrs2.internal.SpanWrapper.PROPERTY_NAME;
 
@@ -55,6 +55,8 @@ public class OpenTracingBundle implements Bundle
   private final List<ServerSpanDecorator> serverSpanDecorators;
   private final List<InterceptorSpanDecorator> interceptorSpanDecorators;
   private final List<String> skipUrls;
+  private final List<String> routeTemplates;
+  private final RouteSampler routeSampler;
 
   public OpenTracingBundle()
   {
@@ -82,6 +84,35 @@ public class OpenTracingBundle implements Bundle
    */
   @SuppressWarnings("WeakerAccess")
   public OpenTracingBundle(Iterable<ServerSpanDecorator> serverSpanDecorators, Iterable<InterceptorSpanDecorator> interceptorSpanDecorators, List<String> skipUrls)
+  {
+    this(serverSpanDecorators, interceptorSpanDecorators, skipUrls, null);
+  }
+
+  /**
+   * Create OpenTracingBundle.
+   *
+   * @param serverSpanDecorators Additional server span decorators to add, executed around each request/response
+   * @param interceptorSpanDecorators Additional interceptor span decorators to add, executed around each request read and response write
+   * @param skipUrls   URLs to skip tracing on
+   * @param routeSampler Traces-per-second budgets for requests that start a trace, by route, or null to use the tracer's sampler
+   */
+  @SuppressWarnings("WeakerAccess")
+  public OpenTracingBundle(Iterable<ServerSpanDecorator> serverSpanDecorators, Iterable<InterceptorSpanDecorator> interceptorSpanDecorators, List<String> skipUrls, RouteSampler routeSampler)
+  {
+    this(serverSpanDecorators, interceptorSpanDecorators, skipUrls, ImmutableList.of(), routeSampler);
+  }
+
+  /**
+   * Create OpenTracingBundle.
+   *
+   * @param serverSpanDecorators Additional server span decorators to add, executed around each request/response
+   * @param interceptorSpanDecorators Additional interceptor span decorators to add, executed around each request read and response write
+   * @param skipUrls   URLs to skip tracing on, which may use {@code *} and {@code **} wildcards
+   * @param routeTemplates Templates such as {@code /api/project/{id}} to name request spans after, instead of their path
+   * @param routeSampler Traces-per-second budgets for requests that start a trace, by route, or null to use the tracer's sampler
+   */
+  @SuppressWarnings("WeakerAccess")
+  public OpenTracingBundle(Iterable<ServerSpanDecorator> serverSpanDecorators, Iterable<InterceptorSpanDecorator> interceptorSpanDecorators, List<String> skipUrls, List<String> routeTemplates, RouteSampler routeSampler)
   {
     this.serverSpanDecorators =
             ImmutableList.<ServerSpanDecorator>builder()
@@ -97,6 +128,8 @@ public class OpenTracingBundle implements Bundle
                     .build();
 
     this.skipUrls = skipUrls;
+    this.routeTemplates = routeTemplates;
+    this.routeSampler = routeSampler;
   }
 
   @Override
@@ -104,9 +137,22 @@ public class OpenTracingBundle implements Bundle
   {
   }
 
+  /**
+   * Build the tracer of an application using this bundle, so that its reporter records the metrics the bundle
+   * publishes.
+   *
+   * @param tracer Builder of the tracer, whose metrics are replaced
+   * @return The Tracer, to register as the {@link GlobalTracer}
+   */
+  public static Tracer buildTracer(OpenTracing.Builder tracer)
+  {
+    return tracer.metrics(PrometheusReporterMetrics.get()).build();
+  }
+
   @Override
   public void run(Environment environment)
   {
+    ReporterMetricSet.register(environment.metrics(), PrometheusReporterMetrics.get());
     if (GlobalTracer.isRegistered())
     {
       final FilterRegistration.Dynamic openTracing =
@@ -114,7 +160,7 @@ public class OpenTracingBundle implements Bundle
               .servlets()
               .addFilter(
                   "OpenTracing",
-                  new OpenTracingFilter(GlobalTracer.get(), this.serverSpanDecorators, this.skipUrls));
+                  new OpenTracingFilter(GlobalTracer.get(), this.serverSpanDecorators, this.skipUrls, this.routeTemplates, this.routeSampler));
       openTracing.addMappingForUrlPatterns(EnumSet.allOf(DispatcherType.class), false, "/*");
       environment
           .jersey()
@@ -178,33 +224,4 @@ public class OpenTracingBundle implements Bundle
       }
     }
   }
-
-  private static class UserNameDecorator implements ServerSpanDecorator
-  {
-
-    @Override
-    public void decorateRequest(HttpServletRequest request, Span span)
-    {
-      Principal principal = request.getUserPrincipal();
-
-      if (principal != null)
-      {
-        String user = principal.getName();
-        span.setTag("user", user);
-      }
-
-      try
-      {
-        span.setTag("serverHost", InetAddress.getLocalHost().getCanonicalHostName());
-      } catch (UnknownHostException e)
-      {
-        // Ignore
-      }
-    }
-
-    @Override
-    public void decorateResponse(HttpServletResponse response, Span span)
-    {
-    }
-  }
 }
@@ -0,0 +1,135 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.server.shared.bundles;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import io.prometheus.client.Collector;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.finos.legend.opentracing.PrometheusReporterMetrics;
+
+/**
+ * The span reporter's {@link PrometheusReporterMetrics} as Dropwizard gauges, named after each sample and its label
+ * values. Histograms are published as their count and sum.
+ *
+ * <p>Every gauge reads from the same snapshot of the metrics, which is collected again once it is older than a
+ * second, so that a scrape collects them once rather than once per gauge. Samples that first appear in a snapshot,
+ * such as a message dropped due to a new exception, are registered then.
+ */
+final class ReporterMetricSet implements MetricSet
+{
+  static final String PREFIX = "tracing";
+  private static final long SNAPSHOT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final PrometheusReporterMetrics metrics;
+  private final MetricRegistry registry;
+  private final long snapshotNanos;
+  private final Set<String> registered = ConcurrentHashMap.newKeySet();
+  private volatile Snapshot snapshot;
+  private volatile boolean attached;
+
+  private ReporterMetricSet(PrometheusReporterMetrics metrics, MetricRegistry registry, long snapshotNanos)
+  {
+    this.metrics = metrics;
+    this.registry = registry;
+    this.snapshotNanos = snapshotNanos;
+  }
+
+  /**
+   * Registers gauges for the metrics with the registry, prefixed {@value #PREFIX}.
+   */
+  static void register(MetricRegistry registry, PrometheusReporterMetrics metrics)
+  {
+    register(registry, metrics, SNAPSHOT_NANOS);
+  }
+
+  static void register(MetricRegistry registry, PrometheusReporterMetrics metrics, long snapshotNanos)
+  {
+    ReporterMetricSet metricSet = new ReporterMetricSet(metrics, registry, snapshotNanos);
+    registry.register(PREFIX, metricSet);
+    metricSet.attached = true;
+  }
+
+  @Override
+  public Map<String, Metric> getMetrics()
+  {
+    Map<String, Metric> result = new HashMap<>();
+    for (String name : snapshot().values.keySet())
+    {
+      registered.add(name);
+      result.put(name, gauge(name));
+    }
+    return result;
+  }
+
+  private Gauge<Double> gauge(String name)
+  {
+    return () -> snapshot().values.get(name);
+  }
+
+  private Snapshot snapshot()
+  {
+    Snapshot result = snapshot;
+    long now = System.nanoTime();
+    if (result != null && now - result.nanoTime < snapshotNanos)
+    {
+      return result;
+    }
+    result = snapshot = new Snapshot(collect(), now);
+    for (String name : result.values.keySet())
+    {
+      // samples present when the set was registered were registered with it
+      if (attached && registered.add(name))
+      {
+        registry.register(MetricRegistry.name(PREFIX, name), gauge(name));
+      }
+    }
+    return result;
+  }
+
+  private Map<String, Double> collect()
+  {
+    Map<String, Double> result = new HashMap<>();
+    for (Collector.MetricFamilySamples family : metrics.collect())
+    {
+      for (Collector.MetricFamilySamples.Sample sample : family.samples)
+      {
+        if (!sample.name.endsWith("_bucket"))
+        {
+          result.put(MetricRegistry.name(sample.name, sample.labelValues.toArray(new String[0])), sample.value);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static final class Snapshot
+  {
+    private final Map<String, Double> values;
+    private final long nanoTime;
+
+    private Snapshot(Map<String, Double> values, long nanoTime)
+    {
+      this.values = values;
+      this.nanoTime = nanoTime;
+    }
+  }
+}
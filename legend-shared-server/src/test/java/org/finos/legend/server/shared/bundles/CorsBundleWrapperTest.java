@@ -0,0 +1,64 @@
+// Copyright 2026 Goldman Sachs
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.finos.legend.server.shared.bundles;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import io.dropwizard.Configuration;
+import io.dropwizard.ConfiguredBundle;
+import io.dropwizard.setup.Bootstrap;
+import io.dropwizard.setup.Environment;
+import java.util.Arrays;
+import org.finos.legend.opentracing.propagation.PropagationFormat;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CorsBundleWrapperTest
+{
+  @Test
+  public void testAllowsB3HeadersWithoutPropagationFormats() throws Exception
+  {
+    String allowedHeaders = allowedHeaders(new CorsBundleWrapper<>(new NoopBundle(), null));
+    Assert.assertTrue(allowedHeaders, allowedHeaders.endsWith(",x-b3-traceid,x-b3-spanid,x-b3-parentspanid,x-b3-sampled,x-b3-flags"));
+    Assert.assertEquals(allowedHeaders, allowedHeaders(new CorsBundleWrapper<>(new NoopBundle())));
+  }
+
+  @Test
+  public void testAllowsHeadersOfPropagationFormats() throws Exception
+  {
+    String allowedHeaders = allowedHeaders(new CorsBundleWrapper<>(new NoopBundle(), Arrays.asList(PropagationFormat.W3C, PropagationFormat.B3_SINGLE)));
+    Assert.assertTrue(allowedHeaders, allowedHeaders.endsWith(",traceparent,b3"));
+  }
+
+  private static String allowedHeaders(CorsBundleWrapper<Configuration> bundle) throws Exception
+  {
+    Environment environment = new Environment("serverEnv", null, null, new MetricRegistry(), null, new HealthCheckRegistry());
+    bundle.run(new Configuration(), environment);
+    return environment.getApplicationContext().getServletHandler().getFilter("CORS").getInitParameter("allowedHeaders");
+  }
+
+  private static class NoopBundle implements ConfiguredBundle<Configuration>
+  {
+    @Override
+    public void run(Configuration configuration, Environment environment)
+    {
+    }
+
+    @Override
+    public void initialize(Bootstrap<?> bootstrap)
+    {
+    }
+  }
+}
@@ -14,21 +14,31 @@
 
 package org.finos.legend.server.shared.bundles;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import io.dropwizard.Application;
 import io.dropwizard.Configuration;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 import io.dropwizard.testing.ResourceHelpers;
 import io.dropwizard.testing.junit.DropwizardAppRule;
+import io.opentracing.Tracer;
 import io.opentracing.log.Fields;
 import io.opentracing.mock.MockSpan;
 import io.opentracing.mock.MockTracer;
 import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import org.finos.legend.opentracing.OpenTracing;
+import org.finos.legend.opentracing.PrometheusReporterMetrics;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.ClassRule;
 import org.junit.Test;
+import zipkin2.Call;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.Sender;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
@@ -39,11 +49,13 @@ import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 
@@ -104,6 +116,67 @@ public class OpenTracingBundleTest
     }
   }
 
+  @Test
+  public void testReporterMetricsAreRegisteredWithDropwizard()
+  {
+    Assert.assertNotNull(RULE.getEnvironment().metrics().getGauges().get("tracing.zipkin_reporter_spans_total"));
+    Assert.assertNotNull(RULE.getEnvironment().metrics().getGauges().get("tracing.zipkin_reporter_spans_dropped_by_cause_total.QUEUE_FULL"));
+    Assert.assertNotNull(RULE.getEnvironment().metrics().getGauges().get("tracing.zipkin_reporter_send_duration_seconds_count"));
+  }
+
+  @Test
+  public void testTracersBuiltForTheBundleRecordItsMetrics()
+  {
+    Double before = CollectorRegistry.defaultRegistry.getSampleValue("zipkin_reporter_spans_total");
+    Tracer tracer = OpenTracingBundle.buildTracer(OpenTracing.builder(new DiscardingSender(), "test"));
+    tracer.buildSpan("test").start().finish();
+
+    assertEquals((before == null ? 0 : before) + 1, CollectorRegistry.defaultRegistry.getSampleValue("zipkin_reporter_spans_total"), 0.0);
+  }
+
+  @Test
+  public void testReporterMetricsAreCollectedOncePerScrape()
+  {
+    AtomicInteger collects = new AtomicInteger();
+    PrometheusReporterMetrics metrics = new PrometheusReporterMetrics(new CollectorRegistry())
+    {
+      @Override
+      public List<Collector.MetricFamilySamples> collect()
+      {
+        collects.incrementAndGet();
+        return super.collect();
+      }
+    };
+    MetricRegistry registry = new MetricRegistry();
+    ReporterMetricSet.register(registry, metrics, TimeUnit.HOURS.toNanos(1));
+    Assert.assertEquals(1, collects.get());
+
+    metrics.incrementSpans(3);
+    Assert.assertTrue(registry.getGauges().size() > 10);
+    for (Gauge<?> gauge : registry.getGauges().values())
+    {
+      gauge.getValue();
+    }
+    Assert.assertEquals(1, collects.get());
+  }
+
+  @Test
+  public void testReporterMetricsRegisterSamplesThatAppearLater()
+  {
+    PrometheusReporterMetrics metrics = new PrometheusReporterMetrics(new CollectorRegistry());
+    MetricRegistry registry = new MetricRegistry();
+    ReporterMetricSet.register(registry, metrics, 0);
+    Gauge<?> spans = registry.getGauges().get("tracing.zipkin_reporter_spans_total");
+    Assert.assertNull(registry.getGauges().get("tracing.zipkin_reporter_messages_dropped_total.IOException"));
+
+    metrics.incrementSpans(3);
+    metrics.incrementMessagesDropped(new IOException());
+    Assert.assertEquals(3, (Double) spans.getValue(), 0.0);
+    Gauge<?> dropped = registry.getGauges().get("tracing.zipkin_reporter_messages_dropped_total.IOException");
+    Assert.assertNotNull(dropped);
+    Assert.assertEquals(1, (Double) dropped.getValue(), 0.0);
+  }
+
   @Test
   public void testTracesOnHappyPath() throws Exception
   {
@@ -312,6 +385,33 @@ public class OpenTracingBundleTest
     return response;
   }
 
+  private static class DiscardingSender extends Sender
+  {
+    @Override
+    public Encoding encoding()
+    {
+      return Encoding.JSON;
+    }
+
+    @Override
+    public int messageMaxBytes()
+    {
+      return 1024 * 1024;
+    }
+
+    @Override
+    public int messageSizeInBytes(List<byte[]> encodedSpans)
+    {
+      return Encoding.JSON.listSizeInBytes(encodedSpans);
+    }
+
+    @Override
+    public Call<Void> sendSpans(List<byte[]> encodedSpans)
+    {
+      return Call.create(null);
+    }
+  }
+
   public static class TestApp extends Application<TestConfig>
   {
     @Override